@@ -0,0 +1,54 @@
+package com.faison.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the named caches of the application, and keeps track of them to report their stats.
+ */
+@Component
+public class CacheRegistry {
+
+    private final Map<String, ReadThroughCache<?>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Create a cache and register it under the given name.
+     *
+     * @param name       The unique name of the cache.
+     * @param maxSize    The maximum number of entries kept.
+     * @param ttlSeconds How long an entry is served before it is loaded again.
+     * @return the new cache.
+     */
+    public <V> ReadThroughCache<V> create(String name, long maxSize, long ttlSeconds) {
+        ReadThroughCache<V> cache = new ReadThroughCache<>(name, maxSize, ttlSeconds, TimeUnit.SECONDS);
+        if (caches.putIfAbsent(name, cache) != null) {
+            throw new IllegalStateException("A cache named " + name + " already exists");
+        }
+        return cache;
+    }
+
+    /**
+     * @return the stats of every registered cache.
+     */
+    public List<CacheStats> stats() {
+        List<CacheStats> stats = new ArrayList<>();
+        for (ReadThroughCache<?> cache : caches.values()) {
+            stats.add(cache.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * @param name The name of the cache.
+     * @return the stats of the cache, or null if there is no cache with that name.
+     */
+    public CacheStats stats(String name) {
+        ReadThroughCache<?> cache = caches.get(name);
+        return cache == null ? null : cache.stats();
+    }
+}
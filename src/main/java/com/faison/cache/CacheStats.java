@@ -0,0 +1,55 @@
+package com.faison.cache;
+
+/**
+ * A snapshot of the counters of a {@link ReadThroughCache}.
+ */
+public class CacheStats {
+
+    private final String name;
+    private final long size;
+    private final long maxSize;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    CacheStats(String name, long size, long maxSize, long hits, long misses, long evictions) {
+        this.name = name;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of entries dropped because they expired or their segment was full.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
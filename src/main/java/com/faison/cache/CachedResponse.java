@@ -0,0 +1,77 @@
+package com.faison.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response body as it was encoded by the first request for it, with a gzipped copy when that saves space.
+ */
+class CachedResponse {
+
+    private static final int GZIP_THRESHOLD = 1024;
+
+    private final int status;
+    private final String contentType;
+    private final String etag;
+    private final long lastModified;
+    private final byte[] body;
+    private final byte[] gzipped;
+
+    CachedResponse(int status, String contentType, String etag, long lastModified, byte[] body) {
+        this.status = status;
+        this.contentType = contentType;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.body = body;
+        this.gzipped = body.length < GZIP_THRESHOLD ? null : smaller(gzip(body), body);
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the ETag the controller set, or null.
+     */
+    String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return the Last-Modified time the controller set, or -1.
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return the gzipped body, or null if the body is not worth compressing.
+     */
+    byte[] getGzipped() {
+        return gzipped;
+    }
+
+    private static byte[] smaller(byte[] gzipped, byte[] body) {
+        return gzipped.length < body.length ? gzipped : null;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
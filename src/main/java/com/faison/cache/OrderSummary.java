@@ -0,0 +1,74 @@
+package com.faison.cache;
+
+import com.faison.models.Order;
+import com.faison.models.OrderLine;
+
+import java.util.Date;
+
+/**
+ * The few properties of an {@link com.faison.models.Order} listed on the account page of its buyer.
+ */
+public class OrderSummary {
+
+    private final String id;
+    private final Date placedOn;
+    private final double cost;
+    private final double shippingFee;
+    private final int units;
+    private final boolean deliveredStatus;
+
+    OrderSummary(String id, Date placedOn, double cost, double shippingFee, int units, boolean deliveredStatus) {
+        this.id = id;
+        this.placedOn = placedOn;
+        this.cost = cost;
+        this.shippingFee = shippingFee;
+        this.units = units;
+        this.deliveredStatus = deliveredStatus;
+    }
+
+    /**
+     * @param order An order read with at least its placing date, amounts, delivery status and line quantities.
+     * @return the summary of the order.
+     */
+    public static OrderSummary of(Order order) {
+        return new OrderSummary(order.getId(), order.getPlacedOn(), order.getCost(), order.getShippingFee(),
+                unitsOf(order), order.isDeliveredStatus());
+    }
+
+    /**
+     * @return the number of units ordered over all the lines of the order.
+     */
+    static int unitsOf(Order order) {
+        int units = 0;
+        if (order.getLines() != null) {
+            for (OrderLine line : order.getLines()) {
+                units += line == null ? 0 : line.getQuantity();
+            }
+        }
+        return units;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Date getPlacedOn() {
+        return placedOn;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public double getShippingFee() {
+        return shippingFee;
+    }
+
+    public int getUnits() {
+        return units;
+    }
+
+    public boolean isDeliveredStatus() {
+        return deliveredStatus;
+    }
+}
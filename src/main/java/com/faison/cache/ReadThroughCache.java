@@ -0,0 +1,165 @@
+package com.faison.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache that loads missing values on read. Entries expire after a fixed time to live, and each
+ * segment evicts its least recently used entry when full. Keys are spread over independently locked segments,
+ * so concurrent readers of different keys rarely wait on each other.
+ * <p>
+ * Values are not copied: every caller gets the same instance, so cached values must be treated as read-only.
+ * Only the owner of a cache may change a value in place, and then only if the value guards its own state, as
+ * {@link RecentOrders} does.
+ *
+ * @param <V> the type of the cached values
+ */
+public class ReadThroughCache<V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final String name;
+    private final long maxSize;
+    private final long ttlNanos;
+    private final List<Segment<V>> segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    ReadThroughCache(String name, long maxSize, long ttl, TimeUnit unit) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        int segmentSize = (int) Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        this.segments = new ArrayList<>(SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new Segment<>(segmentSize, evictions));
+        }
+    }
+
+    /**
+     * Return the cached value of the key, loading and caching it if it is missing or expired.
+     *
+     * @param key    The key to look up.
+     * @param loader Loads the value on a miss. Null values are returned but not cached.
+     * @return the value, shared with every other caller, or null if the loader found none.
+     */
+    public V get(String key, Function<String, V> loader) {
+        Segment<V> segment = segmentOf(key);
+        long invalidations;
+        synchronized (segment) {
+            Entry<V> entry = segment.entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return entry.value;
+                }
+                segment.entries.remove(key);
+                evictions.increment();
+            }
+            invalidations = segment.invalidations;
+        }
+
+        misses.increment();
+        V value = loader.apply(key);
+        if (value != null) {
+            synchronized (segment) {
+                // Skip caching if the key was invalidated while loading, the value may already be stale.
+                if (segment.invalidations == invalidations) {
+                    segment.entries.put(key, new Entry<>(value, System.nanoTime()));
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Return the cached value of the key without loading it, so it can be updated in place.
+     *
+     * @param key The key to look up.
+     * @return the value, or null if it is missing or expired.
+     */
+    public V getIfPresent(String key) {
+        Segment<V> segment = segmentOf(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.entries.get(key);
+            return entry != null && System.nanoTime() - entry.loadedAt < ttlNanos ? entry.value : null;
+        }
+    }
+
+    /**
+     * Drop the cached value of the key, if any.
+     *
+     * @param key The key whose value changed.
+     */
+    public void invalidate(String key) {
+        Segment<V> segment = segmentOf(key);
+        synchronized (segment) {
+            segment.entries.remove(key);
+            segment.invalidations++;
+        }
+    }
+
+    /**
+     * Drop every cached value.
+     */
+    public void invalidateAll() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.invalidations++;
+            }
+        }
+    }
+
+    public CacheStats stats() {
+        long size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return new CacheStats(name, size, maxSize, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private Segment<V> segmentOf(String key) {
+        int hash = key.hashCode();
+        return segments.get((hash ^ (hash >>> 16)) & (SEGMENTS - 1));
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long loadedAt;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static class Segment<V> {
+
+        private final Map<String, Entry<V>> entries;
+        private long invalidations;
+
+        Segment(int capacity, LongAdder evictions) {
+            this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
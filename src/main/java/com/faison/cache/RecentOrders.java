@@ -0,0 +1,135 @@
+package com.faison.cache;
+
+import com.faison.models.Order;
+import com.faison.pricing.Money;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The most recent orders of one buyer, newest first, in a ring of parallel arrays of fixed capacity. A new order
+ * is written over the oldest one in constant time; an order placed earlier than some of those held is slotted
+ * in by shifting the older ones, and dropped if all of them are newer and the ring is full.
+ * <p>
+ * A ring that is not full holds every order of the buyer. Methods are synchronized, as a ring is read and
+ * written by any request for its buyer.
+ */
+final class RecentOrders {
+
+    /**
+     * The estimated heap cost of a ring beyond its entries, with its cache entry and key.
+     */
+    static final int OVERHEAD_BYTES = 256;
+
+    /**
+     * The estimated heap cost of an entry: its id string and its slot in every array.
+     */
+    static final int ENTRY_BYTES = 104;
+
+    private final String[] ids;
+    private final long[] placedOn;
+    private final long[] costCents;
+    private final long[] shippingCents;
+    private final int[] units;
+    private final boolean[] delivered;
+    private int head;
+    private int size;
+
+    RecentOrders(int capacity) {
+        ids = new String[capacity];
+        placedOn = new long[capacity];
+        costCents = new long[capacity];
+        shippingCents = new long[capacity];
+        units = new int[capacity];
+        delivered = new boolean[capacity];
+    }
+
+    /**
+     * Add an order, keeping the ring sorted by placing date then id, newest first.
+     *
+     * @return false if the order is older than every order held by a full ring, and was dropped.
+     */
+    synchronized boolean add(Order order) {
+        long time = order.getPlacedOn().getTime();
+        int position = 0;
+        while (position < size && isNewer(position, time, order.getId())) {
+            position++;
+        }
+        if (position == size && size == ids.length) {
+            return false;
+        }
+        if (position == 0) {
+            head = (head - 1 + ids.length) % ids.length;
+        } else {
+            // Shift the older orders down one slot; the oldest falls off a full ring.
+            for (int i = Math.min(size, ids.length - 1); i > position; i--) {
+                copy(slot(i - 1), slot(i));
+            }
+        }
+        write(slot(position), order);
+        size = Math.min(size + 1, ids.length);
+        return true;
+    }
+
+    /**
+     * Update an order held by the ring in place, if its placing date did not change.
+     *
+     * @return false if the ring does not hold the order at that date, and must be reloaded.
+     */
+    synchronized boolean replace(Order order) {
+        for (int i = 0; i < size; i++) {
+            int slot = slot(i);
+            if (ids[slot].equals(order.getId())) {
+                if (placedOn[slot] != order.getPlacedOn().getTime()) {
+                    return false;
+                }
+                write(slot, order);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param limit The number of orders wanted.
+     * @return the newest orders, at most the limit.
+     */
+    synchronized List<OrderSummary> newest(int limit) {
+        int count = Math.min(limit, size);
+        List<OrderSummary> summaries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int slot = slot(i);
+            summaries.add(new OrderSummary(ids[slot], new Date(placedOn[slot]), Money.toAmount(costCents[slot]),
+                    Money.toAmount(shippingCents[slot]), units[slot], delivered[slot]));
+        }
+        return summaries;
+    }
+
+    private boolean isNewer(int position, long time, String id) {
+        int slot = slot(position);
+        return placedOn[slot] > time || placedOn[slot] == time && ids[slot].compareTo(id) > 0;
+    }
+
+    private int slot(int position) {
+        return (head + position) % ids.length;
+    }
+
+    private void copy(int from, int to) {
+        ids[to] = ids[from];
+        placedOn[to] = placedOn[from];
+        costCents[to] = costCents[from];
+        shippingCents[to] = shippingCents[from];
+        units[to] = units[from];
+        delivered[to] = delivered[from];
+    }
+
+    private void write(int slot, Order order) {
+        ids[slot] = order.getId();
+        placedOn[slot] = order.getPlacedOn().getTime();
+        costCents[slot] = Money.toCents(order.getCost());
+        shippingCents[slot] = Money.toCents(order.getShippingFee());
+        units[slot] = OrderSummary.unitsOf(order);
+        delivered[slot] = order.isDeliveredStatus();
+    }
+}
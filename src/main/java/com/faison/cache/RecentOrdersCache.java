@@ -0,0 +1,116 @@
+package com.faison.cache;
+
+import com.faison.models.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The most recent orders of each buyer, for account pages. Each buyer gets a {@link RecentOrders} ring of
+ * {@code shop.cache.recent-orders.per-buyer} orders, loaded on first read and kept current by order writes. The
+ * number of buyers held is derived from a memory budget, {@code shop.cache.recent-orders.max-bytes}, and the
+ * least recently read buyers are evicted first.
+ */
+@Component
+public class RecentOrdersCache {
+
+    @Autowired
+    private CacheRegistry caches;
+
+    @Value("${shop.cache.recent-orders.per-buyer:10}")
+    private int perBuyer;
+
+    @Value("${shop.cache.recent-orders.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Value("${shop.cache.recent-orders.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    private ReadThroughCache<RecentOrders> cache;
+
+    @PostConstruct
+    public void createCache() {
+        long ringBytes = RecentOrders.OVERHEAD_BYTES + (long) perBuyer * RecentOrders.ENTRY_BYTES;
+        cache = caches.create("recent-orders", Math.max(1, maxBytes / ringBytes), ttlSeconds);
+    }
+
+    /**
+     * @return the number of orders held per buyer; longer lists are not cached.
+     */
+    public int perBuyer() {
+        return perBuyer;
+    }
+
+    /**
+     * Return the newest orders of a buyer, loading them on a miss.
+     *
+     * @param buyerId The id of the buyer.
+     * @param limit   The number of orders wanted, at most {@link #perBuyer()}.
+     * @param loader  Reads the newest {@link #perBuyer()} orders of a buyer, newest first.
+     * @return the summaries of the orders, newest first.
+     */
+    public List<OrderSummary> get(String buyerId, int limit, Function<String, List<Order>> loader) {
+        RecentOrders ring = cache.get(buyerId, id -> {
+            RecentOrders loaded = new RecentOrders(perBuyer);
+            for (Order order : loader.apply(id)) {
+                if (order.getPlacedOn() != null) {
+                    loaded.add(order);
+                }
+            }
+            return loaded;
+        });
+        return ring.newest(limit);
+    }
+
+    /**
+     * Add a new order to the ring of its buyer, if the buyer is cached.
+     *
+     * @param order The saved order.
+     */
+    public void created(Order order) {
+        if (order.getBuyerId() == null) {
+            return;
+        }
+        RecentOrders ring = cache.getIfPresent(order.getBuyerId());
+        if (ring == null || order.getPlacedOn() == null) {
+            // Also keeps a ring being loaded from missing this order.
+            cache.invalidate(order.getBuyerId());
+        } else {
+            ring.add(order);
+        }
+    }
+
+    /**
+     * Update an order in the ring of its buyer, or drop the rings it cannot be updated in.
+     *
+     * @param before The order before the write.
+     * @param after  The saved order.
+     */
+    public void updated(Order before, Order after) {
+        if (before != null && before.getBuyerId() != null && !before.getBuyerId().equals(after.getBuyerId())) {
+            cache.invalidate(before.getBuyerId());
+        }
+        if (after.getBuyerId() == null) {
+            return;
+        }
+        RecentOrders ring = cache.getIfPresent(after.getBuyerId());
+        if (ring == null || after.getPlacedOn() == null || !ring.replace(after)) {
+            cache.invalidate(after.getBuyerId());
+        }
+    }
+
+    /**
+     * Drop the ring of a buyer, after writes that are not worth replaying into it.
+     *
+     * @param buyerId The id of the buyer, or null.
+     */
+    public void invalidate(String buyerId) {
+        if (buyerId != null) {
+            cache.invalidate(buyerId);
+        }
+    }
+}
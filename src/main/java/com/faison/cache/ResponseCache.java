@@ -0,0 +1,56 @@
+package com.faison.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Encoded responses of the catalog list endpoints, keyed by request URL. A resource is invalidated as a whole
+ * on every write to it, since a single record can move across any number of cached pages.
+ *
+ * @see ResponseCacheFilter
+ */
+@Component
+public class ResponseCache {
+
+    public static final String PRODUCTS = "products";
+    public static final String CATEGORIES = "categories";
+
+    @Autowired
+    private CacheRegistry caches;
+
+    @Value("${shop.cache.responses.max-size:500}")
+    private long maxSize;
+
+    @Value("${shop.cache.responses.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private final Map<String, ReadThroughCache<CachedResponse>> byResource = new HashMap<>();
+
+    @PostConstruct
+    public void createCaches() {
+        for (String resource : new String[]{PRODUCTS, CATEGORIES}) {
+            byResource.put(resource, caches.create(resource + "-responses", maxSize, ttlSeconds));
+        }
+    }
+
+    /**
+     * Drop every cached response of the given resources.
+     *
+     * @param resources The resources that were written, {@link #PRODUCTS} or {@link #CATEGORIES}.
+     */
+    public void invalidate(String... resources) {
+        for (String resource : resources) {
+            byResource.get(resource).invalidateAll();
+        }
+    }
+
+    CachedResponse get(String resource, String key, Function<String, CachedResponse> loader) {
+        return byResource.get(resource).get(key, loader);
+    }
+}
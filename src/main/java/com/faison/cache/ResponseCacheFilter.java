@@ -0,0 +1,135 @@
+package com.faison.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves the product and category lists from the bytes encoded for the first request with the same URL, so
+ * repeated requests reach neither the database nor Jackson. Each distinct query string, including fields=, is
+ * its own entry. Cached responses keep the validators set by the controller, so conditional requests are still
+ * answered with 304, and are sent gzipped to clients that accept it.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private static final int MAX_BODY = 1024 * 1024;
+
+    private final UrlPathHelper paths = new UrlPathHelper();
+
+    @Autowired
+    private ResponseCache cache;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || resourceOf(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getQueryString() == null ? "" : request.getQueryString();
+        ContentCachingResponseWrapper[] rendered = new ContentCachingResponseWrapper[1];
+        CachedResponse cached;
+        try {
+            cached = cache.get(resourceOf(request), key, k -> {
+                rendered[0] = new ContentCachingResponseWrapper(response);
+                try {
+                    chain.doFilter(request, rendered[0]);
+                } catch (IOException | ServletException e) {
+                    throw new ChainException(e);
+                }
+                return capture(rendered[0]);
+            });
+        } catch (ChainException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw (ServletException) e.getCause();
+        }
+
+        if (rendered[0] != null) {
+            rendered[0].copyBodyToResponse();
+        } else {
+            write(cached, request, response);
+        }
+    }
+
+    private String resourceOf(HttpServletRequest request) {
+        switch (paths.getPathWithinApplication(request)) {
+            case "/api/products":
+                return ResponseCache.PRODUCTS;
+            case "/api/categories":
+                return ResponseCache.CATEGORIES;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Keep a copy of a successful response, or nothing for errors, 304s and bodies too large to hold.
+     */
+    private static CachedResponse capture(ContentCachingResponseWrapper response) {
+        int status = response.getStatusCode();
+        // The category list answers 302 on success.
+        boolean success = HttpStatus.valueOf(status).is2xxSuccessful() || status == HttpStatus.FOUND.value();
+        if (!success || response.getContentSize() > MAX_BODY || response.getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+            return null;
+        }
+        long lastModified = -1;
+        String lastModifiedHeader = response.getHeader(HttpHeaders.LAST_MODIFIED);
+        if (lastModifiedHeader != null) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.LAST_MODIFIED, lastModifiedHeader);
+            lastModified = headers.getLastModified();
+        }
+        return new CachedResponse(status, response.getContentType(), response.getHeader(HttpHeaders.ETAG),
+                lastModified, response.getContentAsByteArray());
+    }
+
+    private static void write(CachedResponse cached, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (cached.getEtag() != null || cached.getLastModified() > 0) {
+            if (new ServletWebRequest(request, response).checkNotModified(cached.getEtag(), cached.getLastModified())) {
+                return;
+            }
+        }
+        response.setStatus(cached.getStatus());
+        response.setContentType(cached.getContentType());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        byte[] body = cached.getBody();
+        String accepted = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (cached.getGzipped() != null && accepted != null && accepted.contains("gzip")) {
+            body = cached.getGzipped();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Carries a checked exception of the filter chain out of the cache loader.
+     */
+    private static class ChainException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ChainException(Exception cause) {
+            super(cause);
+        }
+    }
+}
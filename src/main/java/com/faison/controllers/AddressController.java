@@ -1,7 +1,11 @@
 package com.faison.controllers;
 
 import com.faison.models.Address;
+import com.faison.paging.Cursor;
+import com.faison.paging.CursorPage;
+import com.faison.repositories.Projection;
 import com.faison.services.AddressService;
+import com.faison.services.BatchResult;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.data.domain.Page;
@@ -62,6 +66,23 @@ public class AddressController {
         return new ResponseEntity<>(result, HttpStatus.FOUND);
     }
 
+    /**
+     * Get the addresses with the given ids, in a single query.
+     *
+     * @param ids the comma separated ids of the addresses to return
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the addresses found, in the order of the ids, and the ids that were not found
+     * @see AddressService#findByIds(List, Projection)
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "ids")
+    @ApiOperation(value = "getByIds", notes = "Gets Addresses by their ids.")
+    public ResponseEntity<BatchResult<Address>> getByIds(@RequestParam(value = "ids") List<String> ids,
+                                                         @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        final BatchResult<Address> result = service.findByIds(ids, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
+    }
+
     /**
      * Search for addresss in the system.
      *
@@ -105,6 +126,34 @@ public class AddressController {
     }
 
 
+    /**
+     * Scroll through addresses in the system, one page after another. Pages are read after a cursor instead of
+     * an offset and are not counted, so every page costs the same however deep it is.
+     *
+     * @param after  the cursor returned with the previous page, or empty for the first page
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the page of addresses, with the cursor of the next page
+     * @see AddressService#scroll
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "after")
+    @ApiOperation(value = "scroll", notes = "Scrolls through Addresses by their country and/or state, after a cursor.")
+    public ResponseEntity<CursorPage<Address>> scroll(@RequestParam(value = "country", defaultValue = "", required = false) String country,
+                                                      @RequestParam(value = "state", defaultValue = "", required = false) String state,
+                                                      @RequestParam(value = "city", defaultValue = "", required = false) String city,
+                                                      @RequestParam(value = "street", defaultValue = "", required = false) String street,
+                                                      @RequestParam(value = "after") String after,
+                                                      @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                                      @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        String[] cursor = Cursor.decode(after);
+        int sz = Integer.parseInt(size);
+        if (cursor == null || cursor.length > 1 || sz < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        CursorPage<Address> result = service.scroll(country, state, city, street, cursor.length == 0 ? null : cursor[0], sz, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
+    }
+
     /**
      * Updates an existing address.
      *
@@ -0,0 +1,115 @@
+package com.faison.controllers;
+
+import com.faison.repositories.BulkItemResult;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reads a JSON array request body one element at a time and hands the elements to a bulk writer in batches,
+ * so the whole body is never held in memory.
+ */
+final class BulkBody {
+
+    static final int BATCH_SIZE = 1000;
+
+    private BulkBody() {
+    }
+
+    /**
+     * Read the array and write its elements batch by batch.
+     *
+     * @param mapper The mapper reading the elements.
+     * @param body   The request body.
+     * @param type   The type of the elements.
+     * @param writer Writes a batch and returns the outcome of every element, by position in the batch.
+     * @return the outcome of every element, by position in the array.
+     * @throws MalformedBodyException if the body is not a JSON array. Batches read before the error are written.
+     */
+    static <T> List<BulkItemResult> process(ObjectMapper mapper, InputStream body, Class<T> type,
+                                            Function<List<T>, List<BulkItemResult>> writer) throws IOException {
+        List<BulkItemResult> results = new ArrayList<>();
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        List<Integer> positions = new ArrayList<>(BATCH_SIZE);
+        String malformed = null;
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                malformed = "The body must be a JSON array.";
+            }
+            for (int index = 0; malformed == null; index++) {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.END_ARRAY) {
+                    break;
+                }
+                if (token == null) {
+                    malformed = "The JSON array is not closed.";
+                    break;
+                }
+                JsonNode node = mapper.readTree(parser);
+                try {
+                    T element = mapper.treeToValue(node, type);
+                    if (element == null) {
+                        results.add(BulkItemResult.failed(index, null, "The element is null."));
+                    } else {
+                        batch.add(element);
+                        positions.add(index);
+                    }
+                } catch (JsonProcessingException e) {
+                    results.add(BulkItemResult.failed(index, null, e.getOriginalMessage()));
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    flush(batch, positions, writer, results);
+                }
+            }
+        } catch (JsonParseException e) {
+            malformed = e.getOriginalMessage();
+        }
+        flush(batch, positions, writer, results);
+        results.sort(Comparator.comparingInt(BulkItemResult::getIndex));
+        if (malformed != null) {
+            throw new MalformedBodyException(malformed, results);
+        }
+        return results;
+    }
+
+    private static <T> void flush(List<T> batch, List<Integer> positions,
+                                  Function<List<T>, List<BulkItemResult>> writer, List<BulkItemResult> results) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (BulkItemResult result : writer.apply(batch)) {
+            results.add(result.withIndex(positions.get(result.getIndex())));
+        }
+        batch.clear();
+        positions.clear();
+    }
+
+    /**
+     * Thrown when the body is not a well formed JSON array, with the outcome of the elements read before.
+     */
+    static class MalformedBodyException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<BulkItemResult> results;
+
+        MalformedBodyException(String message, List<BulkItemResult> results) {
+            super(message);
+            this.results = results;
+        }
+
+        List<BulkItemResult> getResults() {
+            return results;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.faison.controllers;
+
+import com.faison.cache.CacheRegistry;
+import com.faison.cache.CacheStats;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * RestController that reports the stats of the application caches
+ *
+ * @see CacheRegistry
+ */
+@RestController
+@RequestMapping("/api/caches")
+@Api(value = "Cache Rest Controller")
+public class CacheController {
+
+    private final CacheRegistry registry;
+
+    public CacheController(CacheRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Get the stats of every cache.
+     *
+     * @return the size, hits, misses and evictions of each cache
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET)
+    @ApiOperation(value = "stats", notes = "Gets the stats of every cache.")
+    public ResponseEntity<List<CacheStats>> stats() {
+        return new ResponseEntity<>(registry.stats(), HttpStatus.OK);
+    }
+
+    /**
+     * Get the stats of one cache.
+     *
+     * @param name the name of the cache
+     * @return the stats of the cache, or an HttpStatus.NOT_FOUND if there is no such cache
+     */
+    @ResponseBody
+    @RequestMapping(value = "/{name}", method = RequestMethod.GET)
+    @ApiOperation(value = "statsByName", notes = "Gets the stats of a cache by its name.")
+    public ResponseEntity<CacheStats> stats(@PathVariable("name") String name) {
+        CacheStats result = registry.stats(name);
+        if (result == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+}
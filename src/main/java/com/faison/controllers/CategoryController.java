@@ -1,7 +1,15 @@
 package com.faison.controllers;
 
+import com.faison.index.CategoryTree;
 import com.faison.models.Category;
+import com.faison.models.Product;
+import com.faison.paging.Cursor;
+import com.faison.paging.CursorPage;
+import com.faison.repositories.Projection;
+import com.faison.services.BatchResult;
 import com.faison.services.CategoryService;
+import com.faison.services.CategoryTreeService;
+import com.faison.services.ProductService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,10 +21,12 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.ejb.EJB;
 import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping(value = "/api/categories")
@@ -25,6 +35,10 @@ public class CategoryController {
 
     @EJB
     private CategoryService service;
+    @EJB
+    private CategoryTreeService treeService;
+    @EJB
+    private ProductService productService;
 
     /**
      * Create a new category in the system.
@@ -46,22 +60,103 @@ public class CategoryController {
     /**
      * Get category with given category id.
      *
-     * @param id the id of the category to return
-     * @return the category of given id
+     * @param id      the id of the category to return
+     * @param fields  the comma separated properties to return, or empty for all
+     * @param request the request, checked against the ETag and last write time of the category
+     * @return the category of given id, or an HttpStatus.NOT_MODIFIED if the client copy is current
      * @see CategoryService#findById(String)
      */
     @ResponseBody
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
     @ApiOperation(value = "getById", notes = "Gets a Category by their id.")
-    public ResponseEntity<Category> getById(@PathVariable(value = "id") String id) {
+    public ResponseEntity<Category> getById(@PathVariable(value = "id") String id,
+                                            @RequestParam(value = "fields", defaultValue = "", required = false) String fields,
+                                            WebRequest request) {
+        if (Conditional.notModified(request, id, service.lastModified(id), fields)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         final Category result = service.findById(id);
         return new ResponseEntity<>(result, HttpStatus.FOUND);
     }
 
+    /**
+     * Get the categories with the given ids, in a single query.
+     *
+     * @param ids the comma separated ids of the categories to return
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the categories found, in the order of the ids, and the ids that were not found
+     * @see CategoryService#findByIds(List, Projection)
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "ids")
+    @ApiOperation(value = "getByIds", notes = "Gets Categories by their ids.")
+    public ResponseEntity<BatchResult<Category>> getByIds(@RequestParam(value = "ids") List<String> ids,
+                                                          @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        final BatchResult<Category> result = service.findByIds(ids, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
+    }
+
+    /**
+     * Get the category menu, served from the in-memory category tree.
+     *
+     * @param rootId the id of the category to start from, or empty for the whole hierarchy
+     * @param depth  the number of levels to include below the starting point
+     * @return the nested categories
+     * @see CategoryTreeService#menu(String, int)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/tree", method = RequestMethod.GET)
+    @ApiOperation(value = "tree", notes = "Gets the nested Category menu, or the subtree of one Category.")
+    public ResponseEntity<List<CategoryTree.CategoryNode>> tree(@RequestParam(value = "rootId", defaultValue = "", required = false) String rootId,
+                                                                @RequestParam(value = "depth", defaultValue = "2147483647", required = false) String depth) {
+        List<CategoryTree.CategoryNode> result = treeService.menu(rootId.isEmpty() ? null : rootId, Integer.parseInt(depth));
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Get the ancestors of a category, for breadcrumbs.
+     *
+     * @param id the id of the category
+     * @return the categories from the root down to the given one, or an HttpStatus.NOT_FOUND
+     * @see CategoryTreeService#path(String)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/{id}/path", method = RequestMethod.GET)
+    @ApiOperation(value = "path", notes = "Gets the ancestors of a Category, from the root down.")
+    public ResponseEntity<List<CategoryTree.CategoryNode>> path(@PathVariable("id") String id) {
+        List<CategoryTree.CategoryNode> result = treeService.path(id);
+        if (result.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Get the products of a category and all of its descendants.
+     *
+     * @param id the id of the category
+     * @return the page of products
+     * @see ProductService#findByCategorySubtree(String, Pageable)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/{id}/products", method = RequestMethod.GET)
+    @ApiOperation(value = "products", notes = "Gets the Products of a Category and all of its descendants.")
+    public ResponseEntity<Page<Product>> products(@PathVariable("id") String id,
+                                                  @RequestParam(value = "page", defaultValue = "0", required = false) String page,
+                                                  @RequestParam(value = "size", defaultValue = "10", required = false) String size) {
+        int pg = Integer.parseInt(page);
+        int sz = Integer.parseInt(size);
+        Pageable pageable = new PageRequest(pg, sz);
+        Page<Product> result = productService.findByCategorySubtree(id, pageable);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
     /**
      * Search for categorys in the system.
      *
-     * @return the list of categorys
+     * @param fields  the comma separated properties to return, or empty for all
+     * @param request the request, checked against the ETag and last write time of the page
+     * @return the list of categorys, or an HttpStatus.NOT_MODIFIED if the client copy is current
      * @see CategoryService#findAll(Pageable)
      */
     @ResponseBody
@@ -70,7 +165,9 @@ public class CategoryController {
     public ResponseEntity<Page<Category>> search(@RequestParam(value = "description", defaultValue = "", required = false) String description,
                                                  @RequestParam(value = "parentCategoryId", defaultValue = "", required = false) String parentCategoryId,
                                                  @RequestParam(value = "page", defaultValue = "0", required = false) String page,
-                                                 @RequestParam(value = "size", defaultValue = "10", required = false) String size) {
+                                                 @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                                 @RequestParam(value = "fields", defaultValue = "", required = false) String fields,
+                                                 WebRequest request) {
         int pg = Integer.parseInt(page);
         int sz = Integer.parseInt(size);
         Pageable pageable = new PageRequest(pg, sz);
@@ -84,11 +181,39 @@ public class CategoryController {
         if (!description.isEmpty()) {
             result = service.findByParentCategoryId(parentCategoryId, pageable);
         }
-
+        if (Conditional.notModified(request, result, Category::getId, Category::getLastModified, fields)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         return new ResponseEntity<>(result, HttpStatus.FOUND);
     }
 
 
+    /**
+     * Scroll through categories in the system, one page after another. Pages are read after a cursor instead of
+     * an offset and are not counted, so every page costs the same however deep it is.
+     *
+     * @param after  the cursor returned with the previous page, or empty for the first page
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the page of categories, with the cursor of the next page
+     * @see CategoryService#scroll
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "after")
+    @ApiOperation(value = "scroll", notes = "Scrolls through Categories by their description and/or parent category id, after a cursor.")
+    public ResponseEntity<CursorPage<Category>> scroll(@RequestParam(value = "description", defaultValue = "", required = false) String description,
+                                                       @RequestParam(value = "parentCategoryId", defaultValue = "", required = false) String parentCategoryId,
+                                                       @RequestParam(value = "after") String after,
+                                                       @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                                       @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        String[] cursor = Cursor.decode(after);
+        int sz = Integer.parseInt(size);
+        if (cursor == null || cursor.length > 1 || sz < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        CursorPage<Category> result = service.scroll(description, parentCategoryId, cursor.length == 0 ? null : cursor[0], sz, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
+    }
+
     /**
      * Updates an existing category.
      *
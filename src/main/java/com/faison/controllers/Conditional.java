@@ -0,0 +1,81 @@
+package com.faison.controllers;
+
+import org.springframework.data.domain.Page;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * Answers conditional GETs from the last write time of records, before their bodies are read or serialized.
+ * The ETag covers the record ids, their write times and the requested fields, so a client asking for another
+ * set of fields never gets a 304 for a body it does not have. Records that were never stamped are not
+ * validated at all.
+ */
+final class Conditional {
+
+    private Conditional() {
+    }
+
+    /**
+     * Check the validators of a single record and set them on the response.
+     *
+     * @param request      The current request.
+     * @param id           The id of the record.
+     * @param lastModified When the record was last written, or null if unknown.
+     * @param fields       The requested fields, or empty for all.
+     * @return true if the client copy is current and a 304 has been prepared.
+     */
+    static boolean notModified(WebRequest request, String id, Date lastModified, String fields) {
+        if (lastModified == null) {
+            return false;
+        }
+        String tag = id + ':' + lastModified.getTime() + ':' + fields;
+        return request.checkNotModified(etag(tag), lastModified.getTime());
+    }
+
+    /**
+     * Check the validators of a page of records and set them on the response. The page changes whenever one of
+     * its records is written, or records are added or removed before or on it.
+     *
+     * @param request        The current request.
+     * @param page           The page, read with the write times of its records.
+     * @param idOf           Returns the id of a record.
+     * @param lastModifiedOf Returns when a record was last written.
+     * @param fields         The requested fields, or empty for all.
+     * @return true if the client copy is current and a 304 has been prepared.
+     */
+    static <T> boolean notModified(WebRequest request, Page<T> page, Function<T, String> idOf,
+                                   Function<T, Date> lastModifiedOf, String fields) {
+        StringBuilder tag = new StringBuilder()
+                .append(page.getNumber()).append(':')
+                .append(page.getSize()).append(':')
+                .append(page.getTotalElements()).append(':')
+                .append(fields);
+        long latest = -1;
+        for (T record : page.getContent()) {
+            Date lastModified = lastModifiedOf.apply(record);
+            long time = lastModified == null ? 0 : lastModified.getTime();
+            tag.append(':').append(idOf.apply(record)).append('@').append(time);
+            latest = Math.max(latest, time);
+        }
+        return request.checkNotModified(etag(tag.toString()), latest);
+    }
+
+    /**
+     * The projection to read records with, so their write times are there to validate even when the client
+     * asked for other fields. The response is still filtered down to the requested fields.
+     *
+     * @param fields The requested fields, or empty for all.
+     * @return the fields to read.
+     */
+    static String withLastModified(String fields) {
+        return fields.trim().isEmpty() ? fields : fields + ",lastModified";
+    }
+
+    private static String etag(String tag) {
+        return '"' + DigestUtils.md5DigestAsHex(tag.getBytes(StandardCharsets.UTF_8)) + '"';
+    }
+}
@@ -0,0 +1,51 @@
+package com.faison.controllers;
+
+import com.faison.exports.ExportFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptorAdapter;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Builds the responses of export endpoints. The body is written after the handler returns, without a
+ * Content-Length, so it goes out with chunked transfer encoding as it is produced.
+ * <p>
+ * Writing a large export takes longer than the default async request timeout, so each export gets its own
+ * timeout, and other async requests keep the default one.
+ */
+final class Downloads {
+
+    private Downloads() {
+    }
+
+    /**
+     * @param request  The export request.
+     * @param timeout  The milliseconds the body may take to be written.
+     * @param baseName The file name, without extension.
+     * @param format   The file format.
+     * @param body     Writes the export.
+     * @return the response, to be returned by the handler.
+     */
+    static ResponseEntity<StreamingResponseBody> attachment(WebRequest request, long timeout, String baseName, ExportFormat format,
+                                                            StreamingResponseBody body) {
+        // The body is written by a Callable, whose processing is started with the request's async timeout.
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(Downloads.class.getName(), new CallableProcessingInterceptorAdapter() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest asyncRequest, Callable<T> task) {
+                ((AsyncWebRequest) asyncRequest).setTimeout(timeout);
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(format.getContentType()));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + "." + format.getExtension() + "\"");
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+}
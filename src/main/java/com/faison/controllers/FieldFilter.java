@@ -0,0 +1,92 @@
+package com.faison.controllers;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes only the requested properties of the models, given as dot separated paths from the model at the
+ * top of the response, such as {@code buyer.email}. Wrappers such as pages are not models, so their own
+ * properties are always written and paths start at the models they contain.
+ * <p>
+ * A property is written if its path was requested, if it lies below a requested path, or if a requested path
+ * lies below it, in which case only the requested part of it is written.
+ */
+class FieldFilter extends SimpleBeanPropertyFilter {
+
+    /**
+     * The id of the filter, named by the {@link JsonFilter} annotation of the models.
+     */
+    static final String ID = "fields";
+
+    private static final Map<Class<?>, Boolean> FILTERED = new ConcurrentHashMap<>();
+
+    private final Set<String> paths;
+    private final Set<String> ancestors = new HashSet<>();
+
+    FieldFilter(Set<String> paths) {
+        this.paths = paths;
+        for (String path : paths) {
+            for (int dot = path.indexOf('.'); dot >= 0; dot = path.indexOf('.', dot + 1)) {
+                ancestors.add(path.substring(0, dot));
+            }
+        }
+    }
+
+    @Override
+    public void serializeAsField(Object pojo, JsonGenerator gen, SerializerProvider provider, PropertyWriter writer) throws Exception {
+        if (includes(path(gen.getOutputContext(), writer.getName()))) {
+            writer.serializeAsField(pojo, gen, provider);
+        } else if (!gen.canOmitFields()) {
+            writer.serializeAsOmittedField(pojo, gen, provider);
+        }
+    }
+
+    boolean includes(String path) {
+        if (paths.contains(path) || ancestors.contains(path)) {
+            return true;
+        }
+        for (int dot = path.lastIndexOf('.'); dot > 0; dot = path.lastIndexOf('.', dot - 1)) {
+            if (paths.contains(path.substring(0, dot))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build the path of a property from the names of the enclosing model properties, skipping arrays and
+     * stopping at the first enclosing value that is not a model.
+     *
+     * @param context The context of the object the property belongs to.
+     */
+    private static String path(JsonStreamContext context, String name) {
+        StringBuilder path = new StringBuilder(name);
+        for (JsonStreamContext parent = context.getParent(); parent != null && !parent.inRoot(); parent = parent.getParent()) {
+            if (parent.inArray()) {
+                continue;
+            }
+            Object value = parent.getCurrentValue();
+            if (value == null || !isModel(value.getClass()) || parent.getCurrentName() == null) {
+                break;
+            }
+            path.insert(0, '.').insert(0, parent.getCurrentName());
+        }
+        return path.toString();
+    }
+
+    private static boolean isModel(Class<?> type) {
+        return FILTERED.computeIfAbsent(type, t -> {
+            JsonFilter filter = t.getAnnotation(JsonFilter.class);
+            return filter != null && ID.equals(filter.value());
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package com.faison.controllers;
+
+import com.faison.repositories.Projection;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+/**
+ * Applies the {@code fields} parameter of GET requests to the JSON response of every controller, so only the
+ * requested properties of the models are serialized. Endpoints that can also read fewer properties from the
+ * database take the parameter themselves.
+ */
+@ControllerAdvice
+public class FieldsAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    private static final String PARAMETER = "fields";
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType, MethodParameter returnType,
+                                           ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest) || !"GET".equals(request.getMethod().name())) {
+            return;
+        }
+        Projection projection = Projection.of(((ServletServerHttpRequest) request).getServletRequest().getParameter(PARAMETER));
+        if (!projection.isAll()) {
+            bodyContainer.setFilters(new SimpleFilterProvider().addFilter(FieldFilter.ID, new FieldFilter(projection.getPaths())));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.faison.controllers;
+
+import com.faison.services.FlashSaleService;
+import com.faison.stock.FlashSale;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.ejb.EJB;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RestController that starts and ends flash sales
+ *
+ * @see FlashSaleService
+ */
+@RestController
+@RequestMapping(value = "/api/flashSales")
+@Api(value = "Flash Sale Rest Controller")
+public class FlashSaleController {
+
+    @EJB
+    private FlashSaleService service;
+
+    /**
+     * Start a flash sale of some products.
+     *
+     * @param productIds the comma separated ids of the products on sale, whose stock must be tracked
+     * @param minutes    how long the sale runs, or empty to run it until it is ended
+     * @return the sales started, with the units each holds, or an HttpStatus.BAD_REQUEST if a product does not
+     * exist or does not track its stock
+     * @see FlashSaleService#start(List, Date)
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.POST)
+    @ApiOperation(value = "start", notes = "Starts a flash sale of some Products, holding their stock in memory.")
+    public ResponseEntity<List<FlashSale>> start(@RequestParam(value = "productIds") List<String> productIds,
+                                                 @RequestParam(value = "minutes", defaultValue = "", required = false) String minutes) {
+        Date endsOn = minutes.isEmpty() ? null : new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(Long.parseLong(minutes)));
+        List<FlashSale> result = service.start(productIds, endsOn);
+        if (result == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(result, HttpStatus.CREATED);
+    }
+
+    /**
+     * Get the running flash sales.
+     *
+     * @return the sales, with the units each has left and the orders admitted and refused as sold out
+     * @see FlashSaleService#list()
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET)
+    @ApiOperation(value = "list", notes = "Gets the running flash sales.")
+    public ResponseEntity<List<FlashSale>> list() {
+        return new ResponseEntity<>(service.list(), HttpStatus.OK);
+    }
+
+    /**
+     * End the flash sale of a product and give back its unsold stock.
+     *
+     * @param productId the id of the product
+     * @return the sale ended, or an HttpStatus.NOT_FOUND if the product is not on sale
+     * @see FlashSaleService#stop(String)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/{productId}", method = RequestMethod.DELETE)
+    @ApiOperation(value = "stop", notes = "Ends the flash sale of a Product.")
+    public ResponseEntity<FlashSale> stop(@PathVariable("productId") String productId) {
+        FlashSale result = service.stop(productId);
+        if (result == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+}
@@ -1,23 +1,41 @@
 package com.faison.controllers;
 
+import com.faison.cache.OrderSummary;
+import com.faison.events.EventBatch;
+import com.faison.events.OrderEvents;
+import com.faison.exports.ExportColumns;
+import com.faison.exports.ExportFormat;
+import com.faison.exports.Exporter;
+import com.faison.idempotency.IdempotencyKeys;
 import com.faison.models.Order;
+import com.faison.paging.Cursor;
+import com.faison.paging.CursorPage;
+import com.faison.repositories.OrderSnapshotMigration;
+import com.faison.repositories.Projection;
+import com.faison.services.BatchResult;
+import com.faison.services.FlashSaleService;
+import com.faison.services.OrderIntakeService;
 import com.faison.services.OrderService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.ejb.EJB;
-import java.util.ArrayList;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 
@@ -33,94 +51,313 @@ import java.util.List;
 @Api(value = "Order Rest Controller")
 public class OrderController {
 
+    private static final int MAX_EVENTS = 1000;
+
     @EJB
     private OrderService service;
 
+    @EJB
+    private OrderIntakeService intake;
+
+    @EJB
+    private FlashSaleService flashSales;
+
+    @Autowired
+    private Exporter exporter;
+
+    @Value("${shop.export.timeout-millis:3600000}")
+    private long exportTimeoutMillis;
+
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+
+    @Autowired
+    private OrderEvents events;
+
     public OrderController(OrderService service) {
         this.service = service;
     }
 
     /**
-     * Create a new order in the system.
+     * Create a new order in the system. When the order intake is enabled the order is queued instead, and is
+     * readable once the queue has written it.
      *
-     * @param order the order to be created
-     * @return an HttpStatus.CREATED if order was successfully created
+     * @param order          the order to be created
+     * @param idempotencyKey a key unique to this order, so a retry returns the first response instead of
+     *                       creating the order again
+     * @param request        the request, whose caller and raw body the key is bound to
+     * @return an HttpStatus.CREATED if order was successfully created, an HttpStatus.ACCEPTED with the id of the
+     * order if it was queued, an HttpStatus.TOO_MANY_REQUESTS if the queue is full, or an HttpStatus.CONFLICT if
+     * a request with the same key is still running or a product on flash sale is sold out, or an
+     * HttpStatus.UNPROCESSABLE_ENTITY if the key was used with another order
+     * @see FlashSaleService#admit(Order)
      * @see OrderService#create(Order)
+     * @see OrderIntakeService#submit(Order)
+     * @see IdempotencyKeys
      */
     @ResponseBody
     @RequestMapping(value = "/create", method = RequestMethod.POST)
     @ApiOperation(value = "create", notes = "Creates and saves a new Order.")
-    public ResponseEntity<Order> create(@RequestBody Order order) {
-        final Order result = service.create(order);
-        HttpHeaders headers = new HttpHeaders();
-        headers.setLocation(ServletUriComponentsBuilder.fromCurrentRequest().path("/").buildAndExpand("").toUri());
-        return new ResponseEntity<>(result, headers, HttpStatus.CREATED);
+    public ResponseEntity<Order> create(@RequestBody Order order,
+                                        @RequestHeader(value = IdempotencyKeys.HEADER, required = false) String idempotencyKey,
+                                        HttpServletRequest request) {
+        return idempotencyKeys.execute("orders", idempotencyKey, request, Order.class, () -> {
+            HttpHeaders headers = new HttpHeaders();
+            final FlashSaleService.Admission admission;
+            try {
+                admission = flashSales.admit(order);
+            } catch (InterruptedException e) {
+                return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            if (admission == null) {
+                headers.set(HttpHeaders.RETRY_AFTER, "1");
+                return new ResponseEntity<>(headers, HttpStatus.TOO_MANY_REQUESTS);
+            }
+            try {
+                if (intake.isEnabled()) {
+                    final Order queued;
+                    try {
+                        queued = intake.submit(order);
+                    } catch (IOException | InterruptedException e) {
+                        return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+                    }
+                    if (queued == null) {
+                        headers.set(HttpHeaders.RETRY_AFTER, "1");
+                        return new ResponseEntity<>(headers, HttpStatus.TOO_MANY_REQUESTS);
+                    }
+                    headers.setLocation(ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/orders/{id}").buildAndExpand(queued.getId()).toUri());
+                    return new ResponseEntity<>(queued, headers, HttpStatus.ACCEPTED);
+                }
+                final Order result = service.create(order);
+                headers.setLocation(ServletUriComponentsBuilder.fromCurrentRequest().path("/").buildAndExpand("").toUri());
+                return new ResponseEntity<>(result, headers, HttpStatus.CREATED);
+            } finally {
+                admission.close();
+            }
+        });
+    }
+
+    /**
+     * Get the state of the order intake queue.
+     *
+     * @return whether the intake is enabled, the orders queued and the orders taken, turned away, written and
+     * failed so far
+     * @see OrderIntakeService#stats()
+     */
+    @ResponseBody
+    @RequestMapping(value = "/intake", method = RequestMethod.GET)
+    @ApiOperation(value = "intake", notes = "Gets the state of the Order intake queue.")
+    public ResponseEntity<OrderIntakeService.Stats> intake() {
+        return new ResponseEntity<>(intake.stats(), HttpStatus.OK);
+    }
+
+    /**
+     * Read the changes to orders from an offset of the order event log, for systems following the orders. A
+     * consumer passes the next offset of each batch to the following request; with a wait, a request made at the
+     * end of the log returns as soon as a change is flushed to disk.
+     *
+     * @param from the offset of the first event to return
+     * @param max  the maximum number of events to return
+     * @param wait the milliseconds to wait for an event if there are none after the offset yet
+     * @return the batch of events, with the offset to read from next, or an HttpStatus.BAD_REQUEST if the
+     * offset is past the end of the log
+     * @see OrderEvents#read(long, int, long)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/events", method = RequestMethod.GET)
+    @ApiOperation(value = "events", notes = "Reads the changes to Orders from an offset of the event log.")
+    public ResponseEntity<EventBatch> events(@RequestParam(value = "from", defaultValue = "0", required = false) String from,
+                                             @RequestParam(value = "max", defaultValue = "100", required = false) String max,
+                                             @RequestParam(value = "wait", defaultValue = "0", required = false) String wait) {
+        long fr = Long.parseLong(from);
+        int mx = Integer.parseInt(max);
+        if (mx < 1 || fr < 0 || fr > events.next()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            EventBatch result = events.read(fr, Math.min(mx, MAX_EVENTS), Long.parseLong(wait));
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Get the most recent orders of a buyer, for their account page.
+     *
+     * @param buyerId the id of the buyer
+     * @param limit   the number of orders to return
+     * @return the summaries of the orders, newest first, or an HttpStatus.BAD_REQUEST if the limit is not positive
+     * @see OrderService#recentByBuyer(String, int)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/recent", method = RequestMethod.GET)
+    @ApiOperation(value = "recent", notes = "Gets summaries of the most recent Orders of a buyer.")
+    public ResponseEntity<List<OrderSummary>> recent(@RequestParam(value = "buyerId") String buyerId,
+                                                     @RequestParam(value = "limit", defaultValue = "10", required = false) String limit) {
+        int lm = Integer.parseInt(limit);
+        if (lm < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        final List<OrderSummary> result = service.recentByBuyer(buyerId, lm);
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
     }
 
     /**
      * Get order with given order id.
      *
-     * @param id the id of the order to return
-     * @return the order of given id
+     * @param id      the id of the order to return
+     * @param fields  the comma separated properties to return, or empty for all
+     * @param request the request, checked against the ETag and last write time of the order
+     * @return the order of given id, or an HttpStatus.NOT_MODIFIED if the client copy is current
      * @see OrderService#findById(String)
      */
     @ResponseBody
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
     @ApiOperation(value = "getById", notes = "Gets a Order by their id.")
-    public ResponseEntity<Order> getById(@PathVariable(value = "id") String id) {
+    public ResponseEntity<Order> getById(@PathVariable(value = "id") String id,
+                                         @RequestParam(value = "fields", defaultValue = "", required = false) String fields,
+                                         WebRequest request) {
+        if (Conditional.notModified(request, id, service.lastModified(id), fields)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         final Order result = service.findById(id);
         return new ResponseEntity<>(result, HttpStatus.FOUND);
     }
 
     /**
-     * Search for orders in the system.
+     * Get the orders with the given ids, in a single query.
      *
-     * @return the list of orders
-     * @see OrderService#findAll(Pageable)
+     * @param ids the comma separated ids of the orders to return
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the orders found, in the order of the ids, and the ids that were not found
+     * @see OrderService#findByIds(List, Projection)
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "ids")
+    @ApiOperation(value = "getByIds", notes = "Gets Orders by their ids.")
+    public ResponseEntity<BatchResult<Order>> getByIds(@RequestParam(value = "ids") List<String> ids,
+                                                       @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        final BatchResult<Order> result = service.findByIds(ids, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
+    }
+
+    /**
+     * Search for orders in the system. All supplied filters are combined into one query, backed by the index on
+     * buyer and placing date.
+     *
+     * @param sort   the placing date order: "placedOn,desc" for newest first, or "placedOn,asc"
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the page of orders, or an HttpStatus.BAD_REQUEST if the sort is not supported
+     * @see OrderService#search(String, Date, Date, Pageable, Projection)
      */
     @ResponseBody
     @RequestMapping(value = "", method = RequestMethod.GET)
-    @ApiOperation(value = "search", notes = "Searches for a Order by their buyerId and/or placedAfter.")
+    @ApiOperation(value = "search", notes = "Searches for Orders by their buyerId and/or placed date.")
     public ResponseEntity<Page<Order>> search(@RequestParam(value = "buyerId", defaultValue = "", required = false) String buyerId,
                                               @RequestParam(value = "placedAfter", defaultValue = "", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date placedAfter,
                                               @RequestParam(value = "placedBefore", defaultValue = "", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date placedBefore,
+                                              @RequestParam(value = "sort", defaultValue = "placedOn,desc", required = false) String sort,
                                               @RequestParam(value = "page", defaultValue = "0", required = false) String page,
-                                              @RequestParam(value = "size", defaultValue = "10", required = false) String size) {
+                                              @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                              @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        Sort.Direction direction = direction(sort);
+        if (direction == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
         int pg = Integer.parseInt(page);
         int sz = Integer.parseInt(size);
-        Pageable pageable = new PageRequest(pg, sz);
-        List<Order> temp = new ArrayList<>();
+        Pageable pageable = new PageRequest(pg, sz, new Sort(direction, "placedOn", "id"));
+        Page<Order> result = service.search(buyerId, placedAfter, placedBefore, pageable, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
+    }
 
-        if (buyerId.isEmpty() && placedAfter == null && placedBefore == null) {
-            temp.addAll(service.findAll(pageable).getContent());
-        }
 
-        if (!buyerId.isEmpty()) {
-            temp.addAll(service.findByBuyer_Id(buyerId, pageable).getContent());
-        }
+    /**
+     * Rewrite the orders stored with whole buyer and product records into the snapshot format. Safe to run
+     * again; orders already migrated are skipped.
+     *
+     * @return the number of orders migrated
+     * @see OrderService#migrateSnapshots()
+     */
+    @ResponseBody
+    @RequestMapping(value = "/migrations/snapshots", method = RequestMethod.POST)
+    @ApiOperation(value = "migrateSnapshots", notes = "Migrates stored Orders to embedded buyer and line snapshots.")
+    public ResponseEntity<OrderSnapshotMigration.Result> migrateSnapshots() {
+        return new ResponseEntity<>(service.migrateSnapshots(), HttpStatus.OK);
+    }
 
-        if (placedAfter != null && placedBefore != null) {
-            Date from = placedAfter;
-            Date to = placedBefore;
-            temp.addAll(service.findByPlacedOnBetween(from, to, pageable).getContent());
-        } else if (placedAfter != null) {
-            temp.addAll(service.findByPlacedOnAfter(placedAfter, pageable).getContent());
-        } else if (placedBefore != null) {
-            temp.addAll(service.findByPlacedOnBefore(placedBefore, pageable).getContent());
+    /**
+     * Export the orders matching the given filters, streamed from the database as they are written.
+     *
+     * @param format  the file format: csv, ndjson or xlsx
+     * @param request the request, given a longer timeout than other async requests
+     * @return the export as an attachment, or an HttpStatus.BAD_REQUEST if the format is unknown
+     * @see OrderService#stream(String, Date, Date)
+     */
+    @RequestMapping(value = "/export", method = RequestMethod.GET)
+    @ApiOperation(value = "export", notes = "Exports Orders as CSV, NDJSON or an .xlsx spreadsheet.")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", defaultValue = "csv", required = false) String format,
+                                                        @RequestParam(value = "buyerId", defaultValue = "", required = false) String buyerId,
+                                                        @RequestParam(value = "placedAfter", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date placedAfter,
+                                                        @RequestParam(value = "placedBefore", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date placedBefore,
+                                                        WebRequest request) {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        if (exportFormat == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
+        return Downloads.attachment(request, exportTimeoutMillis, "orders", exportFormat,
+                out -> exporter.export(service.stream(buyerId, placedAfter, placedBefore), exportFormat, ExportColumns.ORDERS, out));
+    }
 
-        Page<Order> result = new PageImpl<>(temp);
+    /**
+     * Scroll through orders in the system by placing date, one page after another. Pages are read after a
+     * cursor instead of an offset and are not counted, so every page costs the same however deep it is.
+     *
+     * @param sort   the placing date order: "placedOn,desc" for newest first, or "placedOn,asc"
+     * @param after  the cursor returned with the previous page, or empty for the first page
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the page of orders, with the cursor of the next page
+     * @see OrderService#scroll
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "after")
+    @ApiOperation(value = "scroll", notes = "Scrolls through Orders by their buyerId and/or placed date, after a cursor.")
+    public ResponseEntity<CursorPage<Order>> scroll(@RequestParam(value = "buyerId", defaultValue = "", required = false) String buyerId,
+                                                    @RequestParam(value = "placedAfter", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date placedAfter,
+                                                    @RequestParam(value = "placedBefore", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date placedBefore,
+                                                    @RequestParam(value = "sort", defaultValue = "placedOn,desc", required = false) String sort,
+                                                    @RequestParam(value = "after") String after,
+                                                    @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                                    @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        String[] cursor = Cursor.decode(after);
+        Sort.Direction direction = direction(sort);
+        int sz = Integer.parseInt(size);
+        if (cursor == null || (cursor.length != 0 && cursor.length != 2) || direction == null || sz < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        Date afterPlacedOn = null;
+        String afterId = null;
+        if (cursor.length == 2) {
+            try {
+                afterPlacedOn = cursor[0].isEmpty() ? null : new Date(Long.parseLong(cursor[0]));
+            } catch (NumberFormatException e) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            afterId = cursor[1];
+        }
+        CursorPage<Order> result = service.scroll(buyerId, placedAfter, placedBefore, direction, afterPlacedOn, afterId, sz, Projection.of(fields));
         return new ResponseEntity<>(result, HttpStatus.FOUND);
     }
 
-
     /**
      * Updates an existing order.
      *
      * @param id    the id of the order been order
      * @param order an order instance to persist
      * @return the order order or an HttpStatus.NOT_FOUND if the order been
-     * order does not exist
+     * order does not exist, or an HttpStatus.CONFLICT if it was changed by another request meanwhile
      * @see OrderService#updateById(String, Order)
      */
     @RequestMapping(value = "/{id}/update", method = RequestMethod.POST)
@@ -147,4 +384,17 @@ public class OrderController {
         service.deleteById(id);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
+
+    /**
+     * Parse a sort on the placing date, the only order the order indexes serve.
+     *
+     * @return the direction, or null if the sort is not on the placing date.
+     */
+    private static Sort.Direction direction(String sort) {
+        String[] parts = sort.split(",");
+        if (!"placedOn".equals(parts[0].trim()) || parts.length > 2) {
+            return null;
+        }
+        return parts.length == 1 ? Sort.Direction.ASC : Sort.Direction.fromStringOrNull(parts[1].trim());
+    }
 }
@@ -1,5 +1,6 @@
 package com.faison.controllers;
 
+import com.faison.idempotency.IdempotencyKeys;
 import com.faison.models.OrderItem;
 import com.faison.services.OrderItemService;
 import io.swagger.annotations.Api;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.ejb.EJB;
+import javax.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping(value = "/api/orderItems")
@@ -23,22 +25,34 @@ public class OrderItemController {
 
     @EJB
     private OrderItemService service;
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
 
     /**
      * Create a new orderItem in the system.
      *
-     * @param orderItem the orderItem to be created
-     * @return an HttpStatus.CREATED if orderItem was successfully created
+     * @param orderItem      the orderItem to be created
+     * @param idempotencyKey a key unique to this orderItem, so a retry returns the first response instead of
+     *                       creating the orderItem again
+     * @param request        the request, whose caller and raw body the key is bound to
+     * @return an HttpStatus.CREATED if orderItem was successfully created, or an HttpStatus.CONFLICT if a request
+     * with the same key is still running, or an HttpStatus.UNPROCESSABLE_ENTITY if the key was used with another
+     * orderItem
      * @see OrderItemService#create(OrderItem)
+     * @see IdempotencyKeys
      */
     @ResponseBody
     @RequestMapping(value = "/create", method = RequestMethod.POST)
     @ApiOperation(value = "create", notes = "Creates and saves a new OrderItem.")
-    public ResponseEntity<OrderItem> create(@RequestBody OrderItem orderItem) {
-        final OrderItem result = service.create(orderItem);
-        HttpHeaders headers = new HttpHeaders();
-        headers.setLocation(ServletUriComponentsBuilder.fromCurrentRequest().path("/").buildAndExpand("").toUri());
-        return new ResponseEntity<>(result, headers, HttpStatus.CREATED);
+    public ResponseEntity<OrderItem> create(@RequestBody OrderItem orderItem,
+                                            @RequestHeader(value = IdempotencyKeys.HEADER, required = false) String idempotencyKey,
+                                            HttpServletRequest request) {
+        return idempotencyKeys.execute("orderItems", idempotencyKey, request, OrderItem.class, () -> {
+            final OrderItem result = service.create(orderItem);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setLocation(ServletUriComponentsBuilder.fromCurrentRequest().path("/").buildAndExpand("").toUri());
+            return new ResponseEntity<>(result, headers, HttpStatus.CREATED);
+        });
     }
 
     /**
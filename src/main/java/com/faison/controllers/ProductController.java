@@ -1,32 +1,68 @@
 package com.faison.controllers;
 
+import com.faison.exports.ExportColumns;
+import com.faison.exports.ExportFormat;
+import com.faison.exports.Exporter;
+import com.faison.imports.ImportProgress;
+import com.faison.index.ProductFacets;
+import com.faison.index.ProductPriceIndex;
+import com.faison.index.ProductSuggester;
 import com.faison.models.Product;
+import com.faison.paging.Cursor;
+import com.faison.paging.CursorPage;
+import com.faison.paging.FacetedPage;
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.ProductCriteria;
+import com.faison.repositories.Projection;
+import com.faison.services.BatchResult;
+import com.faison.services.ProductImportService;
 import com.faison.services.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.ejb.EJB;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping(value = "/api/products")
 @Api(value = "Product Rest Controller")
 public class ProductController {
 
+    private static final int MAX_BUCKETS = 100;
+
     @EJB
     private ProductService service;
 
+    @EJB
+    private ProductImportService importService;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private Exporter exporter;
+
+    @Value("${shop.export.timeout-millis:3600000}")
+    private long exportTimeoutMillis;
+
     public ProductController(ProductService service) {
         this.service = service;
     }
@@ -51,75 +87,207 @@ public class ProductController {
     /**
      * Get product with given product id.
      *
-     * @param id the id of the product to return
-     * @return the product of given id
+     * @param id      the id of the product to return
+     * @param fields  the comma separated properties to return, or empty for all
+     * @param request the request, checked against the ETag and last write time of the product
+     * @return the product of given id, or an HttpStatus.NOT_MODIFIED if the client copy is current
      * @see ProductService#findById(String)
      */
     @ResponseBody
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
     @ApiOperation(value = "getById", notes = "Gets a Product by their id.")
-    public ResponseEntity<Product> getById(@PathVariable(value = "id") String id) {
+    public ResponseEntity<Product> getById(@PathVariable(value = "id") String id,
+                                           @RequestParam(value = "fields", defaultValue = "", required = false) String fields,
+                                           WebRequest request) {
+        if (Conditional.notModified(request, id, service.lastModified(id), fields)) {
+            service.recordView(id);
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         final Product result = service.findById(id);
+        if (result != null) {
+            service.recordView(id);
+        }
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
 
     /**
-     * Search for products in the system.
+     * Get the products with the given ids, in a single query.
      *
-     * @return the list of products
-     * @see ProductService#findAll(Pageable)
+     * @param ids the comma separated ids of the products to return
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the products found, in the order of the ids, and the ids that were not found
+     * @see ProductService#findByIds(List, Projection)
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "ids")
+    @ApiOperation(value = "getByIds", notes = "Gets Products by their ids.")
+    public ResponseEntity<BatchResult<Product>> getByIds(@RequestParam(value = "ids") List<String> ids,
+                                                         @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        final BatchResult<Product> result = service.findByIds(ids, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Search for products in the system. All supplied filters are combined into one query.
+     *
+     * @param subcategories true to include the products of the descendants of the category
+     * @param match         "all" to return products matching every filter, or "any" to return products
+     *                      matching at least one of them
+     * @param fields        the comma separated properties to return, or empty for all
+     * @param request       the request, checked against the ETag and last write time of the page
+     * @return the list of products, or an HttpStatus.NOT_MODIFIED if the client copy is current
+     * @see ProductService#search(ProductCriteria, Pageable, Projection)
      */
     @ResponseBody
     @RequestMapping(value = "", method = RequestMethod.GET)
-    @ApiOperation(value = "search", notes = "Searches for a Product by their name and/or description.")
-    public ResponseEntity<Page<Product>> search(@RequestParam(value = "name", defaultValue = "", required = false) String name,
+    @ApiOperation(value = "search", notes = "Searches for a Product by their name and/or description, or by text in either of them.")
+    public ResponseEntity<Page<Product>> search(@RequestParam(value = "q", defaultValue = "", required = false) String q,
+                                                @RequestParam(value = "name", defaultValue = "", required = false) String name,
                                                 @RequestParam(value = "description", defaultValue = "", required = false) String description,
                                                 @RequestParam(value = "categoryId", defaultValue = "", required = false) String categoryId,
+                                                @RequestParam(value = "subcategories", defaultValue = "false", required = false) boolean subcategories,
                                                 @RequestParam(value = "unitPriceEquals", defaultValue = "", required = false) String unitPriceEquals,
                                                 @RequestParam(value = "unitPriceLessThan", defaultValue = "", required = false) String unitPriceLessThan,
                                                 @RequestParam(value = "unitPriceGreaterThan", defaultValue = "", required = false) String unitPriceGreaterThan,
+                                                @RequestParam(value = "match", defaultValue = "all", required = false) String match,
                                                 @RequestParam(value = "page", defaultValue = "0", required = false) String page,
-                                                @RequestParam(value = "size", defaultValue = "10", required = false) String size) {
+                                                @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                                @RequestParam(value = "fields", defaultValue = "", required = false) String fields,
+                                                WebRequest request) {
         int pg = Integer.parseInt(page);
         int sz = Integer.parseInt(size);
         Pageable pageable = new PageRequest(pg, sz);
-        List<Product> temp = new ArrayList<>();
 
-        String all = name + description + categoryId + unitPriceEquals + unitPriceGreaterThan + unitPriceLessThan;
-        if (all.isEmpty()) {
-            temp.addAll(service.findAll(pageable).getContent());
-        }
+        ProductCriteria criteria = criteria(q, name, description, categoryId, subcategories,
+                unitPriceEquals, unitPriceLessThan, unitPriceGreaterThan, match);
 
-        if (!name.isEmpty()) {
-            temp.addAll(service.findByNameLike(name, pageable).getContent());
+        Page<Product> result = service.search(criteria, pageable, Projection.of(Conditional.withLastModified(fields)));
+        if (Conditional.notModified(request, result, Product::getId, Product::getLastModified, fields)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         }
-        if (!description.isEmpty()) {
-            temp.addAll(service.findByDescriptionLike(description, pageable).getContent());
-        }
-        if (!categoryId.isEmpty()) {
-            temp.addAll(service.findByCategoryId(categoryId, pageable).getContent());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Search for products and count the matches per category and per price bucket. Takes the same filters as
+     * {@link #search}; the facet counts come from one in-memory scan, not from extra queries.
+     *
+     * @param facets       false to skip the facet counts
+     * @param priceBuckets comma separated ascending price bounds, or empty for five equally wide buckets
+     * @return the page of products with the facet counts
+     * @see ProductService#facets(ProductCriteria, double[])
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = {"facets", "!after"})
+    @ApiOperation(value = "facetedSearch", notes = "Searches for Products and counts them per category and price bucket.")
+    public ResponseEntity<FacetedPage<Product, ProductFacets>> facetedSearch(@RequestParam(value = "q", defaultValue = "", required = false) String q,
+                                                                             @RequestParam(value = "name", defaultValue = "", required = false) String name,
+                                                                             @RequestParam(value = "description", defaultValue = "", required = false) String description,
+                                                                             @RequestParam(value = "categoryId", defaultValue = "", required = false) String categoryId,
+                                                                             @RequestParam(value = "subcategories", defaultValue = "false", required = false) boolean subcategories,
+                                                                             @RequestParam(value = "unitPriceEquals", defaultValue = "", required = false) String unitPriceEquals,
+                                                                             @RequestParam(value = "unitPriceLessThan", defaultValue = "", required = false) String unitPriceLessThan,
+                                                                             @RequestParam(value = "unitPriceGreaterThan", defaultValue = "", required = false) String unitPriceGreaterThan,
+                                                                             @RequestParam(value = "match", defaultValue = "all", required = false) String match,
+                                                                             @RequestParam(value = "facets") boolean facets,
+                                                                             @RequestParam(value = "priceBuckets", defaultValue = "", required = false) String priceBuckets,
+                                                                             @RequestParam(value = "page", defaultValue = "0", required = false) String page,
+                                                                             @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                                                             @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        int pg = Integer.parseInt(page);
+        int sz = Integer.parseInt(size);
+        Pageable pageable = new PageRequest(pg, sz);
+        double[] bounds = parseBounds(priceBuckets);
+        if (bounds != null) {
+            double[] sorted = bounds.clone();
+            Arrays.sort(sorted);
+            if (bounds.length < 2 || !Arrays.equals(bounds, sorted)) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
         }
-        if (!unitPriceEquals.isEmpty()) {
-            double price = Double.parseDouble(unitPriceEquals);
-            temp.addAll(service.findByUnitPrice(price, pageable).getContent());
+
+        ProductCriteria criteria = criteria(q, name, description, categoryId, subcategories,
+                unitPriceEquals, unitPriceLessThan, unitPriceGreaterThan, match);
+        Page<Product> result = service.search(criteria, pageable, Projection.of(fields));
+        ProductFacets counts = facets ? service.facets(criteria, bounds) : null;
+        return new ResponseEntity<>(new FacetedPage<>(result, counts), HttpStatus.OK);
+    }
+
+    /**
+     * Suggest product names for the text typed so far in the search box.
+     *
+     * @param prefix the text typed so far
+     * @param limit  the maximum number of names to return, at most 10
+     * @return the product names starting with the prefix, most popular first, or an HttpStatus.BAD_REQUEST if the
+     * limit is less than 1
+     * @see ProductService#suggest(String, int)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/suggest", method = RequestMethod.GET)
+    @ApiOperation(value = "suggest", notes = "Suggests Product names starting with a prefix.")
+    public ResponseEntity<List<ProductSuggester.Suggestion>> suggest(@RequestParam(value = "prefix", defaultValue = "", required = false) String prefix,
+                                                                     @RequestParam(value = "limit", defaultValue = "10", required = false) String limit) {
+        int max = Integer.parseInt(limit);
+        if (max < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        if (!unitPriceGreaterThan.isEmpty() && !unitPriceLessThan.isEmpty()) {
-            double from = Double.parseDouble(unitPriceGreaterThan);
-            double to = Double.parseDouble(unitPriceLessThan);
-            temp.addAll(service.findByUnitPriceBetween(from, to, pageable).getContent());
-        } else if (!unitPriceLessThan.isEmpty()) {
-            double price = Double.parseDouble(unitPriceLessThan);
-            temp.addAll(service.findByUnitPriceLessThan(price, pageable).getContent());
-        } else if (!unitPriceGreaterThan.isEmpty()) {
-            double price = Double.parseDouble(unitPriceGreaterThan);
-            temp.addAll(service.findByUnitPriceGreaterThan(price, pageable).getContent());
+        return new ResponseEntity<>(service.suggest(prefix, max), HttpStatus.OK);
+    }
+
+    /**
+     * Count products per price bucket, for the catalog price filter.
+     *
+     * @param buckets the number of equally wide price buckets, from 1 to {@value #MAX_BUCKETS}
+     * @return the bucket bounds and the number of products in each bucket, or an HttpStatus.BAD_REQUEST if the
+     * number of buckets is out of range
+     * @see ProductService#priceHistogram(int)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/prices/histogram", method = RequestMethod.GET)
+    @ApiOperation(value = "priceHistogram", notes = "Counts Products per price bucket.")
+    public ResponseEntity<ProductPriceIndex.PriceHistogram> priceHistogram(@RequestParam(value = "buckets", defaultValue = "10", required = false) String buckets) {
+        int count = Integer.parseInt(buckets);
+        if (count < 1 || count > MAX_BUCKETS) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
+        return new ResponseEntity<>(service.priceHistogram(count), HttpStatus.OK);
+    }
 
-        Page<Product> result = new PageImpl<>(temp);
+    /**
+     * Scroll through products in the system, one page after another. Pages are read after a cursor instead of
+     * an offset and are not counted, so every page costs the same however deep it is.
+     *
+     * @param after  the cursor returned with the previous page, or empty for the first page
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the page of products, with the cursor of the next page
+     * @see ProductService#scroll
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "after")
+    @ApiOperation(value = "scroll", notes = "Scrolls through Products by their name, description, category or price, after a cursor.")
+    public ResponseEntity<CursorPage<Product>> scroll(@RequestParam(value = "q", defaultValue = "", required = false) String q,
+                                                      @RequestParam(value = "name", defaultValue = "", required = false) String name,
+                                                      @RequestParam(value = "description", defaultValue = "", required = false) String description,
+                                                      @RequestParam(value = "categoryId", defaultValue = "", required = false) String categoryId,
+                                                      @RequestParam(value = "subcategories", defaultValue = "false", required = false) boolean subcategories,
+                                                      @RequestParam(value = "unitPriceEquals", defaultValue = "", required = false) String unitPriceEquals,
+                                                      @RequestParam(value = "unitPriceLessThan", defaultValue = "", required = false) String unitPriceLessThan,
+                                                      @RequestParam(value = "unitPriceGreaterThan", defaultValue = "", required = false) String unitPriceGreaterThan,
+                                                      @RequestParam(value = "match", defaultValue = "all", required = false) String match,
+                                                      @RequestParam(value = "after") String after,
+                                                      @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                                      @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        String[] cursor = Cursor.decode(after);
+        int sz = Integer.parseInt(size);
+        if (cursor == null || cursor.length > 1 || sz < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        ProductCriteria criteria = criteria(q, name, description, categoryId, subcategories,
+                unitPriceEquals, unitPriceLessThan, unitPriceGreaterThan, match);
+        CursorPage<Product> result = service.scroll(criteria, cursor.length == 0 ? null : cursor[0], sz, Projection.of(fields));
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
 
-
     /**
      * Updates an existing product.
      *
@@ -139,6 +307,30 @@ public class ProductController {
         return new ResponseEntity<>(product, HttpStatus.OK);
     }
 
+    /**
+     * Set the units of a product on hand. Orders then reserve units of the product when they are created, and
+     * are refused once none are left.
+     *
+     * @param id    the id of the product
+     * @param units the units on hand, or empty to stop tracking the stock of the product
+     * @return an HttpStatus.NO_CONTENT, or an HttpStatus.NOT_FOUND if the product does not exist, or an
+     * HttpStatus.BAD_REQUEST if the units are negative
+     * @see ProductService#setStock(String, Integer)
+     */
+    @RequestMapping(value = "/{id}/stock", method = RequestMethod.POST)
+    @ApiOperation(value = "setStock", notes = "Sets the units of a Product on hand, or stops tracking them.")
+    public ResponseEntity<Product> setStock(@PathVariable("id") String id,
+                                            @RequestParam(value = "units", defaultValue = "", required = false) String units) {
+        Integer stock = units.isEmpty() ? null : Integer.valueOf(units);
+        if (stock != null && stock < 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (!service.setStock(id, stock)) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
     /**
      * Deletes a product from the system.
      *
@@ -153,4 +345,156 @@ public class ProductController {
         service.deleteById(id);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
+
+    /**
+     * Create many products at once. The body is a JSON array of products, read and written in batches as it
+     * streams in.
+     *
+     * @param body the JSON array of products to be created
+     * @return the outcome of every product, by position in the array, or an HttpStatus.BAD_REQUEST with the
+     * outcome of the products read before the body turned out malformed
+     * @see ProductService#createAll(List)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/bulk/create", method = RequestMethod.POST)
+    @ApiOperation(value = "bulkCreate", notes = "Creates and saves many new Products.")
+    public ResponseEntity<List<BulkItemResult>> bulkCreate(InputStream body) throws IOException {
+        return bulk(body, Product.class, service::createAll);
+    }
+
+    /**
+     * Replace many existing products at once. The body is a JSON array of products, each with its id.
+     *
+     * @param body the JSON array of products to be saved
+     * @return the outcome of every product, by position in the array
+     * @see ProductService#updateAll(List)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/bulk/update", method = RequestMethod.POST)
+    @ApiOperation(value = "bulkUpdate", notes = "Updates many existing Products.")
+    public ResponseEntity<List<BulkItemResult>> bulkUpdate(InputStream body) throws IOException {
+        return bulk(body, Product.class, service::updateAll);
+    }
+
+    /**
+     * Delete many products at once. The body is a JSON array of product ids.
+     *
+     * @param body the JSON array of the ids of the products to be deleted
+     * @return the outcome of every id, by position in the array
+     * @see ProductService#deleteAll(List)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/bulk/delete", method = RequestMethod.POST)
+    @ApiOperation(value = "bulkDelete", notes = "Deletes many Products.")
+    public ResponseEntity<List<BulkItemResult>> bulkDelete(InputStream body) throws IOException {
+        return bulk(body, String.class, service::deleteAll);
+    }
+
+    /**
+     * Export the products matching the given filters, streamed from the database as they are written.
+     *
+     * @param format  the file format: csv, ndjson or xlsx
+     * @param request the request, given a longer timeout than other async requests
+     * @return the export as an attachment, or an HttpStatus.BAD_REQUEST if the format is unknown
+     * @see ProductService#stream(ProductCriteria)
+     */
+    @RequestMapping(value = "/export", method = RequestMethod.GET)
+    @ApiOperation(value = "export", notes = "Exports Products as CSV, NDJSON or an .xlsx spreadsheet.")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", defaultValue = "csv", required = false) String format,
+                                                        @RequestParam(value = "q", defaultValue = "", required = false) String q,
+                                                        @RequestParam(value = "name", defaultValue = "", required = false) String name,
+                                                        @RequestParam(value = "description", defaultValue = "", required = false) String description,
+                                                        @RequestParam(value = "categoryId", defaultValue = "", required = false) String categoryId,
+                                                        @RequestParam(value = "subcategories", defaultValue = "false", required = false) boolean subcategories,
+                                                        @RequestParam(value = "unitPriceEquals", defaultValue = "", required = false) String unitPriceEquals,
+                                                        @RequestParam(value = "unitPriceLessThan", defaultValue = "", required = false) String unitPriceLessThan,
+                                                        @RequestParam(value = "unitPriceGreaterThan", defaultValue = "", required = false) String unitPriceGreaterThan,
+                                                        @RequestParam(value = "match", defaultValue = "all", required = false) String match,
+                                                        WebRequest request) {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        if (exportFormat == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        ProductCriteria criteria = criteria(q, name, description, categoryId, subcategories,
+                unitPriceEquals, unitPriceLessThan, unitPriceGreaterThan, match);
+        return Downloads.attachment(request, exportTimeoutMillis, "products", exportFormat,
+                out -> exporter.export(service.stream(criteria), exportFormat, ExportColumns.PRODUCTS, out));
+    }
+
+    /**
+     * Import a product catalog from an .xlsx or .csv spreadsheet. The import runs in the background; poll the
+     * returned location for its progress.
+     *
+     * @param file the spreadsheet, with a header row naming its columns
+     * @return an HttpStatus.ACCEPTED with the progress of the import
+     * @see ProductImportService#submit(MultipartFile)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/import", method = RequestMethod.POST)
+    @ApiOperation(value = "import", notes = "Imports Products from an .xlsx or .csv spreadsheet.")
+    public ResponseEntity<ImportProgress> importCatalog(@RequestParam("file") MultipartFile file) throws IOException {
+        final ImportProgress result = importService.submit(file);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setLocation(ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/products/imports/{id}").buildAndExpand(result.getId()).toUri());
+        return new ResponseEntity<>(result, headers, HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Get the progress of a catalog import.
+     *
+     * @param id the id of the import
+     * @return the progress, or an HttpStatus.NOT_FOUND if there is no such import
+     * @see ProductImportService#progress(String)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/imports/{id}", method = RequestMethod.GET)
+    @ApiOperation(value = "importProgress", notes = "Gets the progress of a Product import.")
+    public ResponseEntity<ImportProgress> importProgress(@PathVariable("id") String id) {
+        final ImportProgress result = importService.progress(id);
+        if (result == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    private <T> ResponseEntity<List<BulkItemResult>> bulk(InputStream body, Class<T> type,
+                                                          Function<List<T>, List<BulkItemResult>> writer) throws IOException {
+        try {
+            return new ResponseEntity<>(BulkBody.process(mapper, body, type, writer), HttpStatus.OK);
+        } catch (BulkBody.MalformedBodyException e) {
+            return new ResponseEntity<>(e.getResults(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private static ProductCriteria criteria(String q, String name, String description, String categoryId, boolean subcategories,
+                                            String unitPriceEquals, String unitPriceLessThan, String unitPriceGreaterThan,
+                                            String match) {
+        return new ProductCriteria()
+                .setText(q)
+                .setName(name)
+                .setDescription(description)
+                .setCategoryId(categoryId)
+                .setIncludeSubcategories(subcategories)
+                .setUnitPriceEquals(parsePrice(unitPriceEquals))
+                .setUnitPriceLessThan(parsePrice(unitPriceLessThan))
+                .setUnitPriceGreaterThan(parsePrice(unitPriceGreaterThan))
+                .setMatchAny("any".equalsIgnoreCase(match));
+    }
+
+    private static double[] parseBounds(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        double[] bounds = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            bounds[i] = Double.parseDouble(parts[i].trim());
+        }
+        return bounds;
+    }
+
+    private static Double parsePrice(String value) {
+        return value.isEmpty() ? null : Double.parseDouble(value);
+    }
 }
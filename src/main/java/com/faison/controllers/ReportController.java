@@ -0,0 +1,129 @@
+package com.faison.controllers;
+
+import com.faison.rollups.BackfillProgress;
+import com.faison.rollups.Dimension;
+import com.faison.rollups.Granularity;
+import com.faison.rollups.SalesRollup;
+import com.faison.rollups.SalesTotal;
+import com.faison.services.SalesReportService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.ejb.EJB;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * RestController that reports sales from the pre-aggregated rollups
+ *
+ * @see SalesReportService
+ */
+@RestController
+@RequestMapping(value = "/api/reports")
+@Api(value = "Report Rest Controller")
+public class ReportController {
+
+    @EJB
+    private SalesReportService service;
+
+    /**
+     * Get the sales of one product, category or buyer, bucket by bucket.
+     *
+     * @param dimension   product, category or buyer
+     * @param key         the id of the product, category or buyer
+     * @param granularity hour or day
+     * @param from        the first day of the report
+     * @param to          the day after the last one of the report
+     * @return the buckets with sales, oldest first, or an HttpStatus.BAD_REQUEST if the dimension or granularity
+     * is unknown
+     * @see SalesReportService#series(Dimension, String, Granularity, Date, Date)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/sales/{dimension}/{key}", method = RequestMethod.GET)
+    @ApiOperation(value = "series", notes = "Gets the hourly or daily sales of a Product, Category or buyer.")
+    public ResponseEntity<List<SalesRollup>> series(@PathVariable("dimension") String dimension,
+                                                    @PathVariable("key") String key,
+                                                    @RequestParam(value = "granularity", defaultValue = "day", required = false) String granularity,
+                                                    @RequestParam(value = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                    @RequestParam(value = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to) {
+        Dimension dim = Dimension.of(dimension);
+        Granularity gran = Granularity.of(granularity);
+        if (dim == null || gran == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<SalesRollup> result = service.series(dim, key, gran, from, to);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Get the products, categories or buyers with the most revenue in a range of days.
+     *
+     * @param dimension   product, category or buyer
+     * @param granularity the buckets to sum, hour or day
+     * @param from        the first day of the report
+     * @param to          the day after the last one of the report
+     * @param limit       the number of totals to return
+     * @return the totals, highest revenue first, or an HttpStatus.BAD_REQUEST if the dimension, granularity or
+     * limit is invalid
+     * @see SalesReportService#top(Dimension, Granularity, Date, Date, int)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/sales/{dimension}", method = RequestMethod.GET)
+    @ApiOperation(value = "top", notes = "Gets the Products, Categories or buyers with the most revenue.")
+    public ResponseEntity<List<SalesTotal>> top(@PathVariable("dimension") String dimension,
+                                                @RequestParam(value = "granularity", defaultValue = "day", required = false) String granularity,
+                                                @RequestParam(value = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                @RequestParam(value = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to,
+                                                @RequestParam(value = "limit", defaultValue = "10", required = false) String limit) {
+        Dimension dim = Dimension.of(dimension);
+        Granularity gran = Granularity.of(granularity);
+        int lim = Integer.parseInt(limit);
+        if (dim == null || gran == null || lim < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<SalesTotal> result = service.top(dim, gran, from, to, lim);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Start rebuilding the sales rollups from the orders, in the background.
+     *
+     * @param from the first day to rebuild, or none for the day of the first order
+     * @param to   the day after the last one to rebuild, or none for the day after the last order
+     * @return the progress of the backfill with an HttpStatus.ACCEPTED, or an HttpStatus.CONFLICT if one is
+     * already running
+     * @see SalesReportService#backfill(Date, Date)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/sales/backfill", method = RequestMethod.POST)
+    @ApiOperation(value = "backfill", notes = "Rebuilds the sales rollups from the orders, in parallel.")
+    public ResponseEntity<BackfillProgress> backfill(@RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                     @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to) {
+        BackfillProgress result = service.backfill(from, to);
+        if (result == null) {
+            return new ResponseEntity<>(service.backfillProgress(), HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(result, HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Get the progress of the last backfill.
+     *
+     * @return the progress, or an HttpStatus.NOT_FOUND if no backfill was started
+     * @see SalesReportService#backfillProgress()
+     */
+    @ResponseBody
+    @RequestMapping(value = "/sales/backfill", method = RequestMethod.GET)
+    @ApiOperation(value = "backfillProgress", notes = "Gets the progress of the last sales rollup backfill.")
+    public ResponseEntity<BackfillProgress> backfillProgress() {
+        BackfillProgress result = service.backfillProgress();
+        if (result == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+}
@@ -33,7 +33,8 @@ public class SessionController {
     }
 
     /**
-     * Create a new session in the system.
+     * Create a new session in the system. Logins take no idempotency key: a replayed session would hand its
+     * access token to whoever resends the key.
      *
      * @param password the password of the user who is attempting to login
      * @param email    the email of the user who is attempting to login
@@ -1,6 +1,9 @@
 package com.faison.controllers;
 
 import com.faison.models.Supplier;
+import com.faison.paging.Cursor;
+import com.faison.paging.CursorPage;
+import com.faison.repositories.Projection;
 import com.faison.services.SupplierService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -13,6 +16,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.ejb.EJB;
@@ -52,14 +56,21 @@ public class SupplierController {
     /**
      * Get supplier with given supplier id.
      *
-     * @param id the id of the supplier to return
-     * @return the supplier of given id
+     * @param id      the id of the supplier to return
+     * @param fields  the comma separated properties to return, or empty for all
+     * @param request the request, checked against the ETag and last write time of the supplier
+     * @return the supplier of given id, or an HttpStatus.NOT_MODIFIED if the client copy is current
      * @see SupplierService#findById(String)
      */
     @ResponseBody
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
     @ApiOperation(value = "getById", notes = "Gets a Supplier by their id.")
-    public ResponseEntity<Supplier> getById(@PathVariable(value = "id") String id) {
+    public ResponseEntity<Supplier> getById(@PathVariable(value = "id") String id,
+                                            @RequestParam(value = "fields", defaultValue = "", required = false) String fields,
+                                            WebRequest request) {
+        if (Conditional.notModified(request, id, service.lastModified(id), fields)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         final Supplier result = service.findById(id);
         return new ResponseEntity<>(result, HttpStatus.FOUND);
     }
@@ -103,6 +114,33 @@ public class SupplierController {
     }
 
 
+    /**
+     * Scroll through suppliers in the system, one page after another. Pages are read after a cursor instead of
+     * an offset and are not counted, so every page costs the same however deep it is.
+     *
+     * @param after  the cursor returned with the previous page, or empty for the first page
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the page of suppliers, with the cursor of the next page
+     * @see SupplierService#scroll
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "after")
+    @ApiOperation(value = "scroll", notes = "Scrolls through Suppliers by their name, email or phone number, after a cursor.")
+    public ResponseEntity<CursorPage<Supplier>> scroll(@RequestParam(value = "name", defaultValue = "", required = false) String name,
+                                                       @RequestParam(value = "email", defaultValue = "", required = false) String email,
+                                                       @RequestParam(value = "phoneNumber", defaultValue = "", required = false) String phoneNumber,
+                                                       @RequestParam(value = "after") String after,
+                                                       @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                                       @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        String[] cursor = Cursor.decode(after);
+        int sz = Integer.parseInt(size);
+        if (cursor == null || cursor.length > 1 || sz < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        CursorPage<Supplier> result = service.scroll(name, email, phoneNumber, cursor.length == 0 ? null : cursor[0], sz, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
+    }
+
     /**
      * Updates an existing supplier.
      *
@@ -1,6 +1,10 @@
 package com.faison.controllers;
 
 import com.faison.models.User;
+import com.faison.paging.Cursor;
+import com.faison.paging.CursorPage;
+import com.faison.repositories.Projection;
+import com.faison.services.BatchResult;
 import com.faison.services.UserService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -17,6 +21,7 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.ejb.EJB;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * RestController that handles request for {@link User} objects
@@ -69,6 +74,23 @@ public class UserController {
         return new ResponseEntity<>(result, HttpStatus.FOUND);
     }
 
+    /**
+     * Get the users with the given ids, in a single query.
+     *
+     * @param ids the comma separated ids of the users to return
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the users found, in the order of the ids, and the ids that were not found
+     * @see UserService#findByIds(List, Projection)
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "ids")
+    @ApiOperation(value = "getByIds", notes = "Gets Users by their ids.")
+    public ResponseEntity<BatchResult<User>> getByIds(@RequestParam(value = "ids") List<String> ids,
+                                                      @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        final BatchResult<User> result = service.findByIds(ids, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
+    }
+
     /**
      * Search for users in the system.
      *
@@ -100,6 +122,32 @@ public class UserController {
     }
 
 
+    /**
+     * Scroll through users in the system, one page after another. Pages are read after a cursor instead of
+     * an offset and are not counted, so every page costs the same however deep it is.
+     *
+     * @param after  the cursor returned with the previous page, or empty for the first page
+     * @param fields the comma separated properties to return, or empty for all
+     * @return the page of users, with the cursor of the next page
+     * @see UserService#scroll
+     */
+    @ResponseBody
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "after")
+    @ApiOperation(value = "scroll", notes = "Scrolls through Users by their name and/or email, after a cursor.")
+    public ResponseEntity<CursorPage<User>> scroll(@RequestParam(value = "email", defaultValue = "", required = false) String email,
+                                                   @RequestParam(value = "name", defaultValue = "", required = false) String name,
+                                                   @RequestParam(value = "after") String after,
+                                                   @RequestParam(value = "size", defaultValue = "10", required = false) String size,
+                                                   @RequestParam(value = "fields", defaultValue = "", required = false) String fields) {
+        String[] cursor = Cursor.decode(after);
+        int sz = Integer.parseInt(size);
+        if (cursor == null || cursor.length > 1 || sz < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        CursorPage<User> result = service.scroll(name, email, cursor.length == 0 ? null : cursor[0], sz, Projection.of(fields));
+        return new ResponseEntity<>(result, HttpStatus.FOUND);
+    }
+
     /**
      * Updates an existing user.
      *
@@ -0,0 +1,38 @@
+package com.faison.events;
+
+import java.util.List;
+
+/**
+ * A batch of consecutive {@link OrderEvent}, with the offset to read the next batch from.
+ */
+public class EventBatch {
+
+    private final List<OrderEvent> events;
+    private final long next;
+    private final boolean skipped;
+
+    EventBatch(List<OrderEvent> events, long next, boolean skipped) {
+        this.events = events;
+        this.next = next;
+        this.skipped = skipped;
+    }
+
+    public List<OrderEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return the offset to read from next: after the last event of the batch, or where it started if it is
+     * empty.
+     */
+    public long getNext() {
+        return next;
+    }
+
+    /**
+     * @return true if events after the offset asked for are no longer in the log, and the batch starts later.
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+}
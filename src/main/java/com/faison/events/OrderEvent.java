@@ -0,0 +1,132 @@
+package com.faison.events;
+
+import com.faison.models.Order;
+
+import java.util.Date;
+
+/**
+ * A change to an {@link Order}, as published in the {@link OrderEvents} log. It carries the properties
+ * consumers route on; the whole order can be read by its id.
+ */
+public class OrderEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        /**
+         * An update that marked the order as delivered.
+         */
+        DELIVERED,
+        DELETED
+    }
+
+    private long offset;
+    private Type type;
+    private Date at;
+    private String orderId;
+    private String buyerId;
+    private Date placedOn;
+    private double cost;
+    private double shippingFee;
+    private boolean deliveredStatus;
+
+    public OrderEvent() {
+    }
+
+    static OrderEvent of(Type type, Order order) {
+        OrderEvent event = new OrderEvent();
+        event.type = type;
+        event.at = type != Type.DELETED && order.getLastModified() != null ? order.getLastModified() : new Date();
+        event.orderId = order.getId();
+        event.buyerId = order.getBuyerId();
+        event.placedOn = order.getPlacedOn();
+        event.cost = order.getCost();
+        event.shippingFee = order.getShippingFee();
+        event.deliveredStatus = order.isDeliveredStatus();
+        return event;
+    }
+
+    /**
+     * @return the position of the event in the log; the next event to read is at the following one.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public OrderEvent setOffset(long offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public OrderEvent setType(Type type) {
+        this.type = type;
+        return this;
+    }
+
+    public Date getAt() {
+        return at;
+    }
+
+    public OrderEvent setAt(Date at) {
+        this.at = at;
+        return this;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public OrderEvent setOrderId(String orderId) {
+        this.orderId = orderId;
+        return this;
+    }
+
+    public String getBuyerId() {
+        return buyerId;
+    }
+
+    public OrderEvent setBuyerId(String buyerId) {
+        this.buyerId = buyerId;
+        return this;
+    }
+
+    public Date getPlacedOn() {
+        return placedOn;
+    }
+
+    public OrderEvent setPlacedOn(Date placedOn) {
+        this.placedOn = placedOn;
+        return this;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public OrderEvent setCost(double cost) {
+        this.cost = cost;
+        return this;
+    }
+
+    public double getShippingFee() {
+        return shippingFee;
+    }
+
+    public OrderEvent setShippingFee(double shippingFee) {
+        this.shippingFee = shippingFee;
+        return this;
+    }
+
+    public boolean isDeliveredStatus() {
+        return deliveredStatus;
+    }
+
+    public OrderEvent setDeliveredStatus(boolean deliveredStatus) {
+        this.deliveredStatus = deliveredStatus;
+        return this;
+    }
+}
@@ -0,0 +1,173 @@
+package com.faison.events;
+
+import com.faison.models.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes every change to an {@link Order} in a {@link SegmentLog} on local disk, so other systems can follow
+ * the orders by offset instead of polling the database. An event is appended once its write has succeeded, and
+ * the log is flushed every {@code shop.orders.events.flush-millis}.
+ * <p>
+ * The database has no transaction spanning the order and the log, so an event can be lost if the application
+ * dies between the two; consumers that cannot tolerate that should reconcile from the orders now and then.
+ * Events are only served once flushed, so they reach consumers up to {@code shop.orders.events.flush-millis}
+ * after the write. Events appended since the last flush are lost if the machine crashes, and the events
+ * appended after the restart take their offsets again, but as none of them was served, an offset a consumer
+ * has read never changes meaning.
+ * Events are written by the instance that made the change, so every instance serves its own log.
+ */
+@Component
+public class OrderEvents {
+
+    private final Logger log = LoggerFactory.getLogger(OrderEvents.class);
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Value("${shop.orders.events.directory:order-events}")
+    private String directory;
+
+    @Value("${shop.orders.events.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${shop.orders.events.retain-segments:16}")
+    private int retainSegments;
+
+    @Value("${shop.orders.events.flush-millis:1000}")
+    private long flushMillis;
+
+    @Value("${shop.orders.events.max-wait-millis:30000}")
+    private long maxWaitMillis;
+
+    private SegmentLog events;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-events-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void open() throws IOException {
+        events = SegmentLog.open(Paths.get(directory), segmentBytes, retainSegments);
+        flusher.scheduleWithFixedDelay(events::force, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        events.close();
+    }
+
+    /**
+     * @param order A saved new order.
+     */
+    public void created(Order order) {
+        append(OrderEvent.of(OrderEvent.Type.CREATED, order));
+    }
+
+    /**
+     * @param before The order before the write, or null if unknown.
+     * @param after  The saved order.
+     */
+    public void updated(Order before, Order after) {
+        boolean delivered = after.isDeliveredStatus() && (before == null || !before.isDeliveredStatus());
+        append(OrderEvent.of(delivered ? OrderEvent.Type.DELIVERED : OrderEvent.Type.UPDATED, after));
+    }
+
+    /**
+     * @param order The deleted order, read with at least its buyer and placing date.
+     */
+    public void deleted(Order order) {
+        append(OrderEvent.of(OrderEvent.Type.DELETED, order));
+    }
+
+    /**
+     * @param orders The new orders written in bulk.
+     */
+    public void created(List<Order> orders) {
+        for (Order order : orders) {
+            created(order);
+        }
+    }
+
+    /**
+     * @param before The orders before the write, in the order of the saved ones.
+     * @param after  The orders saved in bulk.
+     */
+    public void updated(List<Order> before, List<Order> after) {
+        for (int i = 0; i < after.size(); i++) {
+            updated(before.get(i), after.get(i));
+        }
+    }
+
+    /**
+     * @param orders The orders deleted in bulk.
+     */
+    public void deleted(List<Order> orders) {
+        for (Order order : orders) {
+            deleted(order);
+        }
+    }
+
+    /**
+     * Read the events from the given offset on, waiting for the next one if there are none yet.
+     *
+     * @param from       The offset of the first event wanted, the next offset of the previous batch.
+     * @param max        The maximum number of events to return.
+     * @param waitMillis The longest time to wait for an event, capped by
+     *                   {@code shop.orders.events.max-wait-millis}.
+     * @return the events, oldest first.
+     * @throws IllegalArgumentException if the offset is past the end of the log.
+     * @throws InterruptedException     if interrupted while waiting.
+     */
+    public EventBatch read(long from, int max, long waitMillis) throws InterruptedException {
+        if (from < 0 || from > events.flushed()) {
+            throw new IllegalArgumentException("The log ends at offset " + events.flushed() + ".");
+        }
+        if (waitMillis > 0) {
+            events.await(from, Math.min(waitMillis, maxWaitMillis));
+        }
+        List<byte[]> entries = new ArrayList<>();
+        long first = events.read(from, max, entries);
+        List<OrderEvent> result = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                result.add(mapper.readValue(entries.get(i), OrderEvent.class).setOffset(first + i));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unreadable event at offset " + (first + i), e);
+            }
+        }
+        return new EventBatch(result, first + entries.size(), first > from);
+    }
+
+    /**
+     * @return the offset after the last event served, the end of the log for consumers.
+     */
+    public long next() {
+        return events.flushed();
+    }
+
+    private void append(OrderEvent event) {
+        try {
+            events.append(mapper.writeValueAsBytes(event));
+        } catch (IOException | RuntimeException e) {
+            // The order is already written; failing the request would only make the client retry it.
+            log.error("Could not publish the {} event of order {}", event.getType(), event.getOrderId(), e);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.faison.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of entries numbered by offset, stored in memory-mapped segment files of a fixed size. The
+ * first entry of the log has offset 0 and every entry appended gets the next one, across restarts, so a reader
+ * can remember the offset it stopped at and carry on from there.
+ * <p>
+ * A segment is named after the offset of its first entry, and holds entries back to back, each one as its
+ * length, the CRC32 of its bytes and its bytes. The length is written last, so a segment ends at the first entry
+ * with no length or a wrong checksum, which drops an entry cut short by a crash. Segments are flushed to disk on
+ * {@link #force()} and when they fill up; the oldest ones are deleted past the number retained.
+ * <p>
+ * Entries are only read once they are flushed. Entries not yet flushed when the machine crashes are lost, and
+ * the entries appended after the restart take their offsets again; since no reader has seen them, an offset
+ * once read always names the same entry.
+ * <p>
+ * Appends are serialized. Reads only take the lock to find where to start, then copy entries straight out of
+ * the mapped files, so readers do not hold up writers.
+ */
+public class SegmentLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+    /**
+     * The number of entries between two positions kept in the index of a segment.
+     */
+    private static final int INDEX_INTERVAL = 64;
+    private static final String SUFFIX = ".log";
+
+    private final Logger log = LoggerFactory.getLogger(SegmentLog.class);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int retainSegments;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private volatile long next;
+    /**
+     * The offset after the last entry flushed to disk, up to which entries are read.
+     */
+    private volatile long flushed;
+
+    private SegmentLog(Path directory, int segmentBytes, int retainSegments) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retainSegments = retainSegments;
+    }
+
+    /**
+     * Open the log in the given directory, creating it if needed, and recover the segments left by a previous
+     * run.
+     *
+     * @param directory      The directory of the segment files.
+     * @param segmentBytes   The size of a new segment file.
+     * @param retainSegments The number of segments to keep, the one being written included.
+     * @return the open log, positioned after its last entry.
+     * @throws IOException if a segment cannot be opened.
+     */
+    public static SegmentLog open(Path directory, int segmentBytes, int retainSegments) throws IOException {
+        if (segmentBytes <= HEADER_BYTES || retainSegments < 1) {
+            throw new IllegalArgumentException("A log needs room for an entry and at least one segment.");
+        }
+        Files.createDirectories(directory);
+        SegmentLog result = new SegmentLog(directory, segmentBytes, retainSegments);
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    result.log.warn("Ignoring {}, not a segment of the log", file);
+                }
+            }
+        }
+        bases.sort(null);
+        for (Long base : bases) {
+            Segment segment = result.map(base);
+            result.segments.put(base, segment);
+            result.active = segment;
+        }
+        if (result.active == null) {
+            result.active = result.map(0);
+            result.segments.put(0L, result.active);
+        }
+        result.next = result.active.base + result.active.count;
+        result.flushed = result.next;
+        return result;
+    }
+
+    /**
+     * Append an entry and number it.
+     *
+     * @param entry The bytes of the entry.
+     * @return the offset of the entry.
+     * @throws IOException if a new segment cannot be created.
+     */
+    public synchronized long append(byte[] entry) throws IOException {
+        if (entry.length > segmentBytes - HEADER_BYTES) {
+            throw new IllegalArgumentException("An entry of " + entry.length + " bytes does not fit in a segment.");
+        }
+        if (active.position + HEADER_BYTES + entry.length > active.buffer.capacity()) {
+            roll();
+        }
+        int position = active.position;
+        CRC32 crc = new CRC32();
+        crc.update(entry);
+        ByteBuffer target = active.buffer.duplicate();
+        target.position(position + HEADER_BYTES);
+        target.put(entry);
+        active.buffer.putInt(position + 4, (int) crc.getValue());
+        active.buffer.putInt(position, entry.length);
+        active.indexed(position);
+        active.position = position + HEADER_BYTES + entry.length;
+        long offset = next;
+        next = offset + 1;
+        return offset;
+    }
+
+    /**
+     * Copy flushed entries out of the log, oldest first.
+     *
+     * @param from The offset of the first entry wanted.
+     * @param max  The maximum number of entries to copy.
+     * @param into The list the entries are added to.
+     * @return the offset of the first entry copied, which is later than the one asked for if the entries in
+     * between are no longer retained or were lost in a crash.
+     */
+    public long read(long from, int max, List<byte[]> into) {
+        long end = flushed;
+        long first = -1;
+        long offset = from;
+        int copied = 0;
+        while (copied < max) {
+            Cursor cursor = locate(offset);
+            if (first < 0) {
+                first = Math.max(from, cursor.segment.base);
+            } else if (cursor.segment.base > offset) {
+                // The entries copied so far must be numbered from the first without a gap.
+                break;
+            }
+            long limit = Math.min(cursor.limit, end);
+            if (Math.max(offset, cursor.segment.base) >= limit) {
+                break;
+            }
+            ByteBuffer buffer = cursor.segment.buffer.duplicate();
+            int position = cursor.position;
+            long at = cursor.offset;
+            for (; at < limit && copied < max; at++) {
+                int length = buffer.getInt(position);
+                if (at >= first) {
+                    byte[] entry = new byte[length];
+                    buffer.position(position + HEADER_BYTES);
+                    buffer.get(entry);
+                    into.add(entry);
+                    copied++;
+                }
+                position += HEADER_BYTES + length;
+            }
+            offset = at;
+        }
+        return first;
+    }
+
+    /**
+     * Wait until an entry at the given offset or later is flushed.
+     *
+     * @param offset The offset waited for.
+     * @param millis The longest time to wait.
+     * @return true if there is an entry to read at the offset.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized boolean await(long offset, long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        long remaining = millis;
+        while (flushed <= offset && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return flushed > offset;
+    }
+
+    /**
+     * @return the offset of the oldest entry retained.
+     */
+    public synchronized long earliest() {
+        return segments.firstKey();
+    }
+
+    /**
+     * @return the offset the next entry will get.
+     */
+    public long next() {
+        return next;
+    }
+
+    /**
+     * @return the offset after the last entry flushed, which readers see as the end of the log.
+     */
+    public long flushed() {
+        return flushed;
+    }
+
+    /**
+     * Flush the entries of the segment being written to disk, and let readers see them.
+     */
+    public void force() {
+        Segment segment;
+        long target;
+        synchronized (this) {
+            segment = active;
+            target = next;
+        }
+        segment.buffer.force();
+        flushedTo(target);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.buffer.force();
+        flushedTo(next);
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    /**
+     * Find where to start reading the given offset: the indexed entry at or before it, in the segment holding it
+     * or, if it is no longer retained, in the oldest segment.
+     */
+    private synchronized Cursor locate(long offset) {
+        Map.Entry<Long, Segment> floor = segments.floorEntry(offset);
+        Segment segment = floor == null ? segments.firstEntry().getValue() : floor.getValue();
+        Map.Entry<Long, Segment> higher = segments.higherEntry(segment.base);
+        if (higher != null && offset >= segment.base + segment.count) {
+            // Entries lost at the end of a segment in a crash leave a gap before the next one.
+            segment = higher.getValue();
+        }
+        long limit = segment.base + segment.count;
+        long wanted = Math.min(Math.max(offset, segment.base), limit);
+        int slot = (int) ((wanted - segment.base) / INDEX_INTERVAL);
+        if (slot == segment.indexSize) {
+            return new Cursor(segment, segment.position, wanted, limit);
+        }
+        return new Cursor(segment, segment.index[slot], segment.base + (long) slot * INDEX_INTERVAL, limit);
+    }
+
+    /**
+     * Move the end seen by readers to the given offset, if it is further, and wake those waiting.
+     */
+    private synchronized void flushedTo(long offset) {
+        if (offset > flushed) {
+            flushed = offset;
+            notifyAll();
+        }
+    }
+
+    private void roll() throws IOException {
+        active.buffer.force();
+        flushedTo(next);
+        active = map(next);
+        segments.put(next, active);
+        while (segments.size() > retainSegments) {
+            Segment oldest = segments.pollFirstEntry().getValue();
+            oldest.channel.close();
+            Files.deleteIfExists(oldest.path);
+        }
+    }
+
+    /**
+     * Map the segment starting at the given offset, creating its file if needed, and find its end.
+     */
+    private Segment map(long base) throws IOException {
+        Path path = directory.resolve(String.format("%020d", base) + SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size() > HEADER_BYTES ? channel.size() : segmentBytes;
+        Segment segment = new Segment(base, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        segment.recover();
+        if (segment.count > 0) {
+            log.info("Recovered {} entries from {}", segment.count, path);
+        }
+        return segment;
+    }
+
+    private static final class Segment {
+
+        private final long base;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int count;
+        private int[] index = new int[16];
+        private int indexSize;
+
+        private Segment(long base, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.base = base;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Count the complete entries of the segment and index them. Anything after the last one is cleared, so
+         * the entries appended next cannot run into a stale one.
+         */
+        private void recover() {
+            ByteBuffer reader = buffer.duplicate();
+            int capacity = buffer.capacity();
+            while (position + HEADER_BYTES <= capacity) {
+                int length = reader.getInt(position);
+                if (length <= 0 || length > capacity - position - HEADER_BYTES) {
+                    break;
+                }
+                byte[] entry = new byte[length];
+                reader.position(position + HEADER_BYTES);
+                reader.get(entry);
+                CRC32 crc = new CRC32();
+                crc.update(entry);
+                if ((int) crc.getValue() != reader.getInt(position + 4)) {
+                    break;
+                }
+                indexed(position);
+                position += HEADER_BYTES + length;
+            }
+            if (position + HEADER_BYTES <= capacity && reader.getInt(position) != 0) {
+                for (int i = position; i < capacity; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+            }
+        }
+
+        /**
+         * Count an entry written at the given position, indexing it if it starts an interval.
+         */
+        private void indexed(int position) {
+            if (count % INDEX_INTERVAL == 0) {
+                if (indexSize == index.length) {
+                    index = Arrays.copyOf(index, indexSize * 2);
+                }
+                index[indexSize++] = position;
+            }
+            count++;
+        }
+    }
+
+    /**
+     * Where a read starts: an entry of a segment, with its position and offset, and the end of the segment when
+     * it was located.
+     */
+    private static final class Cursor {
+
+        private final Segment segment;
+        private final int position;
+        private final long offset;
+        private final long limit;
+
+        private Cursor(Segment segment, int position, long offset, long limit) {
+            this.segment = segment;
+            this.position = position;
+            this.offset = offset;
+            this.limit = limit;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.faison.exports;
+
+import java.util.function.Function;
+
+/**
+ * A column of a tabular export: its header and how to read its value from a record.
+ *
+ * @param <T> The type of the records.
+ */
+public class Column<T> {
+
+    private final String name;
+    private final Function<T, Object> value;
+
+    public Column(String name, Function<T, Object> value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Object valueOf(T record) {
+        return value.apply(record);
+    }
+}
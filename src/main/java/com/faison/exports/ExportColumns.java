@@ -0,0 +1,35 @@
+package com.faison.exports;
+
+import com.faison.models.Order;
+import com.faison.models.Product;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The columns of the CSV and spreadsheet exports. NDJSON exports write whole records instead.
+ */
+public final class ExportColumns {
+
+    public static final List<Column<Product>> PRODUCTS = Arrays.asList(
+            new Column<>("id", Product::getId),
+            new Column<>("name", Product::getName),
+            new Column<>("description", Product::getDescription),
+            new Column<>("categoryId", Product::getCategoryId),
+            new Column<>("unitPrice", Product::getUnitPrice),
+            new Column<>("imagePath", Product::getImagePath));
+
+    public static final List<Column<Order>> ORDERS = Arrays.asList(
+            new Column<>("id", Order::getId),
+            new Column<>("placedOn", Order::getPlacedOn),
+            new Column<>("buyerId", Order::getBuyerId),
+            new Column<>("buyerName", Order::getBuyerName),
+            new Column<>("items", order -> order.getLines() == null ? 0 : order.getLines().size()),
+            new Column<>("cost", Order::getCost),
+            new Column<>("shippingFee", Order::getShippingFee),
+            new Column<>("delivered", Order::isDeliveredStatus),
+            new Column<>("shippingAddressId", order -> order.getShippingAddress() == null ? null : order.getShippingAddress().getId()));
+
+    private ExportColumns() {
+    }
+}
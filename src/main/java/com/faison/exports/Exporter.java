@@ -0,0 +1,187 @@
+package com.faison.exports;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Writes the records of an open cursor to an output stream one at a time, so an export holds only the
+ * records in flight whatever its size.
+ * <p>
+ * CSV and NDJSON rows go out as they are written. Spreadsheets are built with POI's streaming workbook, which
+ * keeps only a window of rows in memory and spools the rest to a temporary file until the workbook is written.
+ */
+@Component
+public class Exporter {
+
+    /**
+     * The number of spreadsheet rows kept in memory.
+     */
+    static final int ROW_WINDOW = 100;
+
+    /**
+     * The last row index of a sheet; exports longer than this continue on a new sheet.
+     */
+    static final int MAX_SHEET_ROWS = 1048575;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    /**
+     * Write every record of the cursor, then close it.
+     *
+     * @param records The open cursor.
+     * @param format  The format to write.
+     * @param columns The columns of CSV and spreadsheet exports.
+     * @param out     The stream to write to. It is flushed but not closed.
+     */
+    public <T> void export(CloseableIterator<T> records, ExportFormat format, List<Column<T>> columns, OutputStream out) throws IOException {
+        try {
+            switch (format) {
+                case CSV:
+                    writeCsv(records, columns, out);
+                    break;
+                case NDJSON:
+                    writeNdjson(records, out);
+                    break;
+                case XLSX:
+                    writeXlsx(records, columns, out);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported format " + format);
+            }
+        } finally {
+            records.close();
+        }
+    }
+
+    private <T> void writeCsv(CloseableIterator<T> records, List<Column<T>> columns, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        SimpleDateFormat dates = isoDates();
+        for (int i = 0; i < columns.size(); i++) {
+            writer.write(i == 0 ? "" : ",");
+            writeCsvField(writer, columns.get(i).getName());
+        }
+        writer.write("\r\n");
+        while (records.hasNext()) {
+            T record = records.next();
+            for (int i = 0; i < columns.size(); i++) {
+                writer.write(i == 0 ? "" : ",");
+                Object value = columns.get(i).valueOf(record);
+                if (value instanceof Date) {
+                    writer.write(dates.format((Date) value));
+                } else if (value != null) {
+                    writeCsvField(writer, value.toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+        writer.flush();
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private <T> void writeNdjson(CloseableIterator<T> records, OutputStream out) throws IOException {
+        // Flushing after every record would send one tiny chunk per record.
+        ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = mapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        while (records.hasNext()) {
+            writer.writeValue(generator, records.next());
+        }
+        generator.writeRaw('\n');
+        generator.close();
+    }
+
+    private <T> void writeXlsx(CloseableIterator<T> records, List<Column<T>> columns, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+            Sheet sheet = null;
+            int rowIndex = MAX_SHEET_ROWS;
+            while (records.hasNext()) {
+                if (rowIndex == MAX_SHEET_ROWS) {
+                    sheet = workbook.createSheet();
+                    writeHeader(sheet, columns);
+                    rowIndex = 0;
+                }
+                T record = records.next();
+                Row row = sheet.createRow(++rowIndex);
+                for (int i = 0; i < columns.size(); i++) {
+                    Object value = columns.get(i).valueOf(record);
+                    if (value == null) {
+                        continue;
+                    }
+                    Cell cell = row.createCell(i);
+                    if (value instanceof Number) {
+                        cell.setCellValue(((Number) value).doubleValue());
+                    } else if (value instanceof Boolean) {
+                        cell.setCellValue((Boolean) value);
+                    } else if (value instanceof Date) {
+                        cell.setCellValue((Date) value);
+                        cell.setCellStyle(dateStyle);
+                    } else {
+                        cell.setCellValue(value.toString());
+                    }
+                }
+            }
+            if (sheet == null) {
+                writeHeader(workbook.createSheet(), columns);
+            }
+            workbook.write(out);
+            out.flush();
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    private static <T> void writeHeader(Sheet sheet, List<Column<T>> columns) {
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < columns.size(); i++) {
+            header.createCell(i).setCellValue(columns.get(i).getName());
+        }
+    }
+
+    private static SimpleDateFormat isoDates() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+}
@@ -0,0 +1,126 @@
+package com.faison.idempotency;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the body of every POST sent with an {@code Idempotency-Key} before the controller parses it, and hashes
+ * the bytes for {@link IdempotencyKeys}. A key is then bound to what the client sent rather than to what the
+ * model writes back, which leaves out write-only properties such as the items and buyer of an order. The
+ * controller reads the same bytes from memory.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    /**
+     * The request attribute holding the hash of the body.
+     */
+    static final String FINGERPRINT = IdempotencyFilter.class.getName() + ".fingerprint";
+
+    private static final int MAX_BODY = 1024 * 1024;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String key = request.getHeader(IdempotencyKeys.HEADER);
+        return !"POST".equals(request.getMethod()) || key == null || key.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = request.getInputStream()) {
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+                if (body.size() > MAX_BODY) {
+                    response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value());
+                    return;
+                }
+            }
+        }
+        byte[] bytes = body.toByteArray();
+        request.setAttribute(FINGERPRINT, IdempotencyKeys.hash(bytes));
+        chain.doFilter(new BufferedRequest(request, bytes), response);
+    }
+
+    /**
+     * A request whose body has already been read into memory.
+     */
+    private static class BufferedRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        BufferedRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("The body has already been read.");
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) {
+                    return in.read(bytes, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(getCharacterEncoding());
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
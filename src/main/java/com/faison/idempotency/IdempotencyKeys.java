@@ -0,0 +1,312 @@
+package com.faison.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Makes create requests safe to retry. A request sent with an {@code Idempotency-Key} header runs once; a retry
+ * with the same key gets the response of the first request, replayed without running it again, and a retry
+ * arriving while the first request still runs gets an HttpStatus.CONFLICT.
+ * <p>
+ * Keys are claimed in two tiers. Recent keys are kept in memory, in a concurrent map whose reads take no lock,
+ * so most retries are answered without a database round trip. Every key is also claimed in a collection keyed
+ * by the key itself, whose unique {@code _id} decides between instances, and whose TTL index forgets keys after
+ * {@code shop.idempotency.ttl-seconds}. Only successful responses are kept: a request that fails releases its
+ * key, so it can be retried.
+ * <p>
+ * A key belongs to the caller that sent it, told apart by its {@code Authorization} header or, without one, by
+ * its address, so callers cannot replay each other's responses. It is also bound to a hash of the raw body of
+ * its first request, taken by the {@link IdempotencyFilter}. A request reusing the key with another body is a
+ * client bug, or someone guessing keys, and gets an HttpStatus.UNPROCESSABLE_ENTITY rather than the response to
+ * a request it did not make. Responses are stored as they were sent, so endpoints returning secrets, such as
+ * logins, must not use keys.
+ */
+@Component
+public class IdempotencyKeys {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    static final String COLLECTION = "idempotencyKeys";
+
+    /**
+     * The longest key accepted.
+     */
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyKeys.class);
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Value("${shop.idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${shop.idempotency.pending-seconds:60}")
+    private long pendingSeconds;
+
+    @Value("${shop.idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> recent = new ConcurrentHashMap<>();
+
+    /**
+     * Forget keys once their time to live has passed, and drop the logins kept before logins stopped taking
+     * keys, as they hold access tokens.
+     */
+    @PostConstruct
+    public void createIndexes() {
+        template.indexOps(COLLECTION).ensureIndex(new Index()
+                .on("createdOn", Sort.Direction.ASC)
+                .expire(ttlSeconds, TimeUnit.SECONDS));
+        template.getCollection(COLLECTION).remove(new BasicDBObject("_id", Pattern.compile("^sessions:")));
+    }
+
+    /**
+     * Run a create request once per key.
+     *
+     * @param scope   The endpoint the key belongs to, so one key cannot replay another endpoint.
+     * @param key     The key sent by the client, or null to run the request without one.
+     * @param request The request, whose caller the key belongs to and whose body a retry must repeat.
+     * @param type    The type of the response body, to read replayed responses back.
+     * @param action  Runs the request.
+     * @return the response of the request, the replayed response of the first request with this key, an
+     * HttpStatus.CONFLICT if the first request still runs, an HttpStatus.UNPROCESSABLE_ENTITY if the first request
+     * had another body, or an HttpStatus.BAD_REQUEST if the key is too long.
+     */
+    public <T> ResponseEntity<T> execute(String scope, String key, HttpServletRequest request, Class<T> type,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.isEmpty()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        String fingerprint = (String) request.getAttribute(IdempotencyFilter.FINGERPRINT);
+        if (fingerprint == null) {
+            throw new IllegalStateException("The body of the request was not hashed; is the IdempotencyFilter registered?");
+        }
+        String id = scope + ':' + caller(request) + ':' + key;
+        long now = System.currentTimeMillis();
+
+        Entry seen = recent.get(id);
+        if (seen != null && !seen.isExpired(now)) {
+            return answer(seen, fingerprint, type);
+        }
+        Entry mine = new Entry(now + TimeUnit.SECONDS.toMillis(ttlSeconds), fingerprint);
+        seen = seen == null ? recent.putIfAbsent(id, mine) : (recent.replace(id, seen, mine) ? null : recent.get(id));
+        if (seen != null) {
+            return answer(seen, fingerprint, type);
+        }
+        if (recent.size() > maxEntries) {
+            sweep(now);
+        }
+
+        Entry stored = claim(id, fingerprint, now);
+        if (stored != null) {
+            if (stored.response != null) {
+                recent.replace(id, mine, stored);
+            } else {
+                recent.remove(id, mine);
+            }
+            return answer(stored, fingerprint, type);
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException | Error e) {
+            release(id, mine);
+            throw e;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            release(id, mine);
+            return response;
+        }
+        try {
+            mine.response = store(id, response);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not keep the response for idempotency key {}", id, e);
+            release(id, mine);
+        }
+        return response;
+    }
+
+    /**
+     * Claim a key in the collection.
+     *
+     * @return null if the key is now ours, or the entry of the request that holds it.
+     */
+    private Entry claim(String id, String fingerprint, long now) {
+        DBCollection collection = template.getCollection(COLLECTION);
+        try {
+            collection.insert(new BasicDBObject("_id", id).append("state", "PENDING").append("fingerprint", fingerprint)
+                    .append("createdOn", new Date(now)));
+            return null;
+        } catch (DuplicateKeyException e) {
+            // Taken: either done, still running, or left pending by a request that never finished.
+        }
+        DBObject stale = new BasicDBObject("_id", id).append("state", "PENDING")
+                .append("createdOn", new BasicDBObject("$lt", new Date(now - TimeUnit.SECONDS.toMillis(pendingSeconds))));
+        DBObject takeOver = new BasicDBObject("$set", new BasicDBObject("createdOn", new Date(now)).append("fingerprint", fingerprint));
+        if (collection.findAndModify(stale, takeOver) != null) {
+            return null;
+        }
+        DBObject document = collection.findOne(new BasicDBObject("_id", id));
+        if (document == null) {
+            // Expired in between; the retry can claim it again.
+            return new Entry(now, fingerprint);
+        }
+        Entry entry = new Entry(now + TimeUnit.SECONDS.toMillis(ttlSeconds), (String) document.get("fingerprint"));
+        if ("DONE".equals(document.get("state"))) {
+            Object location = document.get("location");
+            entry.response = new Stored(((Number) document.get("status")).intValue(),
+                    location == null ? null : location.toString(), (String) document.get("body"));
+        }
+        return entry;
+    }
+
+    private Stored store(String id, ResponseEntity<?> response) throws IOException {
+        URI location = response.getHeaders().getLocation();
+        Stored stored = new Stored(response.getStatusCode().value(), location == null ? null : location.toString(),
+                response.getBody() == null ? null : mapper.writeValueAsString(response.getBody()));
+        DBObject set = new BasicDBObject("state", "DONE")
+                .append("status", stored.status)
+                .append("location", stored.location)
+                .append("body", stored.body);
+        template.getCollection(COLLECTION).update(new BasicDBObject("_id", id), new BasicDBObject("$set", set));
+        return stored;
+    }
+
+    private void release(String id, Entry mine) {
+        recent.remove(id, mine);
+        try {
+            template.getCollection(COLLECTION).remove(new BasicDBObject("_id", id).append("state", "PENDING"));
+        } catch (RuntimeException e) {
+            log.warn("Could not release idempotency key {}; it frees itself after {} seconds", id, pendingSeconds, e);
+        }
+    }
+
+    private <T> ResponseEntity<T> answer(Entry entry, String fingerprint, Class<T> type) {
+        if (!fingerprint.equals(entry.fingerprint)) {
+            return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        Stored stored = entry.response;
+        if (stored == null) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(REPLAYED_HEADER, "true");
+        if (stored.location != null) {
+            headers.setLocation(URI.create(stored.location));
+        }
+        try {
+            T body = stored.body == null ? null : mapper.readValue(stored.body, type);
+            return new ResponseEntity<>(body, headers, HttpStatus.valueOf(stored.status));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the stored response", e);
+        }
+    }
+
+    /**
+     * Tell the caller of a request apart: by a hash of its credentials, so they are not stored, or by its address.
+     */
+    private static String caller(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && !authorization.isEmpty()) {
+            return hash(authorization.getBytes(StandardCharsets.UTF_8));
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * @return the base64 SHA-256 of the bytes.
+     */
+    static String hash(byte[] bytes) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Drop expired keys, and completed ones too if that is not enough; the collection still remembers them.
+     */
+    private void sweep(long now) {
+        recent.values().removeIf(entry -> entry.isExpired(now));
+        for (Iterator<Entry> it = recent.values().iterator(); it.hasNext() && recent.size() > maxEntries; ) {
+            if (it.next().response != null) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * A key in memory: running while it has no response, done once it has one.
+     */
+    private static final class Entry {
+
+        final long expiresAt;
+        final String fingerprint;
+        volatile Stored response;
+
+        Entry(long expiresAt, String fingerprint) {
+            this.expiresAt = expiresAt;
+            this.fingerprint = fingerprint;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * A response kept to be replayed.
+     */
+    private static final class Stored {
+
+        final int status;
+        final String location;
+        final String body;
+
+        Stored(int status, String location, String body) {
+            this.status = status;
+            this.location = location;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.faison.imports;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma separated values one row at a time. Fields may be quoted with double quotes, in which case they
+ * may hold commas, line breaks and doubled quotes.
+ */
+public final class CsvRows {
+
+    private CsvRows() {
+    }
+
+    /**
+     * Read every row of the text.
+     *
+     * @param reader  The text.
+     * @param handler Receives every row.
+     */
+    public static void read(Reader reader, RowHandler handler) throws IOException {
+        if (!reader.markSupported()) {
+            reader = new BufferedReader(reader);
+        }
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        boolean rowStarted = false;
+        int number = 1;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (quoted) {
+                if (c != '"') {
+                    cell.append((char) c);
+                    continue;
+                }
+                reader.mark(1);
+                if (reader.read() == '"') {
+                    cell.append('"');
+                } else {
+                    reader.reset();
+                    quoted = false;
+                }
+                continue;
+            }
+            if (c == '"' && cell.length() == 0) {
+                quoted = true;
+                rowStarted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+                rowStarted = true;
+            } else if (c == '\n') {
+                cells.add(cell.toString());
+                handler.row(number++, toArray(cells));
+                cells.clear();
+                cell.setLength(0);
+                rowStarted = false;
+            } else if (c != '\r') {
+                cell.append((char) c);
+                rowStarted = true;
+            }
+        }
+        if (rowStarted || cell.length() > 0) {
+            cells.add(cell.toString());
+            handler.row(number, toArray(cells));
+        }
+    }
+
+    private static String[] toArray(List<String> cells) {
+        String[] row = new String[cells.size()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = cells.get(i).isEmpty() ? null : cells.get(i);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,142 @@
+package com.faison.imports;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The progress of one catalog import. It is written by the import thread only and read by anyone, so counters
+ * are volatile and the error list is synchronized.
+ */
+public class ImportProgress {
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * The number of row errors kept; further rejected rows are only counted.
+     */
+    static final int MAX_ERRORS = 100;
+
+    private final String id;
+    private final String fileName;
+    private final Date submittedOn = new Date();
+    private volatile State state = State.QUEUED;
+    private volatile Date finishedOn;
+    private volatile long rowsRead;
+    private volatile long imported;
+    private volatile long rejected;
+    private volatile String failure;
+    private final List<RowError> errors = Collections.synchronizedList(new ArrayList<>());
+
+    public ImportProgress(String id, String fileName) {
+        this.id = id;
+        this.fileName = fileName;
+    }
+
+    public void start() {
+        state = State.RUNNING;
+    }
+
+    public void rowRead() {
+        rowsRead++;
+    }
+
+    public void imported(int count) {
+        imported += count;
+    }
+
+    public void reject(int row, String message) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    public void finish() {
+        finishedOn = new Date();
+        state = State.DONE;
+    }
+
+    public void fail(String message) {
+        failure = message;
+        finishedOn = new Date();
+        state = State.FAILED;
+    }
+
+    public boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Date getSubmittedOn() {
+        return submittedOn;
+    }
+
+    public Date getFinishedOn() {
+        return finishedOn;
+    }
+
+    /**
+     * @return the number of data rows read so far, headers and blank rows excluded.
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return why the import stopped early, or null.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return the first {@value #MAX_ERRORS} rejected rows, with the reason.
+     */
+    public List<RowError> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    public static class RowError {
+
+        private final int row;
+        private final String message;
+
+        RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
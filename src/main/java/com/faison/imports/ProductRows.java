@@ -0,0 +1,181 @@
+package com.faison.imports;
+
+import com.faison.index.CategoryTree;
+import com.faison.models.Product;
+import com.faison.repositories.BulkItemResult;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns spreadsheet rows into {@link Product} records and writes them in batches.
+ * <p>
+ * The first non-blank row is the header. It must name a {@code name} and a {@code unitPrice} column; the
+ * {@code description}, {@code categoryId} and {@code imagePath} columns are optional. A category may be given
+ * by id or by name. Rows without a name, with a missing or negative price, or with an unknown category are
+ * rejected and reported in the progress, the others are imported.
+ * <p>
+ * Prices are plain decimals with a point, optionally after a currency symbol. Commas are only taken as thousands
+ * separators when a decimal point follows them, as in {@code 1,234.50}; {@code 12,50} or {@code 1,234} could be
+ * read either way, so those rows are rejected rather than guessed at.
+ */
+public class ProductRows implements RowHandler {
+
+    private static final Pattern PRICE = Pattern.compile("\\p{Sc}?\\s*(\\d{1,3}(?:,\\d{3})+\\.\\d+|\\d+(?:\\.\\d+)?)");
+
+    private final CategoryTree categories;
+    private final ImportProgress progress;
+    private final Function<List<Product>, List<BulkItemResult>> writer;
+    private final int batchSize;
+
+    private final List<Product> batch = new ArrayList<>();
+    private final List<Integer> rowNumbers = new ArrayList<>();
+    private int name = -1;
+    private int description = -1;
+    private int categoryId = -1;
+    private int unitPrice = -1;
+    private int imagePath = -1;
+    private boolean headerRead;
+
+    /**
+     * @param categories The category hierarchy to resolve categories against.
+     * @param progress   The progress to report to.
+     * @param writer     Writes a batch of products, returning the outcome of each.
+     * @param batchSize  The number of products per write.
+     */
+    public ProductRows(CategoryTree categories, ImportProgress progress,
+                       Function<List<Product>, List<BulkItemResult>> writer, int batchSize) {
+        this.categories = categories;
+        this.progress = progress;
+        this.writer = writer;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void row(int number, String[] cells) {
+        if (isBlank(cells)) {
+            return;
+        }
+        if (!headerRead) {
+            readHeader(cells);
+            return;
+        }
+        progress.rowRead();
+
+        String productName = cell(cells, name);
+        if (productName == null) {
+            progress.reject(number, "The name is required.");
+            return;
+        }
+        Double price = price(cell(cells, unitPrice));
+        if (price == null) {
+            progress.reject(number, "The unit price must be a decimal number of at least 0, such as 1234.50.");
+            return;
+        }
+        String category = cell(cells, categoryId);
+        String resolved = categories.resolve(category);
+        if (category != null && resolved == null) {
+            progress.reject(number, "Unknown category: " + category);
+            return;
+        }
+
+        batch.add(new Product()
+                .setName(productName)
+                .setDescription(cell(cells, description))
+                .setCategoryId(resolved)
+                .setImagePath(cell(cells, imagePath))
+                .setUnitPrice(price));
+        rowNumbers.add(number);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the products still waiting for a full batch.
+     */
+    public void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int created = 0;
+        for (BulkItemResult result : writer.apply(batch)) {
+            if (result.getStatus() == BulkItemResult.Status.CREATED) {
+                created++;
+            } else {
+                progress.reject(rowNumbers.get(result.getIndex()), result.getError());
+            }
+        }
+        progress.imported(created);
+        batch.clear();
+        rowNumbers.clear();
+    }
+
+    private void readHeader(String[] cells) {
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == null) {
+                continue;
+            }
+            // Spreadsheet tools often prefix CSV files with a byte order mark.
+            switch (cells[i].replace("\uFEFF", "").replaceAll("[\\s_]", "").toLowerCase()) {
+                case "name":
+                    name = i;
+                    break;
+                case "description":
+                    description = i;
+                    break;
+                case "categoryid":
+                case "category":
+                    categoryId = i;
+                    break;
+                case "unitprice":
+                case "price":
+                    unitPrice = i;
+                    break;
+                case "imagepath":
+                case "image":
+                    imagePath = i;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (name < 0 || unitPrice < 0) {
+            throw new IllegalArgumentException("The header row must have a name and a unitPrice column.");
+        }
+        headerRead = true;
+    }
+
+    private static Double price(String value) {
+        if (value == null) {
+            return null;
+        }
+        Matcher matcher = PRICE.matcher(value);
+        if (!matcher.matches()) {
+            return null;
+        }
+        double price = new BigDecimal(matcher.group(1).replace(",", "")).doubleValue();
+        return Double.isInfinite(price) ? null : price;
+    }
+
+    private static String cell(String[] cells, int column) {
+        if (column < 0 || column >= cells.length || cells[column] == null) {
+            return null;
+        }
+        String value = cells[column].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static boolean isBlank(String[] cells) {
+        for (String cell : cells) {
+            if (cell != null && !cell.trim().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,13 @@
+package com.faison.imports;
+
+/**
+ * Receives the rows of a spreadsheet one at a time, as they are read.
+ */
+public interface RowHandler {
+
+    /**
+     * @param number The 1-based number of the row in the sheet.
+     * @param cells  The text of the cells of the row by column, null for empty cells.
+     */
+    void row(int number, String[] cells);
+}
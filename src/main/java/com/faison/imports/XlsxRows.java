@@ -0,0 +1,153 @@
+package com.faison.imports;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Reads the first sheet of an {@code .xlsx} file with POI's event model: the sheet XML is parsed with SAX and
+ * every row is handed over and dropped as soon as it is complete, so memory does not grow with the number of
+ * rows. Only the shared strings table of the workbook is held in memory. A cell past the last column Excel
+ * allows makes the file unreadable, so a crafted reference cannot make a row as wide as it likes.
+ */
+public final class XlsxRows {
+
+    /**
+     * The number of columns of an Excel sheet, A to XFD.
+     */
+    static final int MAX_COLUMNS = 16384;
+
+    private XlsxRows() {
+    }
+
+    /**
+     * Read the rows of the first sheet of the file.
+     *
+     * @param file    The workbook.
+     * @param handler Receives every row.
+     * @throws IOException if the file is not a readable workbook, or has a cell past column XFD.
+     */
+    public static void read(File file, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                // Uploaded files are untrusted: this reader ignores external entities and DTDs.
+                XMLReader parser = SAXHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), strings,
+                        new RowCollector(handler), new RawNumberFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException | BadReferenceException e) {
+            throw new IOException("Not a readable .xlsx file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Convert a cell reference such as {@code "AB12"} to the 0-based index of its column.
+     *
+     * @return the index, or -1 if the reference has no column or one past {@link #MAX_COLUMNS}.
+     */
+    static int column(String reference) {
+        int column = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char letter = Character.toUpperCase(reference.charAt(i));
+            if (letter < 'A' || letter > 'Z') {
+                break;
+            }
+            column = column * 26 + (letter - 'A' + 1);
+            if (column > MAX_COLUMNS) {
+                // Checked on every letter, so a long reference cannot overflow.
+                return -1;
+            }
+        }
+        return column - 1;
+    }
+
+    /**
+     * Gathers the cells of the current row, which the sheet lists sparsely and in column order.
+     */
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final RowHandler handler;
+        private String[] cells = new String[16];
+        private int width;
+
+        RowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(cells, 0, width, null);
+            width = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            handler.row(rowNum + 1, Arrays.copyOf(cells, width));
+        }
+
+        @Override
+        public void cell(String reference, String formattedValue, XSSFComment comment) {
+            int column = reference == null ? width : column(reference);
+            if (column < 0 || column >= MAX_COLUMNS) {
+                throw new BadReferenceException(reference);
+            }
+            if (column >= cells.length) {
+                cells = Arrays.copyOf(cells, Math.max(cells.length * 2, column + 1));
+            }
+            cells[column] = formattedValue;
+            width = Math.max(width, column + 1);
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
+
+    /**
+     * Thrown out of the parser for a cell whose reference has no valid column.
+     */
+    private static class BadReferenceException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        BadReferenceException(String reference) {
+            super("Cell " + reference + " is not in columns A to XFD");
+        }
+    }
+
+    /**
+     * Render numbers as plain decimals, whatever their display format, so prices like {@code $1,234.50} come
+     * through as {@code 1234.5}.
+     */
+    private static class RawNumberFormatter extends DataFormatter {
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            return NumberToTextConverter.toText(value);
+        }
+    }
+}
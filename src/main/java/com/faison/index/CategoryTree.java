@@ -0,0 +1,251 @@
+package com.faison.index;
+
+import com.faison.models.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the category hierarchy, laid out in arrays in depth-first order.
+ * <p>
+ * Every subtree occupies a contiguous range of positions, from the category itself up to {@code end[position]},
+ * so listing all descendants is an array copy. Categories without a known parent are roots. Categories caught in
+ * a parent cycle become roots too, so every category appears exactly once.
+ */
+public class CategoryTree {
+
+    private final String[] ids;
+    private final String[] names;
+    private final int[] parent;
+    private final int[] depth;
+    private final int[] end;
+    private final Map<String, Integer> positions;
+    private final Map<String, Integer> positionsByName = new HashMap<>();
+
+    private CategoryTree(String[] ids, String[] names, int[] parent, int[] depth, int[] end, Map<String, Integer> positions) {
+        this.ids = ids;
+        this.names = names;
+        this.parent = parent;
+        this.depth = depth;
+        this.end = end;
+        this.positions = positions;
+        for (int position = 0; position < names.length; position++) {
+            if (names[position] != null) {
+                positionsByName.putIfAbsent(names[position].trim().toLowerCase(), position);
+            }
+        }
+    }
+
+    /**
+     * Lay out the given categories as a tree.
+     *
+     * @param categories Every category in the system.
+     * @return the tree.
+     */
+    public static CategoryTree build(List<Category> categories) {
+        Map<String, Category> byId = new HashMap<>();
+        for (Category category : categories) {
+            byId.put(category.getId(), category);
+        }
+        Map<String, List<Category>> children = new HashMap<>();
+        List<Category> roots = new ArrayList<>();
+        for (Category category : categories) {
+            String parentId = category.getParentCategoryId();
+            if (parentId == null || parentId.equals(category.getId()) || !byId.containsKey(parentId)) {
+                roots.add(category);
+            } else {
+                children.computeIfAbsent(parentId, k -> new ArrayList<>()).add(category);
+            }
+        }
+
+        int size = categories.size();
+        Builder builder = new Builder(size, children);
+        for (Category root : roots) {
+            builder.visit(root, -1);
+        }
+        // Whatever is left hangs off a parent cycle: cut each cycle at the first category found in it.
+        for (Category category : categories) {
+            if (!builder.positions.containsKey(category.getId())) {
+                builder.visit(category, -1);
+            }
+        }
+        return new CategoryTree(builder.ids, builder.names, builder.parent, builder.depth, builder.end,
+                Collections.unmodifiableMap(builder.positions));
+    }
+
+    /**
+     * @return the number of categories in the tree.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean contains(String id) {
+        return positions.containsKey(id);
+    }
+
+    /**
+     * Find a category by id or, failing that, by name, ignoring case. When several categories share the name,
+     * the first one in depth-first order wins.
+     *
+     * @param idOrName The id or the name of a category.
+     * @return the id of the category, or null if there is none.
+     */
+    public String resolve(String idOrName) {
+        if (idOrName == null) {
+            return null;
+        }
+        if (positions.containsKey(idOrName)) {
+            return idOrName;
+        }
+        Integer position = positionsByName.get(idOrName.trim().toLowerCase());
+        return position == null ? null : ids[position];
+    }
+
+    /**
+     * @param id The id of a category.
+     * @return the ids of the category and all its descendants, or an empty array if the category is unknown.
+     */
+    public String[] subtreeIds(String id) {
+        Integer position = positions.get(id);
+        if (position == null) {
+            return new String[0];
+        }
+        return Arrays.copyOfRange(ids, position, end[position]);
+    }
+
+    /**
+     * @param id The id of a category.
+     * @return the categories from the root down to the given one, or an empty list if the category is unknown.
+     */
+    public List<CategoryNode> path(String id) {
+        Integer position = positions.get(id);
+        if (position == null) {
+            return Collections.emptyList();
+        }
+        CategoryNode[] path = new CategoryNode[depth[position] + 1];
+        for (int at = position; at >= 0; at = parent[at]) {
+            path[depth[at]] = new CategoryNode(ids[at], names[at], depth[at], null);
+        }
+        return Arrays.asList(path);
+    }
+
+    /**
+     * @param id The id of a category.
+     * @return the depth of the category, 0 for roots, or -1 if the category is unknown.
+     */
+    public int depth(String id) {
+        Integer position = positions.get(id);
+        return position == null ? -1 : depth[position];
+    }
+
+    /**
+     * Build the nested menu of the tree, or of the subtree of one category.
+     *
+     * @param id       The id of the category to start from, or null for the whole tree.
+     * @param maxDepth The number of levels to include below the starting point.
+     * @return the top level nodes with their children.
+     */
+    public List<CategoryNode> nodes(String id, int maxDepth) {
+        List<CategoryNode> top = new ArrayList<>();
+        if (id == null) {
+            for (int at = 0; at < ids.length; at = end[at]) {
+                top.add(node(at, maxDepth));
+            }
+        } else {
+            Integer position = positions.get(id);
+            if (position != null) {
+                top.add(node(position, maxDepth));
+            }
+        }
+        return top;
+    }
+
+    private CategoryNode node(int position, int levels) {
+        List<CategoryNode> children = new ArrayList<>();
+        if (levels > 0) {
+            for (int child = position + 1; child < end[position]; child = end[child]) {
+                children.add(node(child, levels - 1));
+            }
+        }
+        return new CategoryNode(ids[position], names[position], depth[position], children);
+    }
+
+    /**
+     * Fills the arrays of the tree during a depth-first walk.
+     */
+    private static class Builder {
+
+        private final String[] ids;
+        private final String[] names;
+        private final int[] parent;
+        private final int[] depth;
+        private final int[] end;
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final Map<String, List<Category>> children;
+        private int next;
+
+        Builder(int size, Map<String, List<Category>> children) {
+            this.ids = new String[size];
+            this.names = new String[size];
+            this.parent = new int[size];
+            this.depth = new int[size];
+            this.end = new int[size];
+            this.children = children;
+        }
+
+        void visit(Category category, int parentPosition) {
+            if (positions.containsKey(category.getId())) {
+                return;
+            }
+            int position = next++;
+            ids[position] = category.getId();
+            names[position] = category.getName();
+            parent[position] = parentPosition;
+            depth[position] = parentPosition < 0 ? 0 : depth[parentPosition] + 1;
+            positions.put(category.getId(), position);
+            for (Category child : children.getOrDefault(category.getId(), Collections.emptyList())) {
+                visit(child, position);
+            }
+            end[position] = next;
+        }
+    }
+
+    /**
+     * A category in a menu or an ancestor path.
+     */
+    public static class CategoryNode {
+
+        private final String id;
+        private final String name;
+        private final int depth;
+        private final List<CategoryNode> children;
+
+        CategoryNode(String id, String name, int depth, List<CategoryNode> children) {
+            this.id = id;
+            this.name = name;
+            this.depth = depth;
+            this.children = children;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public List<CategoryNode> getChildren() {
+            return children;
+        }
+    }
+}
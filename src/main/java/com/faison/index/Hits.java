@@ -0,0 +1,25 @@
+package com.faison.index;
+
+/**
+ * A window of product ids answered by an in-memory index, along with the total number of matching products.
+ */
+public class Hits {
+
+    static final Hits EMPTY = new Hits(new String[0], 0);
+
+    private final String[] ids;
+    private final int total;
+
+    Hits(String[] ids, int total) {
+        this.ids = ids;
+        this.total = total;
+    }
+
+    public String[] getIds() {
+        return ids;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,335 @@
+package com.faison.index;
+
+import com.faison.models.Product;
+import com.faison.repositories.ProductCriteria;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Column store of the category and price of every product, indexed by product ordinal, to count search facets
+ * in a single scan without touching the database.
+ * <p>
+ * Facets are disjunctive: category counts apply every filter but the category one, and price counts apply every
+ * filter but the price ones, so each facet shows what picking another value would return. Text filters are
+ * applied through the ordinals they were {@link ProductCriteria#setTextMatches(int[], int[], int[]) matched} to.
+ * <p>
+ * Searches that combine text with other filters are answered here too, by the same scan: only the ids of the
+ * requested page are then read from the database, so the counts agree with the totals of the pages and no query
+ * carries every text match.
+ */
+@Component
+public class ProductFacetIndex implements ProductIndex {
+
+    @Autowired
+    private ProductOrdinals ordinals;
+
+    private final Map<String, Integer> categoryOrdinals = new HashMap<>();
+    private final List<String> categoryIds = new ArrayList<>();
+    private int[] categoryByProduct = new int[1024];
+    private double[] priceByProduct = new double[1024];
+    private final BitSet live = new BitSet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void put(Product product) {
+        int ordinal = ordinals.assign(product.getId());
+        lock.writeLock().lock();
+        try {
+            if (ordinal >= categoryByProduct.length) {
+                int capacity = Math.max(categoryByProduct.length * 2, ordinal + 1);
+                categoryByProduct = Arrays.copyOf(categoryByProduct, capacity);
+                priceByProduct = Arrays.copyOf(priceByProduct, capacity);
+            }
+            categoryByProduct[ordinal] = categoryOrdinal(product.getCategoryId());
+            priceByProduct[ordinal] = product.getUnitPrice();
+            live.set(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        int ordinal = ordinals.ordinal(id);
+        if (ordinal < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            live.clear(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Count the products matching the criteria per category and per price bucket.
+     *
+     * @param criteria The search filters, with any category subtree already expanded and the text filters
+     *                 matched.
+     * @param bounds   The ascending price bucket bounds. Bucket i counts prices from bounds[i] up to, but
+     *                 excluding, bounds[i + 1]; the last bucket also counts its upper bound.
+     * @return the counts, categories with the most products first.
+     */
+    public ProductFacets count(ProductCriteria criteria, double[] bounds) {
+        BitSet name = matching(criteria.getName(), criteria.getNameMatches());
+        BitSet description = matching(criteria.getDescription(), criteria.getDescriptionMatches());
+        BitSet text = matching(criteria.getText(), criteria.getTextMatches());
+        boolean any = criteria.isMatchAny();
+        int buckets = Math.max(0, bounds.length - 1);
+
+        lock.readLock().lock();
+        try {
+            boolean[] wantedCategories = wantedCategories(criteria);
+            int[] categoryCounts = new int[categoryIds.size()];
+            int[] priceCounts = new int[buckets];
+
+            for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+                int category = categoryByProduct[ordinal];
+                double price = priceByProduct[ordinal];
+
+                // Each filter is null when unused, so it neither matches nor rejects on its own.
+                Boolean others = combine(any, null, matches(name, ordinal));
+                others = combine(any, others, matches(description, ordinal));
+                others = combine(any, others, matches(text, ordinal));
+                Boolean categoryMatch = wantedCategories == null ? null : category >= 0 && wantedCategories[category];
+                Boolean priceMatch = priceMatches(criteria, price, any);
+
+                boolean countCategory;
+                boolean countPrice;
+                if (any) {
+                    boolean all = isTrue(combine(true, combine(true, others, categoryMatch), priceMatch), true);
+                    countCategory = all;
+                    countPrice = all;
+                } else {
+                    countCategory = isTrue(others, true) && isTrue(priceMatch, true);
+                    countPrice = isTrue(others, true) && isTrue(categoryMatch, true);
+                }
+
+                if (countCategory && category >= 0) {
+                    categoryCounts[category]++;
+                }
+                if (countPrice && buckets > 0) {
+                    int bucket = bucketOf(bounds, price);
+                    if (bucket >= 0) {
+                        priceCounts[bucket]++;
+                    }
+                }
+            }
+
+            List<ProductFacets.CategoryCount> categories = new ArrayList<>();
+            for (int i = 0; i < categoryCounts.length; i++) {
+                if (categoryCounts[i] > 0) {
+                    categories.add(new ProductFacets.CategoryCount(categoryIds.get(i), categoryCounts[i]));
+                }
+            }
+            categories.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+            return new ProductFacets(categories, bounds, priceCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the products matching the criteria, in the order they were first indexed.
+     *
+     * @param criteria The search filters, with any category subtree already expanded and the text filters
+     *                 matched.
+     * @param offset   The number of matches to skip.
+     * @param limit    The maximum number of ids to return.
+     * @return the ids in the requested window, and the total number of matches.
+     */
+    public Hits find(ProductCriteria criteria, int offset, int limit) {
+        BitSet selected = select(criteria);
+        int total = selected.cardinality();
+        int start = Math.min(offset, total);
+        String[] ids = new String[Math.max(0, Math.min(limit, total - start))];
+        int skipped = 0;
+        int n = 0;
+        for (int ordinal = selected.nextSetBit(0); ordinal >= 0 && n < ids.length; ordinal = selected.nextSetBit(ordinal + 1)) {
+            if (skipped < start) {
+                skipped++;
+            } else {
+                ids[n++] = ordinals.id(ordinal);
+            }
+        }
+        return new Hits(ids, total);
+    }
+
+    /**
+     * Find the first products matching the criteria whose id follows the given one, in id order, for a page
+     * read after a cursor. Only the requested number of ids is kept while scanning.
+     *
+     * @param criteria The search filters, with any category subtree already expanded and the text filters
+     *                 matched.
+     * @param afterId  The id of the last product of the previous page, or null for the first page.
+     * @param limit    The maximum number of ids to return.
+     * @return the ids, in ascending order.
+     */
+    public String[] after(ProductCriteria criteria, String afterId, int limit) {
+        BitSet selected = select(criteria);
+        PriorityQueue<String> first = new PriorityQueue<>(Collections.reverseOrder());
+        for (int ordinal = selected.nextSetBit(0); ordinal >= 0; ordinal = selected.nextSetBit(ordinal + 1)) {
+            String id = ordinals.id(ordinal);
+            if (afterId == null || id.compareTo(afterId) > 0) {
+                first.offer(id);
+                if (first.size() > limit) {
+                    first.poll();
+                }
+            }
+        }
+        String[] ids = new String[first.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = first.poll();
+        }
+        return ids;
+    }
+
+    /**
+     * Find every product matching the criteria, for exports.
+     *
+     * @param criteria The search filters, with any category subtree already expanded and the text filters
+     *                 matched.
+     * @return the ids, in ascending order.
+     */
+    public List<String> ids(ProductCriteria criteria) {
+        BitSet selected = select(criteria);
+        List<String> ids = new ArrayList<>(selected.cardinality());
+        for (int ordinal = selected.nextSetBit(0); ordinal >= 0; ordinal = selected.nextSetBit(ordinal + 1)) {
+            ids.add(ordinals.id(ordinal));
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * The ordinals of the live products matching every filter of the criteria, combined as a search combines
+     * them.
+     */
+    private BitSet select(ProductCriteria criteria) {
+        BitSet name = matching(criteria.getName(), criteria.getNameMatches());
+        BitSet description = matching(criteria.getDescription(), criteria.getDescriptionMatches());
+        BitSet text = matching(criteria.getText(), criteria.getTextMatches());
+        boolean any = criteria.isMatchAny();
+        BitSet selected = new BitSet();
+
+        lock.readLock().lock();
+        try {
+            boolean[] wantedCategories = wantedCategories(criteria);
+            for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+                int category = categoryByProduct[ordinal];
+                Boolean match = combine(any, null, matches(name, ordinal));
+                match = combine(any, match, matches(description, ordinal));
+                match = combine(any, match, matches(text, ordinal));
+                match = combine(any, match, wantedCategories == null ? null : category >= 0 && wantedCategories[category]);
+                match = combine(any, match, priceMatches(criteria, priceByProduct[ordinal], any));
+                if (isTrue(match, true)) {
+                    selected.set(ordinal);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return selected;
+    }
+
+    private int categoryOrdinal(String categoryId) {
+        if (categoryId == null) {
+            return -1;
+        }
+        Integer ordinal = categoryOrdinals.get(categoryId);
+        if (ordinal == null) {
+            ordinal = categoryIds.size();
+            categoryIds.add(categoryId);
+            categoryOrdinals.put(categoryId, ordinal);
+        }
+        return ordinal;
+    }
+
+    private boolean[] wantedCategories(ProductCriteria criteria) {
+        List<String> wanted = criteria.getCategoryIds();
+        if (wanted == null && criteria.getCategoryId() != null) {
+            wanted = Arrays.asList(criteria.getCategoryId());
+        }
+        if (wanted == null) {
+            return null;
+        }
+        boolean[] result = new boolean[categoryIds.size()];
+        for (String id : wanted) {
+            Integer ordinal = categoryOrdinals.get(id);
+            if (ordinal != null) {
+                result[ordinal] = true;
+            }
+        }
+        return result;
+    }
+
+    private static Boolean priceMatches(ProductCriteria criteria, double price, boolean any) {
+        Boolean match = null;
+        if (criteria.getUnitPriceEquals() != null) {
+            match = price == criteria.getUnitPriceEquals();
+        }
+        Double above = criteria.getUnitPriceGreaterThan();
+        Double below = criteria.getUnitPriceLessThan();
+        if (above != null || below != null) {
+            boolean inRange = (above == null || price > above) && (below == null || price < below);
+            match = combine(any, match, inRange);
+        }
+        return match;
+    }
+
+    private static Boolean matches(BitSet matching, int ordinal) {
+        return matching == null ? null : matching.get(ordinal);
+    }
+
+    private static Boolean combine(boolean any, Boolean a, Boolean b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return any ? a || b : a && b;
+    }
+
+    private static boolean isTrue(Boolean value, boolean whenUnset) {
+        return value == null ? whenUnset : value;
+    }
+
+    private static int bucketOf(double[] bounds, double price) {
+        int last = bounds.length - 1;
+        if (price < bounds[0] || price > bounds[last]) {
+            return -1;
+        }
+        if (price == bounds[last]) {
+            return last - 1;
+        }
+        int at = Arrays.binarySearch(bounds, price);
+        return at >= 0 ? at : -at - 2;
+    }
+
+    /**
+     * The ordinals of the products matching a text filter, or null if the filter is not set.
+     */
+    private static BitSet matching(String filter, int[] matches) {
+        if (filter == null) {
+            return null;
+        }
+        BitSet bits = new BitSet();
+        for (int ordinal : ProductCriteria.matched(matches)) {
+            bits.set(ordinal);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,56 @@
+package com.faison.index;
+
+import java.util.List;
+
+/**
+ * Product counts per category and per price bucket for a search.
+ */
+public class ProductFacets {
+
+    private final List<CategoryCount> categories;
+    private final double[] priceBounds;
+    private final int[] priceCounts;
+
+    ProductFacets(List<CategoryCount> categories, double[] priceBounds, int[] priceCounts) {
+        this.categories = categories;
+        this.priceBounds = priceBounds;
+        this.priceCounts = priceCounts;
+    }
+
+    /**
+     * @return the categories holding matching products, the one with the most products first.
+     */
+    public List<CategoryCount> getCategories() {
+        return categories;
+    }
+
+    /**
+     * @return the price bucket bounds; bucket i goes from priceBounds[i] to priceBounds[i + 1].
+     */
+    public double[] getPriceBounds() {
+        return priceBounds;
+    }
+
+    public int[] getPriceCounts() {
+        return priceCounts;
+    }
+
+    public static class CategoryCount {
+
+        private final String categoryId;
+        private final int count;
+
+        CategoryCount(String categoryId, int count) {
+            this.categoryId = categoryId;
+            this.count = count;
+        }
+
+        public String getCategoryId() {
+            return categoryId;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.faison.index;
+
+import com.faison.models.Product;
+
+/**
+ * An in-memory index over {@link Product} records, kept up to date by
+ * {@link com.faison.services.ProductService} and filled on startup by {@link ProductIndexLoader}.
+ */
+public interface ProductIndex {
+
+    /**
+     * Add a product to the index, replacing any earlier version of it.
+     *
+     * @param product The saved product.
+     */
+    void put(Product product);
+
+    /**
+     * Remove a product from the index. Unknown ids are ignored.
+     *
+     * @param id The id of the deleted product.
+     */
+    void remove(String id);
+}
@@ -0,0 +1,48 @@
+package com.faison.index;
+
+import com.faison.models.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * Fills every {@link ProductIndex} from the products collection on startup, in a single pass over a cursor.
+ * The price index snapshot is then built at once, so price searches are answered as soon as the application is up.
+ */
+@Component
+public class ProductIndexLoader {
+
+    private final Logger log = LoggerFactory.getLogger(ProductIndexLoader.class);
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Autowired
+    private List<ProductIndex> indexes;
+
+    @Autowired
+    private ProductPriceIndex priceIndex;
+
+    @PostConstruct
+    public void load() {
+        int count = 0;
+        try (CloseableIterator<Product> products = template.stream(new Query(), Product.class)) {
+            while (products.hasNext()) {
+                Product product = products.next();
+                for (ProductIndex index : indexes) {
+                    index.put(product);
+                }
+                count++;
+            }
+        }
+        priceIndex.refresh();
+        log.info("Indexed {} products into {} indexes", count, indexes.size());
+    }
+}
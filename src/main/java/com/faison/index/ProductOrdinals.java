@@ -0,0 +1,63 @@
+package com.faison.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns every {@link com.faison.models.Product} id a dense int ordinal, so in-memory indexes can refer
+ * to products through primitive arrays instead of strings. Ordinals are never reused, not even after
+ * the product is deleted.
+ */
+@Component
+public class ProductOrdinals {
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private volatile String[] ids = new String[1024];
+    private volatile int size;
+
+    /**
+     * Return the ordinal of the given id, assigning a new one if the id has never been seen.
+     *
+     * @param id The product id.
+     * @return the ordinal of the product.
+     */
+    public synchronized int assign(String id) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size] = id;
+        ordinals.put(id, size);
+        return size++;
+    }
+
+    /**
+     * @param id The product id.
+     * @return the ordinal of the product, or -1 if it has none.
+     */
+    public synchronized int ordinal(String id) {
+        Integer ordinal = ordinals.get(id);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * @param ordinal An ordinal previously returned by {@link #assign(String)}.
+     * @return the id of the product with the given ordinal.
+     */
+    public String id(int ordinal) {
+        return ids[ordinal];
+    }
+
+    /**
+     * @return one more than the highest ordinal assigned so far.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,282 @@
+package com.faison.index;
+
+import com.faison.models.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Index of {@link Product#getUnitPrice()} kept as two parallel primitive arrays sorted by price, so range
+ * queries and counts are answered by binary search.
+ * <p>
+ * Writes only record the new price of a product ordinal. The sorted arrays are rebuilt in the background every
+ * second when there were writes, and published as an immutable snapshot: reads never block and never sort, and
+ * keep being answered from the previous snapshot until the next one is ready, so a price change shows up in
+ * price searches within about a second.
+ */
+@Component
+public class ProductPriceIndex implements ProductIndex {
+
+    @Autowired
+    private ProductOrdinals ordinals;
+
+    private double[] priceByOrdinal = new double[1024];
+    private boolean dirty;
+    private volatile Snapshot snapshot = new Snapshot(new double[0], new int[0]);
+    private final Object rebuilding = new Object();
+
+    {
+        Arrays.fill(priceByOrdinal, Double.NaN);
+    }
+
+    @Override
+    public synchronized void put(Product product) {
+        int ordinal = ordinals.assign(product.getId());
+        if (ordinal >= priceByOrdinal.length) {
+            int oldLength = priceByOrdinal.length;
+            priceByOrdinal = Arrays.copyOf(priceByOrdinal, Math.max(oldLength * 2, ordinal + 1));
+            Arrays.fill(priceByOrdinal, oldLength, priceByOrdinal.length, Double.NaN);
+        }
+        priceByOrdinal[ordinal] = product.getUnitPrice();
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        int ordinal = ordinals.ordinal(id);
+        if (ordinal < 0 || ordinal >= priceByOrdinal.length) {
+            return;
+        }
+        priceByOrdinal[ordinal] = Double.NaN;
+        dirty = true;
+    }
+
+    /**
+     * Find the products whose price satisfies every bound given. Null bounds are ignored.
+     *
+     * @param equals      The exact price required.
+     * @param greaterThan The exclusive lower bound.
+     * @param lessThan    The exclusive upper bound.
+     * @param offset      The number of matches to skip, cheapest first.
+     * @param limit       The maximum number of ids to return.
+     * @return the ids in the requested window, cheapest first, and the total number of matches.
+     */
+    public Hits find(Double equals, Double greaterThan, Double lessThan, int offset, int limit) {
+        Snapshot current = snapshot;
+        int from = 0;
+        int to = current.prices.length;
+        if (equals != null) {
+            from = current.firstAtLeast(equals);
+            to = current.firstAbove(equals);
+        }
+        if (greaterThan != null) {
+            from = Math.max(from, current.firstAbove(greaterThan));
+        }
+        if (lessThan != null) {
+            to = Math.min(to, current.firstAtLeast(lessThan));
+        }
+        int total = Math.max(0, to - from);
+        int start = from + Math.min(offset, total);
+        int end = Math.min(start + limit, from + total);
+        String[] ids = new String[end - start];
+        for (int i = start; i < end; i++) {
+            ids[i - start] = ordinals.id(current.ordinals[i]);
+        }
+        return new Hits(ids, total);
+    }
+
+    /**
+     * Count products whose price satisfies every bound given. Null bounds are ignored.
+     *
+     * @param greaterThan The exclusive lower bound.
+     * @param lessThan    The exclusive upper bound.
+     * @return the number of matching products.
+     */
+    public int count(Double greaterThan, Double lessThan) {
+        Snapshot current = snapshot;
+        int from = greaterThan == null ? 0 : current.firstAbove(greaterThan);
+        int to = lessThan == null ? current.prices.length : current.firstAtLeast(lessThan);
+        return Math.max(0, to - from);
+    }
+
+    /**
+     * Split the catalog price range into equally wide buckets and count the products in each.
+     *
+     * @param buckets The number of buckets, at least one. Callers bound it: the arrays are sized by it.
+     * @return the histogram, empty if the catalog is.
+     */
+    public PriceHistogram histogram(int buckets) {
+        if (buckets < 1 || buckets == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bucket count out of range: " + buckets);
+        }
+        Snapshot current = snapshot;
+        int size = current.prices.length;
+        if (size == 0) {
+            return new PriceHistogram(new double[0], new int[0]);
+        }
+        double min = current.prices[0];
+        double max = current.prices[size - 1];
+        double width = (max - min) / buckets;
+        double[] bounds = new double[buckets + 1];
+        int[] counts = new int[buckets];
+        bounds[0] = min;
+        int previous = 0;
+        for (int i = 1; i <= buckets; i++) {
+            bounds[i] = i == buckets ? max : min + width * i;
+            int end = i == buckets ? size : current.firstAtLeast(bounds[i]);
+            counts[i - 1] = end - previous;
+            previous = end;
+        }
+        return new PriceHistogram(bounds, counts);
+    }
+
+    /**
+     * Publish a new snapshot if prices were written since the last one. Writers are only held up while the
+     * prices are copied; the sort runs outside their lock.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void refresh() {
+        synchronized (rebuilding) {
+            double[] byOrdinal;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                byOrdinal = priceByOrdinal.clone();
+                dirty = false;
+            }
+            snapshot = build(byOrdinal);
+        }
+    }
+
+    private static Snapshot build(double[] byOrdinal) {
+        int live = 0;
+        for (double price : byOrdinal) {
+            if (!Double.isNaN(price)) {
+                live++;
+            }
+        }
+        double[] prices = new double[live];
+        int[] sorted = new int[live];
+        int n = 0;
+        for (int ordinal = 0; ordinal < byOrdinal.length; ordinal++) {
+            if (!Double.isNaN(byOrdinal[ordinal])) {
+                prices[n] = byOrdinal[ordinal];
+                sorted[n++] = ordinal;
+            }
+        }
+        sort(prices, sorted, 0, live - 1);
+        return new Snapshot(prices, sorted);
+    }
+
+    /**
+     * Quicksort the prices in place, moving the ordinals along, without boxing either.
+     */
+    private static void sort(double[] prices, int[] ordinals, int low, int high) {
+        while (high - low > 16) {
+            double pivot = prices[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (prices[i] < pivot) {
+                    i++;
+                }
+                while (prices[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(prices, ordinals, i++, j--);
+                }
+            }
+            // Recurse into the smaller half to bound the stack depth.
+            if (j - low < high - i) {
+                sort(prices, ordinals, low, j);
+                low = i;
+            } else {
+                sort(prices, ordinals, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && prices[j - 1] > prices[j]; j--) {
+                swap(prices, ordinals, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(double[] prices, int[] ordinals, int i, int j) {
+        double price = prices[i];
+        prices[i] = prices[j];
+        prices[j] = price;
+        int ordinal = ordinals[i];
+        ordinals[i] = ordinals[j];
+        ordinals[j] = ordinal;
+    }
+
+    /**
+     * Prices in ascending order, with the ordinal of the product at the same position.
+     */
+    private static class Snapshot {
+
+        private final double[] prices;
+        private final int[] ordinals;
+
+        Snapshot(double[] prices, int[] ordinals) {
+            this.prices = prices;
+            this.ordinals = ordinals;
+        }
+
+        int firstAtLeast(double price) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] < price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        int firstAbove(double price) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] <= price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Product counts per price bucket. Bucket i covers prices from bounds[i] up to, but excluding, bounds[i + 1];
+     * the last bucket also includes its upper bound.
+     */
+    public static class PriceHistogram {
+
+        private final double[] bounds;
+        private final int[] counts;
+
+        PriceHistogram(double[] bounds, int[] counts) {
+            this.bounds = bounds;
+            this.counts = counts;
+        }
+
+        public double[] getBounds() {
+            return bounds;
+        }
+
+        public int[] getCounts() {
+            return counts;
+        }
+    }
+}
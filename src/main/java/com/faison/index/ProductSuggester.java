@@ -0,0 +1,280 @@
+package com.faison.index;
+
+import com.faison.models.Product;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix trie over normalized product names for typeahead. Every node keeps the {@value #TOP} most popular
+ * names below it, so a lookup is a walk down the prefix and a copy of that list.
+ * <p>
+ * A name is as popular as the number of products carrying it plus the number of times those products were
+ * viewed. Views are counted without locking and folded into the trie every few seconds, so hot product pages
+ * never wait on the trie.
+ */
+@Component
+public class ProductSuggester implements ProductIndex {
+
+    static final int TOP = 10;
+    private static final Suggestion[] NONE = new Suggestion[0];
+
+    private final Node root = new Node();
+    private final Map<String, String> keyById = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> pendingViews = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void put(Product product) {
+        String key = normalize(product.getName());
+        if (key.isEmpty()) {
+            remove(product.getId());
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            String old = keyById.put(product.getId(), key);
+            if (key.equals(old)) {
+                return;
+            }
+            if (old != null) {
+                change(old, -1, 0, null);
+            }
+            change(key, 1, 0, product.getName().trim());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            String old = keyById.remove(id);
+            if (old != null) {
+                change(old, -1, 0, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Count a view of a product towards the popularity of its name.
+     *
+     * @param id The id of the viewed product.
+     */
+    public void recordView(String id) {
+        if (!keyById.containsKey(id)) {
+            return;
+        }
+        pendingViews.computeIfAbsent(id, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Fold the views counted since the last call into the trie.
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void applyViews() {
+        if (pendingViews.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, LongAdder> entry : pendingViews.entrySet()) {
+                long views = entry.getValue().sumThenReset();
+                String key = keyById.get(entry.getKey());
+                if (views > 0 && key != null) {
+                    change(key, 0, views, null);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return the most popular product names starting with the given prefix.
+     *
+     * @param prefix The text typed so far.
+     * @param limit  The maximum number of names to return, at most {@value #TOP}.
+     * @return the names, most popular first.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>(Arrays.asList(node.top).subList(0, Math.min(limit, node.top.length)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lowercase the text and collapse runs of whitespace to one space.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = builder.length() > 0;
+            } else {
+                if (space) {
+                    builder.append(' ');
+                    space = false;
+                }
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Apply a change to the name stored under the key, then refresh the top lists from its node up to the root.
+     * Must be called with the write lock held.
+     */
+    private void change(String key, int productDelta, long viewDelta, String display) {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].childOrCreate(key.charAt(i));
+        }
+
+        Node node = path[key.length()];
+        Suggestion old = node.terminal;
+        int products = (old == null ? 0 : old.products) + productDelta;
+        long views = (old == null ? 0 : old.views) + viewDelta;
+        String text = old == null || old.text == null ? display : old.text;
+        node.terminal = products <= 0 ? null : new Suggestion(text, products, views);
+
+        for (int depth = key.length(); depth >= 0; depth--) {
+            Node current = path[depth];
+            if (depth < key.length()) {
+                current.pruneIfEmpty(key.charAt(depth), path[depth + 1]);
+            }
+            current.refreshTop();
+        }
+    }
+
+    /**
+     * A product name offered for a prefix.
+     */
+    public static class Suggestion {
+
+        private final String text;
+        private final int products;
+        private final long views;
+
+        Suggestion(String text, int products, long views) {
+            this.text = text;
+            this.products = products;
+            this.views = views;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return the number of products with this name.
+         */
+        public int getProducts() {
+            return products;
+        }
+
+        public long getWeight() {
+            return products + views;
+        }
+
+        private int compareByWeight(Suggestion other) {
+            int byWeight = Long.compare(other.getWeight(), getWeight());
+            return byWeight != 0 ? byWeight : text.compareTo(other.text);
+        }
+    }
+
+    private static class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Suggestion terminal;
+        private Suggestion[] top = NONE;
+
+        Node child(char c) {
+            int at = Arrays.binarySearch(keys, c);
+            return at < 0 ? null : children[at];
+        }
+
+        Node childOrCreate(char c) {
+            int at = Arrays.binarySearch(keys, c);
+            if (at >= 0) {
+                return children[at];
+            }
+            at = -at - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            newKeys[at] = c;
+            newChildren[at] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[at];
+        }
+
+        void pruneIfEmpty(char c, Node child) {
+            if (child.terminal != null || child.children.length > 0) {
+                return;
+            }
+            int at = Arrays.binarySearch(keys, c);
+            if (at < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(keys, at + 1, newKeys, at, keys.length - at - 1);
+            System.arraycopy(children, at + 1, newChildren, at, children.length - at - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        /**
+         * Merge the top lists of the children with the name ending here; the lists are disjoint.
+         */
+        void refreshTop() {
+            List<Suggestion> candidates = new ArrayList<>();
+            if (terminal != null) {
+                candidates.add(terminal);
+            }
+            for (Node child : children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(Suggestion::compareByWeight);
+            int size = Math.min(TOP, candidates.size());
+            top = size == 0 ? NONE : candidates.subList(0, size).toArray(new Suggestion[size]);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.faison.index;
+
+import com.faison.models.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over {@link Product#getName()} and {@link Product#getDescription()}, ranking matches with BM25.
+ * <p>
+ * Text is lowercased and split on anything that is not a letter or a digit. Every term keeps a posting list of
+ * product ordinals sorted in ascending order, with the term frequency alongside, so that queries are answered
+ * by intersecting primitive arrays.
+ */
+@Component
+public class ProductTextIndex implements ProductIndex {
+
+    public enum Field {
+        NAME(2.0f), DESCRIPTION(1.0f);
+
+        private final float weight;
+
+        Field(float weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final Field[] ALL_FIELDS = Field.values();
+
+    @Autowired
+    private ProductOrdinals ordinals;
+
+    private final FieldIndex[] fields = {new FieldIndex(), new FieldIndex()};
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void put(Product product) {
+        int ordinal = ordinals.assign(product.getId());
+        lock.writeLock().lock();
+        try {
+            fields[Field.NAME.ordinal()].put(ordinal, tokenize(product.getName()));
+            fields[Field.DESCRIPTION.ordinal()].put(ordinal, tokenize(product.getDescription()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        int ordinal = ordinals.ordinal(id);
+        if (ordinal < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (FieldIndex field : fields) {
+                field.remove(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Search for products whose name contains every term of {@code name} and whose description contains every
+     * term of {@code description}, and whose name or description contains every term of {@code text}.
+     * Null or blank arguments are ignored.
+     *
+     * @param name        Terms required in the name.
+     * @param description Terms required in the description.
+     * @param text        Terms required in either field.
+     * @param offset      The number of ranked hits to skip.
+     * @param limit       The maximum number of ids to return.
+     * @return the ranked ids in the requested window, and the total number of hits.
+     */
+    public Hits search(String name, String description, String text, int offset, int limit) {
+        List<Clause> clauses = clauses(name, description, text);
+        if (clauses.isEmpty()) {
+            return Hits.EMPTY;
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] candidates = candidates(clauses);
+            if (candidates.length == 0) {
+                return Hits.EMPTY;
+            }
+
+            // Pack each score and ordinal into one long so ranking is a single primitive sort.
+            long[] ranked = new long[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                float score = 0;
+                for (Clause clause : clauses) {
+                    score += clause.score(fields, candidates[i]);
+                }
+                ranked[i] = ((long) Float.floatToIntBits(score) << 32) | (Integer.MAX_VALUE - candidates[i]);
+            }
+            Arrays.sort(ranked);
+
+            int from = Math.min(offset, ranked.length);
+            int to = Math.min(from + limit, ranked.length);
+            String[] ids = new String[to - from];
+            for (int i = from; i < to; i++) {
+                int ordinal = Integer.MAX_VALUE - (int) ranked[ranked.length - 1 - i];
+                ids[i - from] = ordinals.id(ordinal);
+            }
+            return new Hits(ids, ranked.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find every product matching the terms, without ranking them. The arguments are those of
+     * {@link #search(String, String, String, int, int)}, except that text without any term matches nothing,
+     * as it does when searching.
+     *
+     * @return the ordinals of the matching products in ascending order, or null if every argument is null.
+     */
+    public int[] matching(String name, String description, String text) {
+        if (name == null && description == null && text == null) {
+            return null;
+        }
+        List<Clause> clauses = clauses(name, description, text);
+        if (clauses.isEmpty()) {
+            return new int[0];
+        }
+        lock.readLock().lock();
+        try {
+            return candidates(clauses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<Clause> clauses(String name, String description, String text) {
+        List<Clause> clauses = new ArrayList<>();
+        for (String term : tokenize(name)) {
+            clauses.add(new Clause(term, Field.NAME));
+        }
+        for (String term : tokenize(description)) {
+            clauses.add(new Clause(term, Field.DESCRIPTION));
+        }
+        for (String term : tokenize(text)) {
+            clauses.add(new Clause(term, ALL_FIELDS));
+        }
+        return clauses;
+    }
+
+    /**
+     * Intersect the documents of every clause. Must be called with the read lock held.
+     */
+    private int[] candidates(List<Clause> clauses) {
+        int[] candidates = null;
+        for (Clause clause : clauses) {
+            int[] docs = clause.docs(fields);
+            candidates = candidates == null ? docs : intersect(candidates, docs);
+            if (candidates.length == 0) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Split text into lowercase terms made of letters and digits.
+     *
+     * @param text The text to split, possibly null.
+     * @return the terms in order of appearance.
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                out[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * A query term that must appear in at least one of the given fields.
+     */
+    private static class Clause {
+
+        private final String term;
+        private final Field[] fields;
+
+        Clause(String term, Field... fields) {
+            this.term = term;
+            this.fields = fields;
+        }
+
+        int[] docs(FieldIndex[] indexes) {
+            int[] docs = null;
+            for (Field field : fields) {
+                Postings postings = indexes[field.ordinal()].postings.get(term);
+                int[] fieldDocs = postings == null ? new int[0] : Arrays.copyOf(postings.docs, postings.size);
+                docs = docs == null ? fieldDocs : union(docs, fieldDocs);
+            }
+            return docs;
+        }
+
+        float score(FieldIndex[] indexes, int ordinal) {
+            float score = 0;
+            for (Field field : fields) {
+                score += field.weight * indexes[field.ordinal()].bm25(term, ordinal);
+            }
+            return score;
+        }
+    }
+
+    /**
+     * The postings and length statistics of a single field.
+     */
+    private static class FieldIndex {
+
+        private final Map<String, Postings> postings = new HashMap<>();
+        private int[] lengths = new int[1024];
+        private String[][] terms = new String[1024][];
+        private long totalLength;
+        private int documents;
+
+        void put(int ordinal, List<String> tokens) {
+            remove(ordinal);
+            ensureCapacity(ordinal);
+
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokens) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), k -> new Postings()).put(ordinal, entry.getValue());
+            }
+            terms[ordinal] = frequencies.keySet().toArray(new String[frequencies.size()]);
+            lengths[ordinal] = tokens.size();
+            totalLength += tokens.size();
+            documents++;
+        }
+
+        void remove(int ordinal) {
+            if (ordinal >= terms.length || terms[ordinal] == null) {
+                return;
+            }
+            for (String term : terms[ordinal]) {
+                Postings list = postings.get(term);
+                list.remove(ordinal);
+                if (list.size == 0) {
+                    postings.remove(term);
+                }
+            }
+            terms[ordinal] = null;
+            totalLength -= lengths[ordinal];
+            lengths[ordinal] = 0;
+            documents--;
+        }
+
+        float bm25(String term, int ordinal) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                return 0;
+            }
+            int frequency = list.frequency(ordinal);
+            if (frequency == 0) {
+                return 0;
+            }
+            double idf = Math.log(1 + (documents - list.size + 0.5) / (list.size + 0.5));
+            double averageLength = documents == 0 ? 1 : (double) totalLength / documents;
+            double norm = K1 * (1 - B + B * lengths[ordinal] / Math.max(averageLength, 1));
+            return (float) (idf * frequency * (K1 + 1) / (frequency + norm));
+        }
+
+        private void ensureCapacity(int ordinal) {
+            if (ordinal >= lengths.length) {
+                int capacity = Math.max(lengths.length * 2, ordinal + 1);
+                lengths = Arrays.copyOf(lengths, capacity);
+                terms = Arrays.copyOf(terms, capacity);
+            }
+        }
+    }
+
+    /**
+     * A posting list: product ordinals in ascending order with their term frequencies.
+     */
+    private static class Postings {
+
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void put(int ordinal, int frequency) {
+            int at = Arrays.binarySearch(docs, 0, size, ordinal);
+            if (at >= 0) {
+                frequencies[at] = frequency;
+                return;
+            }
+            at = -at - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(docs, at, docs, at + 1, size - at);
+            System.arraycopy(frequencies, at, frequencies, at + 1, size - at);
+            docs[at] = ordinal;
+            frequencies[at] = frequency;
+            size++;
+        }
+
+        void remove(int ordinal) {
+            int at = Arrays.binarySearch(docs, 0, size, ordinal);
+            if (at < 0) {
+                return;
+            }
+            System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+            System.arraycopy(frequencies, at + 1, frequencies, at, size - at - 1);
+            size--;
+        }
+
+        int frequency(int ordinal) {
+            int at = Arrays.binarySearch(docs, 0, size, ordinal);
+            return at < 0 ? 0 : frequencies[at];
+        }
+    }
+}
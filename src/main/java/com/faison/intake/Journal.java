@@ -0,0 +1,282 @@
+package com.faison.intake;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * An append-only log of entries not yet written to the database, one line each, kept in segment files next to
+ * the given path and numbered after it. An entry is on disk before {@link #append(String)} returns; it is
+ * {@link #release(Collection) released} with the number of its segment once written to the database.
+ * <p>
+ * The segment being appended to is replaced by a new one once it grows past the given size, and a segment is
+ * deleted once every entry it holds has been released, so the journal only ever holds about what is in flight,
+ * however long the load lasts. The segment being appended to is emptied whenever all of its entries are
+ * released.
+ * <p>
+ * Appends are group committed: entries are written under a short lock, and a single {@code fsync} covers every
+ * entry written before it started, so threads arriving while a sync runs share the next one instead of queueing
+ * for one each. Emptying and deleting segments is not synced: if one comes back after a crash, its entries are
+ * written again and rejected as duplicates.
+ */
+public class Journal implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(Journal.class);
+
+    private final Path path;
+    private final long segmentBytes;
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    /**
+     * The segments with entries not yet released, by number, the one being appended to included.
+     */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private volatile Segment current;
+    /**
+     * Bytes appended since the journal was opened, across segments and truncations, so sync positions only
+     * ever grow.
+     */
+    private volatile long end;
+    private long synced;
+    private long truncated;
+
+    private Journal(Path path, long segmentBytes) {
+        this.path = path;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Open the journal at the given path, creating a new segment to append to after those left by a previous
+     * run.
+     *
+     * @param path         The path the segment files are named after.
+     * @param segmentBytes The size past which a new segment is started.
+     * @return the open journal.
+     * @throws IOException if the segments cannot be listed or created.
+     */
+    public static Journal open(Path path, long segmentBytes) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Journal journal = new Journal(path, segmentBytes);
+        if (Files.exists(path)) {
+            // A journal written before segments, replayed as the first one.
+            journal.segments.put(0L, new Segment(0, path));
+        }
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                try {
+                    long number = Long.parseLong(file.getFileName().toString().substring(prefix.length()));
+                    journal.segments.put(number, new Segment(number, file));
+                } catch (NumberFormatException e) {
+                    journal.log.warn("Ignoring {}, not a segment of the journal", file);
+                }
+            }
+        }
+        long next = journal.segments.isEmpty() ? 1 : journal.segments.lastKey() + 1;
+        journal.current = journal.create(next);
+        return journal;
+    }
+
+    /**
+     * Read the entries left by a previous run, oldest first, counting them as not yet released. A last line cut
+     * short by a crash was never acknowledged, so it is dropped. Segments are streamed, so they need not fit in
+     * memory.
+     *
+     * @param consumer Receives the number of the segment of every entry, and the entry.
+     * @throws IOException if a segment cannot be read.
+     */
+    public void replay(BiConsumer<Long, String> consumer) throws IOException {
+        for (Segment segment : new TreeMap<>(segments.headMap(current.number)).values()) {
+            long entries = 0;
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(segment.path)) {
+                for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] != '\n') {
+                            line.write(buffer[i]);
+                        } else if (line.size() > 0) {
+                            synchronized (appendLock) {
+                                segment.outstanding++;
+                            }
+                            entries++;
+                            consumer.accept(segment.number, new String(line.toByteArray(), StandardCharsets.UTF_8));
+                            line.reset();
+                        }
+                    }
+                }
+            }
+            if (line.size() > 0) {
+                log.warn("Dropping the incomplete last entry of {}", segment.path);
+            }
+            if (entries == 0) {
+                synchronized (appendLock) {
+                    delete(segment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Append an entry and wait until it is on disk.
+     *
+     * @param entry The entry, on a single line.
+     * @return the number of the segment holding the entry, to release it with.
+     * @throws IOException if the entry could not be written or synced. It must then be treated as not taken,
+     *                     although an entry that reached the file is written again after a restart.
+     */
+    public long append(String entry) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap((entry + '\n').getBytes(StandardCharsets.UTF_8));
+        long written;
+        long number;
+        synchronized (appendLock) {
+            if (current.channel.position() > 0 && current.channel.position() + bytes.remaining() > segmentBytes) {
+                rotate();
+            }
+            while (bytes.hasRemaining()) {
+                current.channel.write(bytes);
+            }
+            end = truncated + current.channel.position();
+            written = end;
+            number = current.number;
+            current.outstanding++;
+        }
+        try {
+            sync(written);
+        } catch (IOException e) {
+            release(Collections.singleton(number));
+            throw e;
+        }
+        return number;
+    }
+
+    /**
+     * Mark entries as written to the database. A segment left without entries is deleted, or emptied if it is
+     * the one being appended to.
+     *
+     * @param numbers The segment number of every entry written.
+     * @throws IOException if a segment could not be emptied.
+     */
+    public void release(Collection<Long> numbers) throws IOException {
+        Map<Long, Integer> counts = new TreeMap<>();
+        for (Long number : numbers) {
+            counts.merge(number, 1, Integer::sum);
+        }
+        synchronized (appendLock) {
+            for (Map.Entry<Long, Integer> count : counts.entrySet()) {
+                Segment segment = segments.get(count.getKey());
+                if (segment == null) {
+                    continue;
+                }
+                segment.outstanding = Math.max(0, segment.outstanding - count.getValue());
+                if (segment.outstanding > 0) {
+                    continue;
+                }
+                if (segment == current) {
+                    truncated += current.channel.position();
+                    current.channel.truncate(0);
+                    current.channel.position(0);
+                } else {
+                    delete(segment);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries appended or replayed and not yet released.
+     */
+    public long outstanding() {
+        synchronized (appendLock) {
+            long outstanding = 0;
+            for (Segment segment : segments.values()) {
+                outstanding += segment.outstanding;
+            }
+            return outstanding;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            current.channel.close();
+        }
+    }
+
+    private Segment create(long number) throws IOException {
+        Segment segment = new Segment(number, path.resolveSibling(path.getFileName() + "." + number));
+        segment.channel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segment.channel.position(segment.channel.size());
+        segments.put(number, segment);
+        return segment;
+    }
+
+    /**
+     * Start a new segment, once every entry of the current one is on disk. Called under the append lock.
+     */
+    private void rotate() throws IOException {
+        Segment full = current;
+        synchronized (syncLock) {
+            full.channel.force(false);
+            synced = end;
+            truncated += full.channel.position();
+            full.channel.close();
+            current = create(full.number + 1);
+        }
+        if (full.outstanding == 0) {
+            delete(full);
+        }
+    }
+
+    /**
+     * Forget a segment that is not appended to anymore. Called under the append lock.
+     */
+    private void delete(Segment segment) throws IOException {
+        segments.remove(segment.number);
+        Files.deleteIfExists(segment.path);
+    }
+
+    private void sync(long position) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return;
+            }
+            long target = end;
+            current.channel.force(false);
+            synced = target;
+        }
+    }
+
+    /**
+     * A segment file and the number of its entries not yet released.
+     */
+    private static final class Segment {
+
+        private final long number;
+        private final Path path;
+        private FileChannel channel;
+        private long outstanding;
+
+        private Segment(long number, Path path) {
+            this.number = number;
+            this.path = path;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.faison.models;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+
 import javax.persistence.*;
+import java.util.Date;
 
 @Entity
+@JsonFilter("fields")
 @Table(name = "categories")
 public class Category {
 
@@ -15,6 +19,7 @@ public class Category {
     private String parentCategoryId;
     @Column(name = "description")
     private String description;
+    private Date lastModified;
 
     public String getId() {
         return id;
@@ -51,4 +56,16 @@ public class Category {
         this.description = description;
         return this;
     }
+
+    /**
+     * @return when the record was last written, or null if it has not been since this was tracked.
+     */
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public Category setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+        return this;
+    }
 }
@@ -1,11 +1,16 @@
 package com.faison.models;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.data.annotation.Transient;
+
 import javax.persistence.*;
 
 import java.util.Date;
 import java.util.List;
 
 @Entity
+@JsonFilter("fields")
 @Table(name = "orders")
 public class Order {
 
@@ -13,16 +18,29 @@ public class Order {
     @GeneratedValue(strategy = GenerationType.SEQUENCE)
     private String id;
     private double cost;
-    @ManyToOne(targetEntity = User.class, optional = false)
+    /**
+     * The buyer sent with a new order. Only its id and name are stored, as {@link #buyerId} and
+     * {@link #buyerName}.
+     */
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private User buyer;
+    private String buyerId;
+    private String buyerName;
     @Column(nullable = false, updatable = false)
     private Date placedOn;
     private double shippingFee;
-    @OneToMany(targetEntity = OrderItem.class)
+    /**
+     * The items sent with a new order. They are priced and stored as {@link #lines}.
+     */
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private List<OrderItem> orderItemList;
+    private List<OrderLine> lines;
     private boolean deliveredStatus;
     @ManyToOne(targetEntity = Address.class, optional = false)
     private Address shippingAddress;
+    private Date lastModified;
 
     public String getId() {
         return id;
@@ -51,6 +69,24 @@ public class Order {
         return this;
     }
 
+    public String getBuyerId() {
+        return buyerId;
+    }
+
+    public Order setBuyerId(String buyerId) {
+        this.buyerId = buyerId;
+        return this;
+    }
+
+    public String getBuyerName() {
+        return buyerName;
+    }
+
+    public Order setBuyerName(String buyerName) {
+        this.buyerName = buyerName;
+        return this;
+    }
+
     public Date getPlacedOn() {
         return placedOn;
     }
@@ -78,6 +114,15 @@ public class Order {
         return this;
     }
 
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public Order setLines(List<OrderLine> lines) {
+        this.lines = lines;
+        return this;
+    }
+
     public boolean isDeliveredStatus() {
         return deliveredStatus;
     }
@@ -95,4 +140,16 @@ public class Order {
         this.shippingAddress = shippingAddress;
         return this;
     }
+
+    /**
+     * @return when the record was last written, or null if it has not been since this was tracked.
+     */
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public Order setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+        return this;
+    }
 }
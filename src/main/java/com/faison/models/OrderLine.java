@@ -0,0 +1,75 @@
+package com.faison.models;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import javax.persistence.Embeddable;
+
+/**
+ * A line of an {@link Order} as it was bought: the product and its price are copied when the order is placed,
+ * so the order reads the same however the catalog changes later.
+ */
+@Embeddable
+@JsonFilter("fields")
+public class OrderLine {
+
+    private String productId;
+    private String categoryId;
+    private String name;
+    private double unitPrice;
+    private int quantity;
+    private double cost;
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public OrderLine setProductId(String productId) {
+        this.productId = productId;
+        return this;
+    }
+
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    public OrderLine setCategoryId(String categoryId) {
+        this.categoryId = categoryId;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OrderLine setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public OrderLine setUnitPrice(double unitPrice) {
+        this.unitPrice = unitPrice;
+        return this;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public OrderLine setQuantity(int quantity) {
+        this.quantity = quantity;
+        return this;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public OrderLine setCost(double cost) {
+        this.cost = cost;
+        return this;
+    }
+}
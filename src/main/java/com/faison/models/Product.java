@@ -1,8 +1,12 @@
 package com.faison.models;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+
 import javax.persistence.*;
+import java.util.Date;
 
 @Entity
+@JsonFilter("fields")
 @Table(name = "products")
 public class Product {
 
@@ -16,6 +20,12 @@ public class Product {
     private String description;
     private String imagePath;
     private double unitPrice;
+    /**
+     * The units not yet leased by the stock counters of a running instance, or null if the stock of the product
+     * is not tracked. See {@link com.faison.stock.StockLedger}.
+     */
+    private Integer stock;
+    private Date lastModified;
 
     public String getId() {
         return id;
@@ -70,4 +80,25 @@ public class Product {
         this.unitPrice = unitPrice;
         return this;
     }
-}
\ No newline at end of file
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public Product setStock(Integer stock) {
+        this.stock = stock;
+        return this;
+    }
+
+    /**
+     * @return when the record was last written, or null if it has not been since this was tracked.
+     */
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public Product setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+        return this;
+    }
+}
@@ -1,8 +1,12 @@
 package com.faison.models;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+
 import javax.persistence.*;
+import java.util.Date;
 
 @Entity
+@JsonFilter("fields")
 @Table(name = "suppliers")
 public class Supplier {
 
@@ -15,6 +19,7 @@ public class Supplier {
     private String phoneNumber;
     @ManyToOne(targetEntity = Address.class, cascade = CascadeType.ALL, optional = false)
     private Address address;
+    private Date lastModified;
 
     public String getId() {
         return id;
@@ -55,4 +60,15 @@ public class Supplier {
     public void setAddress(Address address) {
         this.address = address;
     }
+
+    /**
+     * @return when the record was last written, or null if it has not been since this was tracked.
+     */
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
 }
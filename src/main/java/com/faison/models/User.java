@@ -1,8 +1,11 @@
 package com.faison.models;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+
 import javax.persistence.*;
 
 @Entity
+@JsonFilter("fields")
 @Table(name = "users")
 public class User {
 
@@ -0,0 +1,41 @@
+package com.faison.paging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the sort keys of the last record of a page into an opaque token, which clients send back
+ * as {@code after=<token>} to get the next page.
+ */
+public final class Cursor {
+
+    private static final String SEPARATOR = "\n";
+
+    private Cursor() {
+    }
+
+    /**
+     * @param keys The sort keys of the last record returned.
+     * @return the token to continue after that record.
+     */
+    public static String encode(String... keys) {
+        String joined = String.join(SEPARATOR, keys);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token A token returned by {@link #encode(String...)}, or an empty string for the first page.
+     * @return the sort keys in the token, an empty array for the first page, or null if the token is malformed.
+     */
+    public static String[] decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return new String[0];
+        }
+        try {
+            String joined = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            return joined.split(SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.faison.paging;
+
+import java.util.List;
+
+/**
+ * A page of records read after a {@link Cursor}. Unlike a {@link org.springframework.data.domain.Page},
+ * it carries no total count, so fetching it never counts the collection.
+ *
+ * @param <T> the type of the records
+ */
+public class CursorPage<T> {
+
+    private final List<T> content;
+    private final String next;
+
+    public CursorPage(List<T> content, String next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public int getNumberOfElements() {
+        return content.size();
+    }
+
+    /**
+     * @return the token of the next page, or null if this is the last one.
+     */
+    public String getNext() {
+        return next;
+    }
+
+    public boolean isLast() {
+        return next == null;
+    }
+}
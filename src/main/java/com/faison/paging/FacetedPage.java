@@ -0,0 +1,28 @@
+package com.faison.paging;
+
+import org.springframework.data.domain.Page;
+
+/**
+ * A page of search results along with the facet counts of the whole search.
+ *
+ * @param <T> the type of the records
+ * @param <F> the type of the facet counts
+ */
+public class FacetedPage<T, F> {
+
+    private final Page<T> page;
+    private final F facets;
+
+    public FacetedPage(Page<T> page, F facets) {
+        this.page = page;
+        this.facets = facets;
+    }
+
+    public Page<T> getPage() {
+        return page;
+    }
+
+    public F getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,38 @@
+package com.faison.pricing;
+
+/**
+ * Conversions between the decimal amounts of the models and whole cents. All pricing arithmetic is done on
+ * cents in {@code long}s, so sums are exact and overflow is detected instead of rounded away.
+ */
+public final class Money {
+
+    /**
+     * The largest amount accepted, far below the point where a double stops resolving cents.
+     */
+    static final double MAX_AMOUNT = 1e13;
+
+    private Money() {
+    }
+
+    /**
+     * Round an amount to the nearest cent.
+     *
+     * @param amount The amount, with at most two meaningful decimals.
+     * @return the amount in cents.
+     * @throws PricingException if the amount is negative, not a number or too large.
+     */
+    public static long toCents(double amount) {
+        if (!(amount >= 0 && amount <= MAX_AMOUNT)) {
+            throw new PricingException("The amount " + amount + " is not a valid price.");
+        }
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * @param cents An amount in cents.
+     * @return the same amount as a decimal, exact to the cent.
+     */
+    public static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+}
@@ -0,0 +1,194 @@
+package com.faison.pricing;
+
+import com.faison.models.Order;
+import com.faison.models.OrderItem;
+import com.faison.models.Product;
+import com.faison.repositories.Projection;
+import com.faison.services.ProductService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prices orders from the catalog instead of trusting the amounts sent by the client. Every product referenced
+ * by a batch of orders is read in one query, then each line is priced in whole cents: the unit price of the
+ * product times the quantity. The cost of an order is the sum of its lines, and its shipping fee comes from the
+ * {@link ShippingRules}.
+ * <p>
+ * Amounts sent by the client are optional. When present they must match the computed ones to the cent, so a
+ * tampered or stale cart is rejected rather than silently repriced.
+ */
+@Component
+public class OrderPricer {
+
+    /**
+     * The largest quantity of a single line.
+     */
+    static final long MAX_QUANTITY = 1_000_000;
+
+    @Autowired
+    private ProductService products;
+
+    @Autowired
+    private ShippingRules shipping;
+
+    /**
+     * Read the products of every line of the given orders in a single query.
+     *
+     * @param orders The orders to be priced.
+     * @return the catalog prices of their products.
+     */
+    public Prices load(Collection<Order> orders) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (Order order : orders) {
+            if (order != null && order.getOrderItemList() != null) {
+                for (OrderItem item : order.getOrderItemList()) {
+                    addProductId(ids, item);
+                }
+            }
+        }
+        return loadProducts(ids);
+    }
+
+    /**
+     * Price an order, reading its products first.
+     *
+     * @param order The order to price, updated in place.
+     * @throws PricingException if the order cannot be priced or its amounts were tampered with.
+     */
+    public void price(Order order) {
+        price(order, load(Collections.singletonList(order)));
+    }
+
+    /**
+     * Price an order from products already read. Its lines get the catalog product and their cost, and the
+     * order gets its cost and shipping fee.
+     *
+     * @param order  The order to price, updated in place.
+     * @param prices The products of its lines.
+     * @throws PricingException if the order cannot be priced or its amounts were tampered with.
+     */
+    public void price(Order order, Prices prices) {
+        List<OrderItem> items = order.getOrderItemList();
+        if (items == null || items.isEmpty()) {
+            throw new PricingException("An order needs at least one item.");
+        }
+        long subtotal = 0;
+        long units = 0;
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                OrderItem item = items.get(i);
+                subtotal = Math.addExact(subtotal, priceLine(item, prices, i));
+                units = Math.addExact(units, (long) item.getQuantity());
+            }
+            long fee = shipping.feeCents(subtotal, units);
+            verify(order.getCost(), subtotal, "The cost of the order");
+            verify(order.getShippingFee(), fee, "The shipping fee of the order");
+            order.setCost(Money.toAmount(subtotal)).setShippingFee(Money.toAmount(fee));
+        } catch (ArithmeticException e) {
+            throw new PricingException("The total of the order is too large.");
+        }
+    }
+
+    /**
+     * Read the products of the given order items in a single query.
+     *
+     * @param items The items to be priced.
+     * @return the catalog prices of their products.
+     */
+    public Prices loadItems(Collection<OrderItem> items) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (OrderItem item : items) {
+            addProductId(ids, item);
+        }
+        return loadProducts(ids);
+    }
+
+    /**
+     * Price a single order item, reading its product first.
+     *
+     * @param item The item to price, updated in place.
+     * @throws PricingException if the item cannot be priced or its cost was tampered with.
+     */
+    public void price(OrderItem item) {
+        price(item, loadItems(Collections.singletonList(item)));
+    }
+
+    /**
+     * Price a single order item from products already read.
+     *
+     * @param item   The item to price, updated in place.
+     * @param prices The product of the item.
+     * @throws PricingException if the item cannot be priced or its cost was tampered with.
+     */
+    public void price(OrderItem item, Prices prices) {
+        try {
+            priceLine(item, prices, 0);
+        } catch (ArithmeticException e) {
+            throw new PricingException("The cost of the item is too large.");
+        }
+    }
+
+    private long priceLine(OrderItem item, Prices prices, int line) {
+        if (item == null || item.getProduct() == null || item.getProduct().getId() == null) {
+            throw new PricingException("Item " + line + " has no product.");
+        }
+        Product product = prices.byId.get(item.getProduct().getId());
+        if (product == null) {
+            throw new PricingException("Item " + line + " refers to the unknown product " + item.getProduct().getId() + ".");
+        }
+        double quantity = item.getQuantity();
+        if (!(quantity >= 1 && quantity <= MAX_QUANTITY) || quantity != Math.rint(quantity)) {
+            throw new PricingException("Item " + line + " has the invalid quantity " + quantity + ".");
+        }
+        long cost = Math.multiplyExact(Money.toCents(product.getUnitPrice()), (long) quantity);
+        verify(item.getCost(), cost, "The cost of item " + line);
+        item.setProduct(product).setCost(Money.toAmount(cost));
+        return cost;
+    }
+
+    /**
+     * Reject a non-zero amount sent by the client that differs from the computed one.
+     */
+    private static void verify(double sent, long computedCents, String what) {
+        if (sent != 0 && Money.toCents(sent) != computedCents) {
+            throw new PricingException(what + " is " + Money.toAmount(computedCents) + ", not " + sent + ".");
+        }
+    }
+
+    private static void addProductId(Set<String> ids, OrderItem item) {
+        if (item != null && item.getProduct() != null && item.getProduct().getId() != null) {
+            ids.add(item.getProduct().getId());
+        }
+    }
+
+    private Prices loadProducts(Set<String> ids) {
+        Map<String, Product> byId = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Product product : products.findByIds(new ArrayList<>(ids), Projection.ALL).getItems()) {
+                byId.put(product.getId(), product);
+            }
+        }
+        return new Prices(byId);
+    }
+
+    /**
+     * The catalog products of a batch of orders, by id.
+     */
+    public static class Prices {
+
+        private final Map<String, Product> byId;
+
+        Prices(Map<String, Product> byId) {
+            this.byId = byId;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.faison.pricing;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when an order cannot be priced, or when the totals sent by the client differ from the prices of the
+ * catalog. Requests failing this way are answered with an HttpStatus.BAD_REQUEST carrying the message.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class PricingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PricingException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,45 @@
+package com.faison.pricing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * The shipping fee of an order: a flat fee plus a fee per unit, waived once the items reach a threshold.
+ */
+@Component
+public class ShippingRules {
+
+    @Value("${shop.shipping.flat-fee:0}")
+    private double flatFee;
+
+    @Value("${shop.shipping.unit-fee:0}")
+    private double unitFee;
+
+    @Value("${shop.shipping.free-over:0}")
+    private double freeOver;
+
+    private long flatFeeCents;
+    private long unitFeeCents;
+    private long freeOverCents;
+
+    @PostConstruct
+    public void toCents() {
+        flatFeeCents = Money.toCents(flatFee);
+        unitFeeCents = Money.toCents(unitFee);
+        freeOverCents = Money.toCents(freeOver);
+    }
+
+    /**
+     * @param subtotalCents The total of the items, in cents.
+     * @param units         The number of units ordered.
+     * @return the shipping fee, in cents.
+     */
+    public long feeCents(long subtotalCents, long units) {
+        if (freeOverCents > 0 && subtotalCents >= freeOverCents) {
+            return 0;
+        }
+        return Math.addExact(flatFeeCents, Math.multiplyExact(unitFeeCents, units));
+    }
+}
@@ -0,0 +1,57 @@
+package com.faison.repositories;
+
+/**
+ * The outcome of one record of a bulk write.
+ */
+public class BulkItemResult {
+
+    public enum Status {
+        CREATED, UPDATED, DELETED, NOT_FOUND, FAILED
+    }
+
+    private final int index;
+    private final String id;
+    private final Status status;
+    private final String error;
+
+    public BulkItemResult(int index, String id, Status status, String error) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    public static BulkItemResult of(int index, String id, Status status) {
+        return new BulkItemResult(index, id, status, null);
+    }
+
+    public static BulkItemResult failed(int index, String id, String error) {
+        return new BulkItemResult(index, id, Status.FAILED, error);
+    }
+
+    /**
+     * @return the same result for the record at another position.
+     */
+    public BulkItemResult withIndex(int index) {
+        return new BulkItemResult(index, id, status, error);
+    }
+
+    /**
+     * @return the position of the record in the request.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
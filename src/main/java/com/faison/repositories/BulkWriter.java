@@ -0,0 +1,262 @@
+package com.faison.repositories;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteRequestBuilder;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Writes batches of records in a single unordered bulk write, so a failing record does not stop the others,
+ * and reports the outcome of every record by its position in the batch.
+ * <p>
+ * Records are checked for existence with one {@code $in} query per batch, so a batch costs two round trips
+ * however large it is.
+ */
+@Component
+public class BulkWriter {
+
+    @Autowired
+    private MongoTemplate template;
+
+    /**
+     * Insert new records. Like a single create, a record carrying the id of an existing record is rejected,
+     * and every other record is given a new id.
+     *
+     * @param type    The type of the records.
+     * @param records The records to insert.
+     * @param idOf    Returns the id of a record.
+     * @param setId   Sets the id of a record.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public <T> List<BulkItemResult> insert(Class<T> type, List<T> records, Function<T, String> idOf, BiConsumer<T, String> setId) {
+        List<String> given = new ArrayList<>();
+        for (T record : records) {
+            if (idOf.apply(record) != null) {
+                given.add(idOf.apply(record));
+            }
+        }
+        Set<String> taken = existing(type, given, idOf);
+
+        BulkItemResult[] results = new BulkItemResult[records.size()];
+        BulkWriteOperation bulk = template.getCollection(template.getCollectionName(type)).initializeUnorderedBulkOperation();
+        int[] positions = new int[records.size()];
+        int writes = 0;
+        for (int i = 0; i < records.size(); i++) {
+            T record = records.get(i);
+            if (taken.contains(idOf.apply(record))) {
+                results[i] = BulkItemResult.failed(i, idOf.apply(record), "A record with this id already exists.");
+                continue;
+            }
+            String id = new ObjectId().toString();
+            setId.accept(record, id);
+            bulk.insert(toDBObject(record));
+            positions[writes++] = i;
+            results[i] = BulkItemResult.of(i, id, BulkItemResult.Status.CREATED);
+        }
+        execute(bulk, writes, positions, results);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Insert new records that were given their ids beforehand, so they can be written more than once: a record
+     * whose id is already taken is reported as failed and left as it is.
+     *
+     * @param type    The type of the records.
+     * @param records The records to insert, each with a new id.
+     * @param idOf    Returns the id of a record.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public <T> List<BulkItemResult> insertAssigned(Class<T> type, List<T> records, Function<T, String> idOf) {
+        BulkItemResult[] results = new BulkItemResult[records.size()];
+        BulkWriteOperation bulk = template.getCollection(template.getCollectionName(type)).initializeUnorderedBulkOperation();
+        int[] positions = new int[records.size()];
+        int writes = 0;
+        for (int i = 0; i < records.size(); i++) {
+            T record = records.get(i);
+            if (idOf.apply(record) == null) {
+                results[i] = BulkItemResult.failed(i, null, "The id is required.");
+                continue;
+            }
+            bulk.insert(toDBObject(record));
+            positions[writes++] = i;
+            results[i] = BulkItemResult.of(i, idOf.apply(record), BulkItemResult.Status.CREATED);
+        }
+        execute(bulk, writes, positions, results);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Replace existing records with the given ones, matched by id.
+     *
+     * @param type    The type of the records.
+     * @param records The records to save, each with the id of the record it replaces.
+     * @param idOf    Returns the id of a record.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public <T> List<BulkItemResult> replace(Class<T> type, List<T> records, Function<T, String> idOf) {
+        return write(type, records, idOf, BulkWriteRequestBuilder::replaceOne);
+    }
+
+    /**
+     * Replace existing records with the given ones, matched by id, except for the given properties, which keep
+     * their stored values. Records are written with {@link #replacement(Object, Set)} rather than replaced whole,
+     * so a concurrent {@code $inc} of a kept property is never undone.
+     *
+     * @param type    The type of the records.
+     * @param records The records to save, each with the id of the record it replaces.
+     * @param idOf    Returns the id of a record.
+     * @param kept    The stored fields to leave as they are.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public <T> List<BulkItemResult> replaceExcept(Class<T> type, List<T> records, Function<T, String> idOf, Set<String> kept) {
+        return write(type, records, idOf, (match, document) -> match.updateOne(replacement(document, type, kept)));
+    }
+
+    /**
+     * Build the update turning a stored record into the given one, except for the given fields: every other
+     * field of the record is set, and every mapped field the record does not have is unset.
+     *
+     * @param record The record to save.
+     * @param kept   The stored fields to leave as they are.
+     * @return the update.
+     */
+    public DBObject replacement(Object record, Set<String> kept) {
+        return replacement(toDBObject(record), record.getClass(), kept);
+    }
+
+    private DBObject replacement(DBObject document, Class<?> type, Set<String> kept) {
+        BasicDBObject set = new BasicDBObject();
+        for (String field : document.keySet()) {
+            if (!"_id".equals(field) && !kept.contains(field)) {
+                set.put(field, document.get(field));
+            }
+        }
+        BasicDBObject unset = new BasicDBObject();
+        MongoPersistentEntity<?> entity = template.getConverter().getMappingContext().getPersistentEntity(type);
+        entity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+            String field = property.getFieldName();
+            if (!property.isIdProperty() && !kept.contains(field) && !document.containsField(field)) {
+                unset.put(field, "");
+            }
+        });
+        BasicDBObject update = new BasicDBObject("$set", set);
+        if (!unset.isEmpty()) {
+            update.append("$unset", unset);
+        }
+        return update;
+    }
+
+    private <T> List<BulkItemResult> write(Class<T> type, List<T> records, Function<T, String> idOf,
+                                           BiConsumer<BulkWriteRequestBuilder, DBObject> write) {
+        List<String> ids = new ArrayList<>();
+        for (T record : records) {
+            if (idOf.apply(record) != null) {
+                ids.add(idOf.apply(record));
+            }
+        }
+        Set<String> found = existing(type, ids, idOf);
+
+        BulkItemResult[] results = new BulkItemResult[records.size()];
+        BulkWriteOperation bulk = template.getCollection(template.getCollectionName(type)).initializeUnorderedBulkOperation();
+        int[] positions = new int[records.size()];
+        int writes = 0;
+        for (int i = 0; i < records.size(); i++) {
+            T record = records.get(i);
+            String id = idOf.apply(record);
+            if (id == null) {
+                results[i] = BulkItemResult.failed(i, null, "The id is required.");
+                continue;
+            }
+            if (!found.contains(id)) {
+                results[i] = BulkItemResult.of(i, id, BulkItemResult.Status.NOT_FOUND);
+                continue;
+            }
+            DBObject document = toDBObject(record);
+            write.accept(bulk.find(new BasicDBObject("_id", document.get("_id"))), document);
+            positions[writes++] = i;
+            results[i] = BulkItemResult.of(i, id, BulkItemResult.Status.UPDATED);
+        }
+        execute(bulk, writes, positions, results);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Delete the records with the given ids.
+     *
+     * @param type The type of the records.
+     * @param ids  The ids of the records to delete.
+     * @param idOf Returns the id of a record.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    public <T> List<BulkItemResult> delete(Class<T> type, List<String> ids, Function<T, String> idOf) {
+        Set<String> found = existing(type, ids, idOf);
+        if (!found.isEmpty()) {
+            template.remove(new Query(Criteria.where("id").in(found)), type);
+        }
+        List<BulkItemResult> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            results.add(BulkItemResult.of(i, id, found.contains(id) ? BulkItemResult.Status.DELETED : BulkItemResult.Status.NOT_FOUND));
+        }
+        return results;
+    }
+
+    private <T> Set<String> existing(Class<T> type, Collection<String> ids, Function<T, String> idOf) {
+        Set<String> found = new HashSet<>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+        Query query = new Query(Criteria.where("id").in(ids));
+        query.fields().include("id");
+        for (T record : template.find(query, type)) {
+            found.add(idOf.apply(record));
+        }
+        return found;
+    }
+
+    private DBObject toDBObject(Object record) {
+        DBObject document = new BasicDBObject();
+        template.getConverter().write(record, document);
+        return document;
+    }
+
+    /**
+     * Run the bulk write and mark the records the server rejected as failed.
+     *
+     * @param writes    The number of writes queued.
+     * @param positions The position in the batch of every queued write.
+     */
+    private static void execute(BulkWriteOperation bulk, int writes, int[] positions, BulkItemResult[] results) {
+        if (writes == 0) {
+            return;
+        }
+        try {
+            bulk.execute();
+        } catch (BulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                int i = positions[error.getIndex()];
+                results[i] = BulkItemResult.failed(i, results[i].getId(), error.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.faison.repositories;
+
+import com.faison.paging.Cursor;
+import com.faison.paging.CursorPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Reads records page by page in {@code _id} order, starting after the last id of the previous page.
+ * Every page is a range scan on the {@code _id} index, so deep pages cost as much as the first one.
+ */
+@Component
+public class CursorTemplate {
+
+    @Autowired
+    private MongoTemplate template;
+
+    /**
+     * Read the page of records matching the filter that follows the given id.
+     *
+     * @param type       The type of the records.
+     * @param filter     The filter to apply.
+     * @param afterId    The id of the last record of the previous page, or null for the first page.
+     * @param size       The maximum number of records to return.
+     * @param idOf       Returns the id of a record.
+     * @param projection The properties to read.
+     * @return the page, with the token of the next page if there is one.
+     */
+    public <T> CursorPage<T> scroll(Class<T> type, Criteria filter, String afterId, int size, Function<T, String> idOf,
+                                    Projection projection) {
+        Criteria criteria = afterId == null ? filter : new Criteria().andOperator(filter, Criteria.where("id").gt(afterId));
+        Query query = projection.applyTo(new Query(criteria).with(new Sort(Sort.Direction.ASC, "id")).limit(size + 1));
+        List<T> content = template.find(query, type);
+
+        // One record past the page tells whether there is a next page, without counting.
+        String next = null;
+        if (content.size() > size) {
+            content = content.subList(0, size);
+            next = Cursor.encode(idOf.apply(content.get(size - 1)));
+        }
+        return new CursorPage<>(content, next);
+    }
+
+    /**
+     * Read the page of records matching the filter that follows the given position, in the order of a field
+     * with the id breaking ties. With an index on the filtered fields followed by the sort field and the id,
+     * every page is a single index range scan, however deep it is.
+     *
+     * @param type       The type of the records.
+     * @param filter     The filter to apply.
+     * @param field      The field to sort by.
+     * @param direction  The direction of the sort, also applied to the id.
+     * @param afterValue The sort field value of the last record of the previous page, or null for the first page.
+     * @param afterId    The id of the last record of the previous page, or null for the first page.
+     * @param size       The maximum number of records to return.
+     * @param keysOf     Returns the sort field value and the id of a record, as encoded in the cursor.
+     * @param projection The properties to read.
+     * @return the page, with the token of the next page if there is one.
+     */
+    public <T> CursorPage<T> seek(Class<T> type, Criteria filter, String field, Sort.Direction direction, Object afterValue,
+                                  String afterId, int size, Function<T, String[]> keysOf, Projection projection) {
+        Criteria criteria = filter;
+        if (afterId != null) {
+            boolean ascending = direction == Sort.Direction.ASC;
+            Criteria beyond = ascending ? Criteria.where(field).gt(afterValue) : Criteria.where(field).lt(afterValue);
+            Criteria tied = new Criteria().andOperator(Criteria.where(field).is(afterValue),
+                    ascending ? Criteria.where("id").gt(afterId) : Criteria.where("id").lt(afterId));
+            criteria = new Criteria().andOperator(filter, new Criteria().orOperator(beyond, tied));
+        }
+        Query query = projection.applyTo(new Query(criteria).with(new Sort(direction, field, "id")).limit(size + 1));
+        if (!projection.isAll()) {
+            query.fields().include(field);
+        }
+        List<T> content = template.find(query, type);
+
+        String next = null;
+        if (content.size() > size) {
+            content = content.subList(0, size);
+            next = Cursor.encode(keysOf.apply(content.get(size - 1)));
+        }
+        return new CursorPage<>(content, next);
+    }
+
+    /**
+     * Open a cursor over all records matching the filter, in id order. Records are fetched from the server in
+     * batches as the cursor is iterated, so they need not fit in memory; the cursor must be closed.
+     *
+     * @param type   The type of the records.
+     * @param filter The filter to apply.
+     * @return the open cursor.
+     */
+    public <T> CloseableIterator<T> stream(Class<T> type, Criteria filter) {
+        return template.stream(new Query(filter).with(new Sort(Sort.Direction.ASC, "id")), type);
+    }
+
+    /**
+     * Open a cursor over the records with the given ids, in the order given. Records are read with one
+     * {@code $in} query per batch of ids as the cursor is iterated, so no query carries every id; ids without a
+     * record are skipped.
+     *
+     * @param type  The type of the records.
+     * @param ids   The ids to read, in the order to return them.
+     * @param idOf  Returns the id of a record.
+     * @param batch The number of ids read per query.
+     * @return the open cursor.
+     */
+    public <T> CloseableIterator<T> stream(Class<T> type, List<String> ids, Function<T, String> idOf, int batch) {
+        return new CloseableIterator<T>() {
+
+            private int read;
+            private Iterator<T> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && read < ids.size()) {
+                    List<String> next = ids.subList(read, Math.min(read + batch, ids.size()));
+                    read += next.size();
+                    current = inOrder(find(type, next, Projection.ALL), next, idOf).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+
+            @Override
+            public void close() {
+                read = ids.size();
+                current = Collections.emptyIterator();
+            }
+        };
+    }
+
+    /**
+     * Read the records with the given ids in a single {@code $in} query.
+     *
+     * @param type       The type of the records.
+     * @param ids        The ids to read.
+     * @param projection The properties to read.
+     * @return the records found, in no particular order.
+     */
+    public <T> List<T> find(Class<T> type, Collection<String> ids, Projection projection) {
+        return template.find(projection.applyTo(new Query(Criteria.where("id").in(ids))), type);
+    }
+
+    /**
+     * Read the records with the given ids in a single {@code $in} query, in the order of the ids.
+     *
+     * @param type       The type of the records.
+     * @param ids        The ids to read, in the order to return them.
+     * @param idOf       Returns the id of a record.
+     * @param projection The properties to read.
+     * @return the records found; ids without a record are skipped.
+     */
+    public <T> List<T> findInOrder(Class<T> type, List<String> ids, Function<T, String> idOf, Projection projection) {
+        return inOrder(find(type, ids, projection), ids, idOf);
+    }
+
+    private static <T> List<T> inOrder(List<T> records, List<String> ids, Function<T, String> idOf) {
+        Map<String, T> found = new HashMap<>();
+        for (T record : records) {
+            found.put(idOf.apply(record), record);
+        }
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            T record = found.get(id);
+            if (record != null) {
+                ordered.add(record);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Read one page of the records matching the filter, in the order of the pageable, and count them all. Both
+     * queries use the same filter, so the total is that of the page.
+     *
+     * @param type       The type of the records.
+     * @param filter     The filter to apply.
+     * @param pageable   The page number, size and sort.
+     * @param projection The properties to read.
+     * @return the page.
+     */
+    public <T> Page<T> page(Class<T> type, Criteria filter, Pageable pageable, Projection projection) {
+        List<T> content = template.find(projection.applyTo(new Query(filter).with(pageable)), type);
+        long total = template.count(new Query(filter), type);
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Read one record by id, limited to the given properties.
+     *
+     * @param type       The type of the record.
+     * @param id         The id to read.
+     * @param projection The properties to read.
+     * @return the record, or null if there is none.
+     */
+    public <T> T findOne(Class<T> type, String id, Projection projection) {
+        return template.findOne(projection.applyTo(new Query(Criteria.where("id").is(id))), type);
+    }
+}
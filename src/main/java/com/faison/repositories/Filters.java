@@ -0,0 +1,35 @@
+package com.faison.repositories;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers to build Mongo criteria from optional request filters.
+ */
+public final class Filters {
+
+    private Filters() {
+    }
+
+    /**
+     * @return criteria matching documents whose field contains the given value, like the derived *Like queries.
+     */
+    public static Criteria like(String field, String value) {
+        return Criteria.where(field).regex(Pattern.quote(value));
+    }
+
+    /**
+     * @return criteria matching documents that satisfy every clause, or every document if there is none.
+     */
+    public static Criteria allOf(List<Criteria> clauses) {
+        if (clauses.isEmpty()) {
+            return new Criteria();
+        }
+        if (clauses.size() == 1) {
+            return clauses.get(0);
+        }
+        return new Criteria().andOperator(clauses.toArray(new Criteria[clauses.size()]));
+    }
+}
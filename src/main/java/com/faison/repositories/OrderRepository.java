@@ -16,5 +16,5 @@ public interface OrderRepository extends PagingAndSortingRepository<Order, Strin
 
     Page<Order> findByPlacedOnBetween(Date from, Date to, Pageable pageable);
 
-    Page<Order> findByBuyer_Id(String userId, Pageable pageable);
+    Page<Order> findByBuyerId(String buyerId, Pageable pageable);
 }
@@ -0,0 +1,135 @@
+package com.faison.repositories;
+
+import com.faison.models.Order;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rewrites orders stored with the whole buyer and the whole product of every item into the snapshot format:
+ * the buyer id and name, and one line per item with the product and category ids, name and unit price. Orders already in the
+ * snapshot format are not read, so the migration can be stopped and run again at any time.
+ */
+@Component
+public class OrderSnapshotMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(OrderSnapshotMigration.class);
+
+    @Autowired
+    private MongoTemplate template;
+
+    /**
+     * Migrate every order still in the old format.
+     *
+     * @return the outcome of the run, with the number of orders migrated.
+     */
+    public synchronized Result run() {
+        DBCollection collection = template.getCollection(template.getCollectionName(Order.class));
+        DBObject legacy = new BasicDBObject("$or", Arrays.asList(
+                new BasicDBObject("buyer", new BasicDBObject("$exists", true)),
+                new BasicDBObject("orderItemList", new BasicDBObject("$exists", true))));
+        DBObject fields = new BasicDBObject("buyer", 1).append("orderItemList", 1).append("buyerId", 1).append("lines", 1);
+
+        long migrated = 0;
+        BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+        int pending = 0;
+        try (DBCursor cursor = collection.find(legacy, fields).batchSize(BATCH_SIZE)) {
+            while (cursor.hasNext()) {
+                DBObject order = cursor.next();
+                bulk.find(new BasicDBObject("_id", order.get("_id"))).updateOne(snapshot(order));
+                if (++pending == BATCH_SIZE) {
+                    migrated += bulk.execute().getMatchedCount();
+                    bulk = collection.initializeUnorderedBulkOperation();
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            migrated += bulk.execute().getMatchedCount();
+        }
+        log.info("Migrated {} orders to the snapshot format", migrated);
+        return new Result(migrated);
+    }
+
+    /**
+     * Build the update moving an order to the snapshot format. Values already in the new format win over the
+     * old ones.
+     */
+    static DBObject snapshot(DBObject order) {
+        BasicDBObject set = new BasicDBObject();
+        DBObject buyer = (DBObject) order.get("buyer");
+        if (buyer != null && order.get("buyerId") == null) {
+            set.append("buyerId", idOf(buyer)).append("buyerName", displayName(buyer));
+        }
+        List<?> items = (List<?>) order.get("orderItemList");
+        if (items != null && order.get("lines") == null) {
+            BasicDBList lines = new BasicDBList();
+            for (Object item : items) {
+                if (item instanceof DBObject) {
+                    lines.add(line((DBObject) item));
+                }
+            }
+            set.append("lines", lines);
+        }
+        BasicDBObject update = new BasicDBObject("$unset", new BasicDBObject("buyer", "").append("orderItemList", ""));
+        if (!set.isEmpty()) {
+            update.append("$set", set);
+        }
+        return update;
+    }
+
+    private static DBObject line(DBObject item) {
+        DBObject product = (DBObject) item.get("product");
+        BasicDBObject line = new BasicDBObject();
+        if (product != null) {
+            line.append("productId", idOf(product))
+                    .append("categoryId", product.get("categoryId"))
+                    .append("name", product.get("name"))
+                    .append("unitPrice", product.get("unitPrice"));
+        }
+        Object quantity = item.get("quantity");
+        return line.append("quantity", quantity instanceof Number ? ((Number) quantity).intValue() : 0)
+                .append("cost", item.get("cost"));
+    }
+
+    private static String idOf(DBObject record) {
+        Object id = record.get("_id");
+        return id == null ? null : id.toString();
+    }
+
+    private static String displayName(DBObject user) {
+        Object first = user.get("firstName");
+        Object last = user.get("lastName");
+        String name = ((first == null ? "" : first.toString().trim()) + " " + (last == null ? "" : last.toString().trim())).trim();
+        return name.isEmpty() ? null : name;
+    }
+
+    /**
+     * The outcome of a migration run.
+     */
+    public static class Result {
+
+        private final long migrated;
+
+        Result(long migrated) {
+            this.migrated = migrated;
+        }
+
+        public long getMigrated() {
+            return migrated;
+        }
+    }
+}
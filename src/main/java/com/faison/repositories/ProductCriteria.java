@@ -0,0 +1,261 @@
+package com.faison.repositories;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The set of filters a {@link com.faison.models.Product} search may combine into a single query.
+ * Filters left null are ignored.
+ */
+public class ProductCriteria {
+
+    private String name;
+    private String description;
+    private String text;
+    private String categoryId;
+    private boolean includeSubcategories;
+    private List<String> categoryIds;
+    private Double unitPriceEquals;
+    private Double unitPriceGreaterThan;
+    private Double unitPriceLessThan;
+    private boolean matchAny;
+    private int[] nameMatches;
+    private int[] descriptionMatches;
+    private int[] textMatches;
+
+    public String getName() {
+        return name;
+    }
+
+    public ProductCriteria setName(String name) {
+        this.name = emptyToNull(name);
+        return this;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public ProductCriteria setDescription(String description) {
+        this.description = emptyToNull(description);
+        return this;
+    }
+
+    /**
+     * @return text that has to appear in either the name or the description.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public ProductCriteria setText(String text) {
+        this.text = emptyToNull(text);
+        return this;
+    }
+
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    public ProductCriteria setCategoryId(String categoryId) {
+        this.categoryId = emptyToNull(categoryId);
+        return this;
+    }
+
+    /**
+     * @return true if products of the descendants of the category are wanted too.
+     */
+    public boolean isIncludeSubcategories() {
+        return includeSubcategories;
+    }
+
+    public ProductCriteria setIncludeSubcategories(boolean includeSubcategories) {
+        this.includeSubcategories = includeSubcategories;
+        return this;
+    }
+
+    /**
+     * @return the ids of the categories a product may belong to, which replace categoryId when set.
+     */
+    public List<String> getCategoryIds() {
+        return categoryIds;
+    }
+
+    public ProductCriteria setCategoryIds(String... categoryIds) {
+        this.categoryIds = Arrays.asList(categoryIds);
+        return this;
+    }
+
+    public Double getUnitPriceEquals() {
+        return unitPriceEquals;
+    }
+
+    public ProductCriteria setUnitPriceEquals(Double unitPriceEquals) {
+        this.unitPriceEquals = unitPriceEquals;
+        return this;
+    }
+
+    public Double getUnitPriceGreaterThan() {
+        return unitPriceGreaterThan;
+    }
+
+    public ProductCriteria setUnitPriceGreaterThan(Double unitPriceGreaterThan) {
+        this.unitPriceGreaterThan = unitPriceGreaterThan;
+        return this;
+    }
+
+    public Double getUnitPriceLessThan() {
+        return unitPriceLessThan;
+    }
+
+    public ProductCriteria setUnitPriceLessThan(Double unitPriceLessThan) {
+        this.unitPriceLessThan = unitPriceLessThan;
+        return this;
+    }
+
+    /**
+     * @return true if a product matching any one filter is a match, false if it has to match all of them.
+     */
+    public boolean isMatchAny() {
+        return matchAny;
+    }
+
+    public ProductCriteria setMatchAny(boolean matchAny) {
+        this.matchAny = matchAny;
+        return this;
+    }
+
+    /**
+     * Set the ordinals of the products matching each free text filter, as found by the
+     * {@link com.faison.index.ProductTextIndex}. Searches with a text filter are answered from these ordinals by
+     * the {@link com.faison.index.ProductFacetIndex}, so every search matches text the same way: on whole words,
+     * ignoring case.
+     *
+     * @param nameMatches        The products matching the name filter, or null if it is not set.
+     * @param descriptionMatches The products matching the description filter, or null if it is not set.
+     * @param textMatches        The products matching the text filter, or null if it is not set.
+     * @return this criteria.
+     */
+    public ProductCriteria setTextMatches(int[] nameMatches, int[] descriptionMatches, int[] textMatches) {
+        this.nameMatches = nameMatches;
+        this.descriptionMatches = descriptionMatches;
+        this.textMatches = textMatches;
+        return this;
+    }
+
+    /**
+     * @return the ordinals of the products matching the name filter, or null if it was not matched.
+     */
+    public int[] getNameMatches() {
+        return nameMatches;
+    }
+
+    /**
+     * @return the ordinals of the products matching the description filter, or null if it was not matched.
+     */
+    public int[] getDescriptionMatches() {
+        return descriptionMatches;
+    }
+
+    /**
+     * @return the ordinals of the products matching the text filter, or null if it was not matched.
+     */
+    public int[] getTextMatches() {
+        return textMatches;
+    }
+
+    /**
+     * @return true if no filter has been set.
+     */
+    public boolean isEmpty() {
+        return name == null && description == null && text == null && !hasStructuredFilters();
+    }
+
+    /**
+     * @return true if any of the free text filters (name, description and text) is set.
+     */
+    public boolean hasText() {
+        return name != null || description != null || text != null;
+    }
+
+    /**
+     * @return true if only the free text filters (name, description and text) are set, and they all have to match.
+     */
+    public boolean isTextOnly() {
+        int textFilters = (name == null ? 0 : 1) + (description == null ? 0 : 1) + (text == null ? 0 : 1);
+        return textFilters > 0 && !hasStructuredFilters() && (!matchAny || textFilters == 1);
+    }
+
+    /**
+     * @return true if only the unitPrice filters are set, and they all have to match.
+     */
+    public boolean isPriceOnly() {
+        int priceFilters = (unitPriceEquals == null ? 0 : 1)
+                + (unitPriceGreaterThan == null && unitPriceLessThan == null ? 0 : 1);
+        return priceFilters > 0 && name == null && description == null && text == null && categoryId == null && categoryIds == null
+                && (!matchAny || priceFilters == 1);
+    }
+
+    private boolean hasStructuredFilters() {
+        return categoryId != null || categoryIds != null || unitPriceEquals != null || unitPriceGreaterThan != null || unitPriceLessThan != null;
+    }
+
+    /**
+     * Build the Mongo criteria for the category and price filters. Free text filters have no Mongo form: the
+     * products they match are only known to the text index, so criteria with text are searched in memory.
+     *
+     * @return the combined criteria, matching every document when no filter is set.
+     * @throws IllegalStateException if a free text filter is set.
+     */
+    public Criteria toCriteria() {
+        if (hasText()) {
+            throw new IllegalStateException("Free text filters are matched in memory, not by the database.");
+        }
+        List<Criteria> clauses = new ArrayList<>();
+        if (categoryIds != null) {
+            clauses.add(Criteria.where("categoryId").in(categoryIds));
+        } else if (categoryId != null) {
+            clauses.add(Criteria.where("categoryId").is(categoryId));
+        }
+        if (unitPriceEquals != null) {
+            clauses.add(Criteria.where("unitPrice").is(unitPriceEquals));
+        }
+        if (unitPriceGreaterThan != null && unitPriceLessThan != null) {
+            clauses.add(Criteria.where("unitPrice").gt(unitPriceGreaterThan).lt(unitPriceLessThan));
+        } else if (unitPriceGreaterThan != null) {
+            clauses.add(Criteria.where("unitPrice").gt(unitPriceGreaterThan));
+        } else if (unitPriceLessThan != null) {
+            clauses.add(Criteria.where("unitPrice").lt(unitPriceLessThan));
+        }
+
+        if (clauses.isEmpty()) {
+            return new Criteria();
+        }
+        if (clauses.size() == 1) {
+            return clauses.get(0);
+        }
+        Criteria[] array = clauses.toArray(new Criteria[clauses.size()]);
+        return matchAny ? new Criteria().orOperator(array) : new Criteria().andOperator(array);
+    }
+
+    /**
+     * Check that a free text filter that is set was matched.
+     *
+     * @param matches The ordinals matching the filter.
+     * @return the ordinals.
+     * @throws IllegalStateException if the filter was not matched.
+     */
+    public static int[] matched(int[] matches) {
+        if (matches == null) {
+            throw new IllegalStateException("The free text filters have not been matched against the text index.");
+        }
+        return matches;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -6,12 +6,16 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
-public interface ProductRepository extends PagingAndSortingRepository<Product, String> {
+public interface ProductRepository extends PagingAndSortingRepository<Product, String>, ProductRepositoryCustom {
     Page<Product> findByNameLike(String name, Pageable pageable);
 
     Page<Product> findByCategoryId(String categoryId, Pageable pageable);
 
+    Page<Product> findByCategoryIdIn(Collection<String> categoryIds, Pageable pageable);
+
     Page<Product> findByDescriptionLike(String description, Pageable pageable);
 
     Page<Product> findByUnitPrice(Double unitPrice, Pageable pageable);
@@ -0,0 +1,21 @@
+package com.faison.repositories;
+
+import com.faison.models.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Queries on {@link Product} that cannot be derived from method names.
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * Run a single query combining every filter of the given criteria.
+     *
+     * @param criteria   The category and price filters to apply, without any free text filter.
+     * @param pageable   The page number and size to be returned.
+     * @param projection The properties to read.
+     * @return the given page of matching records, with the total count of matches.
+     */
+    Page<Product> search(ProductCriteria criteria, Pageable pageable, Projection projection);
+}
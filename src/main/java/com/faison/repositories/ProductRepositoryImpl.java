@@ -0,0 +1,34 @@
+package com.faison.repositories;
+
+import com.faison.models.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Override
+    public Page<Product> search(ProductCriteria criteria, Pageable pageable, Projection projection) {
+        Query query = projection.applyTo(new Query(criteria.toCriteria()).with(pageable));
+        List<Product> content = template.find(query, Product.class);
+
+        // A short first page already tells us the total, so the count can be skipped.
+        long total;
+        if (pageable.getOffset() == 0 && content.size() < pageable.getPageSize()) {
+            total = content.size();
+        } else if (!content.isEmpty() && content.size() < pageable.getPageSize()) {
+            total = pageable.getOffset() + content.size();
+        } else {
+            total = template.count(new Query(criteria.toCriteria()), Product.class);
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+}
@@ -0,0 +1,76 @@
+package com.faison.repositories;
+
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The properties of a record a client asked for, as dot separated paths such as {@code buyer.email}.
+ * Queries read only these properties, plus the id, from the database.
+ */
+public final class Projection {
+
+    public static final Projection ALL = new Projection(Collections.emptySet());
+
+    private final Set<String> paths;
+
+    private Projection(Set<String> paths) {
+        this.paths = Collections.unmodifiableSet(paths);
+    }
+
+    /**
+     * Parse a comma separated list of paths. A path already covered by one of its ancestors is dropped, as
+     * MongoDB rejects projections naming both.
+     *
+     * @param fields The paths, or an empty string for every property.
+     * @return the projection.
+     */
+    public static Projection of(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+        // Sorted, an ancestor comes right before the paths below it.
+        Set<String> sorted = new TreeSet<>();
+        for (String field : fields.split(",")) {
+            if (!field.trim().isEmpty()) {
+                sorted.add(field.trim());
+            }
+        }
+        Set<String> paths = new TreeSet<>();
+        String ancestor = null;
+        for (String path : sorted) {
+            if (ancestor != null && path.startsWith(ancestor + ".")) {
+                continue;
+            }
+            paths.add(path);
+            ancestor = path;
+        }
+        return paths.isEmpty() ? ALL : new Projection(paths);
+    }
+
+    /**
+     * @return true if every property is wanted.
+     */
+    public boolean isAll() {
+        return paths.isEmpty();
+    }
+
+    public Set<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Restrict the query to the wanted properties.
+     *
+     * @param query The query to restrict.
+     * @return the same query.
+     */
+    public Query applyTo(Query query) {
+        for (String path : paths) {
+            query.fields().include(path);
+        }
+        return query;
+    }
+}
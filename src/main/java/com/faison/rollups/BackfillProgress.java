@@ -0,0 +1,87 @@
+package com.faison.rollups;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of one rollup backfill. Days are rebuilt by several threads at once, so counters are atomic.
+ */
+public class BackfillProgress {
+
+    public enum State {
+        RUNNING, DONE, FAILED
+    }
+
+    private final Date from;
+    private final Date to;
+    private final int days;
+    private final Date startedOn = new Date();
+    private final AtomicInteger daysDone = new AtomicInteger();
+    private final AtomicLong orders = new AtomicLong();
+    private volatile State state = State.RUNNING;
+    private volatile Date finishedOn;
+    private volatile String failure;
+
+    BackfillProgress(Date from, Date to, int days) {
+        this.from = from;
+        this.to = to;
+        this.days = days;
+    }
+
+    void dayDone(long ordersRead) {
+        orders.addAndGet(ordersRead);
+        daysDone.incrementAndGet();
+    }
+
+    void finish() {
+        finishedOn = new Date();
+        state = State.DONE;
+    }
+
+    void fail(String message) {
+        failure = message;
+        finishedOn = new Date();
+        state = State.FAILED;
+    }
+
+    public boolean isFinished() {
+        return state != State.RUNNING;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public int getDaysDone() {
+        return daysDone.get();
+    }
+
+    public long getOrders() {
+        return orders.get();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Date getStartedOn() {
+        return startedOn;
+    }
+
+    public Date getFinishedOn() {
+        return finishedOn;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,22 @@
+package com.faison.rollups;
+
+/**
+ * What sales are rolled up by.
+ */
+public enum Dimension {
+
+    PRODUCT, CATEGORY, BUYER;
+
+    /**
+     * @param name The name of a dimension, in any case.
+     * @return the dimension, or null if there is none by that name.
+     */
+    public static Dimension of(String name) {
+        for (Dimension dimension : values()) {
+            if (dimension.name().equalsIgnoreCase(name)) {
+                return dimension;
+            }
+        }
+        return null;
+    }
+}
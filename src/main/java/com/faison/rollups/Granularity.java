@@ -0,0 +1,45 @@
+package com.faison.rollups;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The length of the time buckets sales are rolled up into. Buckets start on whole hours and days in UTC.
+ */
+public enum Granularity {
+
+    HOUR(TimeUnit.HOURS.toMillis(1)),
+    DAY(TimeUnit.DAYS.toMillis(1));
+
+    private final long millis;
+
+    Granularity(long millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * @param name The name of a granularity, in any case.
+     * @return the granularity, or null if there is none by that name.
+     */
+    public static Granularity of(String name) {
+        for (Granularity granularity : values()) {
+            if (granularity.name().equalsIgnoreCase(name)) {
+                return granularity;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param time A point in time.
+     * @return the start of the bucket holding it.
+     */
+    public Date bucketOf(Date time) {
+        long t = time.getTime();
+        return new Date(t - Math.floorMod(t, millis));
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+}
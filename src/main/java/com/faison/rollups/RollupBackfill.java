@@ -0,0 +1,140 @@
+package com.faison.rollups;
+
+import com.faison.models.Order;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rebuilds the {@link SalesRollups} from the order history. The range is cut into days, which are rebuilt in
+ * parallel: each day reads the orders placed on it through the placing date index, sums them in memory and
+ * replaces the rollups of that day. The new totals are written before the old rollups are removed, so a day
+ * never reads as empty, but a day whose rebuild fails midway may mix old and new rollups until it is rebuilt
+ * again; rebuilding a day twice gives the same result.
+ * <p>
+ * Orders written to a day while it is being rebuilt may be counted twice or not at all, so recent days are
+ * best rebuilt while orders are quiet. Backfills run one at a time.
+ */
+@Component
+public class RollupBackfill {
+
+    private final Logger log = LoggerFactory.getLogger(RollupBackfill.class);
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Autowired
+    private SalesRollups rollups;
+
+    @Value("${shop.rollups.backfill-threads:4}")
+    private int threads;
+
+    private ExecutorService executor;
+    private final AtomicReference<BackfillProgress> current = new AtomicReference<>();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "rollup-backfill-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start rebuilding the rollups of a range of days in the background.
+     *
+     * @param from The first day to rebuild, or null for the day of the first order.
+     * @param to   The day after the last one to rebuild, or null for the day after the last order.
+     * @return the progress of the backfill, or null if another one is running.
+     */
+    public BackfillProgress submit(Date from, Date to) {
+        BackfillProgress running = current.get();
+        if (running != null && !running.isFinished()) {
+            return null;
+        }
+        long day = Granularity.DAY.getMillis();
+        Date start = from != null ? Granularity.DAY.bucketOf(from) : dayOfOrder(Sort.Direction.ASC);
+        Date last = to != null ? Granularity.DAY.bucketOf(new Date(to.getTime() - 1)) : dayOfOrder(Sort.Direction.DESC);
+        if (start == null) {
+            start = new Date(0);
+        }
+        int days = last == null || last.before(start) ? 0 : (int) ((last.getTime() - start.getTime()) / day) + 1;
+        Date end = new Date(start.getTime() + days * day);
+        BackfillProgress progress = new BackfillProgress(start, end, days);
+        if (!current.compareAndSet(running, progress)) {
+            return null;
+        }
+
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[days];
+        for (int i = 0; i < days; i++) {
+            Date dayStart = new Date(start.getTime() + i * day);
+            Date dayEnd = new Date(dayStart.getTime() + day);
+            tasks[i] = CompletableFuture.runAsync(() -> rebuild(dayStart, dayEnd, progress), executor);
+        }
+        CompletableFuture.allOf(tasks).whenComplete((done, e) -> {
+            if (e == null) {
+                log.info("Rebuilt the sales rollups of {} days from {} orders", progress.getDays(), progress.getOrders());
+                progress.finish();
+            } else {
+                log.warn("Sales rollup backfill from {} to {} failed", progress.getFrom(), progress.getTo(), e);
+                progress.fail(e.getMessage());
+            }
+        });
+        return progress;
+    }
+
+    /**
+     * @return the progress of the last backfill, or null if none was started.
+     */
+    public BackfillProgress progress() {
+        return current.get();
+    }
+
+    private void rebuild(Date from, Date to, BackfillProgress progress) {
+        Query query = new Query(Criteria.where("placedOn").gte(from).lt(to));
+        query.fields().include("placedOn").include("buyerId").include("lines");
+        RollupDeltas totals = new RollupDeltas();
+        long orders = 0;
+        try (CloseableIterator<Order> cursor = template.stream(query, Order.class)) {
+            while (cursor.hasNext()) {
+                totals.add(cursor.next(), 1);
+                orders++;
+            }
+        }
+        rollups.replace(from, to, totals);
+        progress.dayDone(orders);
+    }
+
+    /**
+     * @return the day of the first or last order, or null if there are none.
+     */
+    private Date dayOfOrder(Sort.Direction direction) {
+        Query query = new Query(Criteria.where("placedOn").ne(null)).with(new Sort(direction, "placedOn")).limit(1);
+        query.fields().include("placedOn");
+        Order order = template.findOne(query, Order.class);
+        return order == null ? null : Granularity.DAY.bucketOf(order.getPlacedOn());
+    }
+}
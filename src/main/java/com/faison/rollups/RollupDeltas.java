@@ -0,0 +1,105 @@
+package com.faison.rollups;
+
+import com.faison.models.Order;
+import com.faison.models.OrderLine;
+import com.faison.pricing.Money;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes to the rollups made by a batch of orders, summed by rollup before anything is written, so an order
+ * with ten lines of the same product or a thousand orders of the same day cost one write per rollup.
+ */
+final class RollupDeltas {
+
+    private final Map<String, Counters> byId = new HashMap<>();
+
+    /**
+     * Add the sales of an order, or take them away.
+     *
+     * @param order The order, read with its placing date, buyer id and lines; ignored if null.
+     * @param sign  1 to add the order, -1 to take it away.
+     */
+    void add(Order order, int sign) {
+        if (order == null || order.getPlacedOn() == null || order.getLines() == null) {
+            return;
+        }
+        Date placedOn = order.getPlacedOn();
+        Set<String> products = new HashSet<>();
+        Set<String> categories = new HashSet<>();
+        long units = 0;
+        long revenue = 0;
+        for (OrderLine line : order.getLines()) {
+            if (line == null) {
+                continue;
+            }
+            long cents = Money.toCents(line.getCost());
+            units += line.getQuantity();
+            revenue += cents;
+            if (line.getProductId() != null) {
+                add(Dimension.PRODUCT, line.getProductId(), placedOn, sign, line.getQuantity(), cents,
+                        products.add(line.getProductId()));
+            }
+            if (line.getCategoryId() != null) {
+                add(Dimension.CATEGORY, line.getCategoryId(), placedOn, sign, line.getQuantity(), cents,
+                        categories.add(line.getCategoryId()));
+            }
+        }
+        if (order.getBuyerId() != null) {
+            add(Dimension.BUYER, order.getBuyerId(), placedOn, sign, units, revenue, true);
+        }
+    }
+
+    /**
+     * @return the summed changes, including those that cancelled out.
+     */
+    Collection<Counters> counters() {
+        return byId.values();
+    }
+
+    private void add(Dimension dimension, String key, Date placedOn, int sign, long units, long revenueCents,
+                     boolean countOrder) {
+        for (Granularity granularity : Granularity.values()) {
+            Date bucket = granularity.bucketOf(placedOn);
+            String id = dimension.name() + ':' + granularity.name() + ':' + bucket.getTime() + ':' + key;
+            Counters counters = byId.computeIfAbsent(id, k -> new Counters(k, dimension, key, granularity, bucket));
+            counters.units += sign * units;
+            counters.revenueCents += sign * revenueCents;
+            if (countOrder) {
+                counters.orders += sign;
+            }
+        }
+    }
+
+    /**
+     * The change to one rollup. The id holds the key last, so any key is safe in it.
+     */
+    static final class Counters {
+
+        final String id;
+        final Dimension dimension;
+        final String key;
+        final Granularity granularity;
+        final Date bucket;
+        long units;
+        long revenueCents;
+        long orders;
+
+        Counters(String id, Dimension dimension, String key, Granularity granularity, Date bucket) {
+            this.id = id;
+            this.dimension = dimension;
+            this.key = key;
+            this.granularity = granularity;
+            this.bucket = bucket;
+        }
+
+        boolean isZero() {
+            return units == 0 && revenueCents == 0 && orders == 0;
+        }
+    }
+}
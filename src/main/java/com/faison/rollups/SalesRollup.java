@@ -0,0 +1,48 @@
+package com.faison.rollups;
+
+import com.faison.pricing.Money;
+
+import java.util.Date;
+
+/**
+ * The sales of one product, category or buyer in one time bucket: the units sold, the revenue of the lines
+ * and the number of orders.
+ */
+public class SalesRollup {
+
+    private Dimension dimension;
+    private String key;
+    private Granularity granularity;
+    private Date bucket;
+    private long units;
+    private long revenueCents;
+    private long orders;
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public Date getBucket() {
+        return bucket;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public double getRevenue() {
+        return Money.toAmount(revenueCents);
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+}
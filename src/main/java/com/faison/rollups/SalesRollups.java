@@ -0,0 +1,196 @@
+package com.faison.rollups;
+
+import com.faison.models.Order;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps the sales of every product, category and buyer pre-aggregated by hour and by day, so sales reports read
+ * a few hundred small documents instead of scanning orders.
+ * <p>
+ * Every order write is turned into {@code $inc} upserts on the rollups it touches: an update takes away what the
+ * order was and adds what it is, and a delete takes it away. Rollups are written after the orders and a failed
+ * rollup write does not fail the order, so they can drift if the database fails in between; a
+ * {@link RollupBackfill} rebuilds them from the orders.
+ */
+@Component
+public class SalesRollups {
+
+    static final String COLLECTION = "salesRollups";
+
+    /**
+     * The largest number of buckets returned by one series.
+     */
+    static final int MAX_BUCKETS = 5000;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(SalesRollups.class);
+
+    @Autowired
+    private MongoTemplate template;
+
+    /**
+     * Index the rollups of each key by bucket for series, and those of each dimension by bucket for totals.
+     */
+    @PostConstruct
+    public void createIndexes() {
+        template.indexOps(COLLECTION).ensureIndex(new Index()
+                .on("dimension", Sort.Direction.ASC)
+                .on("granularity", Sort.Direction.ASC)
+                .on("key", Sort.Direction.ASC)
+                .on("bucket", Sort.Direction.ASC));
+        template.indexOps(COLLECTION).ensureIndex(new Index()
+                .on("dimension", Sort.Direction.ASC)
+                .on("granularity", Sort.Direction.ASC)
+                .on("bucket", Sort.Direction.ASC));
+    }
+
+    /**
+     * Move the rollups from what an order was to what it is.
+     *
+     * @param before The order before the write, or null if it was created.
+     * @param after  The order after the write, or null if it was deleted.
+     */
+    public void record(Order before, Order after) {
+        record(before == null ? Collections.emptyList() : Collections.singletonList(before),
+                after == null ? Collections.emptyList() : Collections.singletonList(after));
+    }
+
+    /**
+     * Move the rollups from what a batch of orders was to what it is, in one bulk write.
+     *
+     * @param before The orders before the write, with nothing for those created.
+     * @param after  The orders after the write, with nothing for those deleted.
+     */
+    public void record(Collection<Order> before, Collection<Order> after) {
+        RollupDeltas deltas = new RollupDeltas();
+        for (Order order : before) {
+            deltas.add(order, -1);
+        }
+        for (Order order : after) {
+            deltas.add(order, 1);
+        }
+        try {
+            write(deltas, null);
+        } catch (RuntimeException e) {
+            log.warn("Could not update the sales rollups of {} orders", after.size() + before.size(), e);
+        }
+    }
+
+    /**
+     * Read the buckets of one product, category or buyer in a range of time, oldest first. Buckets without sales
+     * are left out.
+     *
+     * @param dimension   What the key is.
+     * @param key         The id of the product, category or buyer.
+     * @param granularity The length of the buckets.
+     * @param from        The inclusive start of the range.
+     * @param to          The exclusive end of the range.
+     * @return the buckets, at most {@value #MAX_BUCKETS} of them.
+     */
+    public List<SalesRollup> series(Dimension dimension, String key, Granularity granularity, Date from, Date to) {
+        Query query = new Query(Criteria.where("dimension").is(dimension.name())
+                .and("granularity").is(granularity.name())
+                .and("key").is(key)
+                .and("bucket").gte(from).lt(to))
+                .with(new Sort(Sort.Direction.ASC, "bucket"))
+                .limit(MAX_BUCKETS);
+        return template.find(query, SalesRollup.class, COLLECTION);
+    }
+
+    /**
+     * Sum the buckets of every product, category or buyer in a range of time and return the best sellers.
+     *
+     * @param dimension   What to total by.
+     * @param granularity The buckets to sum; days are fewer to read, hours are finer.
+     * @param from        The inclusive start of the range.
+     * @param to          The exclusive end of the range.
+     * @param limit       The number of totals to return.
+     * @return the totals with the most revenue, highest first.
+     */
+    public List<SalesTotal> top(Dimension dimension, Granularity granularity, Date from, Date to, int limit) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("dimension").is(dimension.name())
+                        .and("granularity").is(granularity.name())
+                        .and("bucket").gte(from).lt(to)),
+                Aggregation.group("key")
+                        .sum("units").as("units")
+                        .sum("revenueCents").as("revenueCents")
+                        .sum("orders").as("orders"),
+                Aggregation.sort(Sort.Direction.DESC, "revenueCents"),
+                Aggregation.limit(limit));
+        return template.aggregate(aggregation, COLLECTION, SalesTotal.class).getMappedResults();
+    }
+
+    /**
+     * Replace the rollups of a range of time with totals computed from the orders placed in it. The totals are
+     * set first, each stamped with the id of this rebuild, then the rollups of the range not stamped with it are
+     * removed, so the range never reads as empty. The two steps are not atomic: a rebuild that fails between
+     * them leaves stale rollups next to the new ones, until the range is rebuilt again.
+     *
+     * @param from   The inclusive start of the range, on a day boundary.
+     * @param to     The exclusive end of the range, on a day boundary.
+     * @param totals The sales of every order placed in the range.
+     */
+    void replace(Date from, Date to, RollupDeltas totals) {
+        String rebuild = new ObjectId().toString();
+        write(totals, rebuild);
+        template.remove(new Query(Criteria.where("bucket").gte(from).lt(to).and("rebuild").ne(rebuild)), COLLECTION);
+    }
+
+    /**
+     * Write deltas with {@code $inc}, or set totals stamped with the given rebuild id.
+     */
+    private void write(RollupDeltas deltas, String rebuild) {
+        DBCollection collection = template.getCollection(COLLECTION);
+        BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+        int pending = 0;
+        for (RollupDeltas.Counters counters : deltas.counters()) {
+            if (counters.isZero()) {
+                continue;
+            }
+            BasicDBObject identity = new BasicDBObject("dimension", counters.dimension.name())
+                    .append("key", counters.key)
+                    .append("granularity", counters.granularity.name())
+                    .append("bucket", counters.bucket);
+            DBObject update = rebuild != null
+                    ? new BasicDBObject("$set", values(counters, identity).append("rebuild", rebuild))
+                    : new BasicDBObject("$inc", values(counters, new BasicDBObject())).append("$setOnInsert", identity);
+            bulk.find(new BasicDBObject("_id", counters.id)).upsert().updateOne(update);
+            if (++pending == BATCH_SIZE) {
+                bulk.execute();
+                bulk = collection.initializeUnorderedBulkOperation();
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            bulk.execute();
+        }
+    }
+
+    private static BasicDBObject values(RollupDeltas.Counters counters, BasicDBObject into) {
+        return into.append("units", counters.units)
+                .append("revenueCents", counters.revenueCents)
+                .append("orders", counters.orders);
+    }
+}
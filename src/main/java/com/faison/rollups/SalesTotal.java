@@ -0,0 +1,32 @@
+package com.faison.rollups;
+
+import com.faison.pricing.Money;
+import org.springframework.data.annotation.Id;
+
+/**
+ * The sales of one product, category or buyer summed over a range of buckets.
+ */
+public class SalesTotal {
+
+    @Id
+    private String key;
+    private long units;
+    private long revenueCents;
+    private long orders;
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public double getRevenue() {
+        return Money.toAmount(revenueCents);
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+}
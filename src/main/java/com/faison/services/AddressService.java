@@ -1,14 +1,23 @@
 package com.faison.services;
 
 import com.faison.models.Address;
+import com.faison.paging.CursorPage;
 import com.faison.repositories.AddressRepository;
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.BulkWriter;
+import com.faison.repositories.CursorTemplate;
+import com.faison.repositories.Filters;
+import com.faison.repositories.Projection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Component;
 
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import java.util.ArrayList;
+import java.util.List;
 
 @Stateless
 @Component
@@ -18,6 +27,12 @@ public class AddressService implements IService<Address> {
     @Autowired
     private AddressRepository repository;
 
+    @Autowired
+    private BulkWriter bulk;
+
+    @Autowired
+    private CursorTemplate cursors;
+
     public AddressService() {
     }
 
@@ -59,6 +74,17 @@ public class AddressService implements IService<Address> {
         return repository.findOne(id);
     }
 
+    /**
+     * Find the {@link Address} with the given ids, in a single query.
+     *
+     * @param ids        The ids to be searched for.
+     * @param projection The properties to read.
+     * @return the records found, in the order of the ids, and the ids for which no record exists.
+     */
+    public BatchResult<Address> findByIds(List<String> ids, Projection projection) {
+        return BatchResult.of(ids, cursors.find(Address.class, ids, projection), Address::getId);
+    }
+
     /**
      * Return all available {@link Address} in pages.
      *
@@ -85,6 +111,31 @@ public class AddressService implements IService<Address> {
         return repository.findByCountryLike(country, pageable);
     }
 
+    /**
+     * Return the {@link Address} matching the given filters that come after the given id, in id order.
+     *
+     * @param afterId    The id of the last record of the previous page, or null for the first page.
+     * @param size       The maximum number of records to return.
+     * @param projection The properties to read.
+     * @return the page of records, with the cursor of the next page.
+     */
+    public CursorPage<Address> scroll(String country, String state, String city, String street, String afterId, int size, Projection projection) {
+        List<Criteria> clauses = new ArrayList<>();
+        if (!country.isEmpty()) {
+            clauses.add(Filters.like("country", country));
+        }
+        if (!state.isEmpty()) {
+            clauses.add(Filters.like("state", state));
+        }
+        if (!city.isEmpty()) {
+            clauses.add(Filters.like("city", city));
+        }
+        if (!street.isEmpty()) {
+            clauses.add(Filters.like("street", street));
+        }
+        return cursors.scroll(Address.class, Filters.allOf(clauses), afterId, size, Address::getId, projection);
+    }
+
     /**
      * Update an existing {@link Address} with the specified id.
      *
@@ -109,4 +160,34 @@ public class AddressService implements IService<Address> {
     public void deleteById(String id) {
         repository.delete(id);
     }
+
+    /**
+     * Create and save new {@link Address} records in one bulk write.
+     *
+     * @param records The records to be persisted.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> createAll(List<Address> records) {
+        return bulk.insert(Address.class, records, Address::getId, Address::setId);
+    }
+
+    /**
+     * Replace existing {@link Address} records, matched by id, in one bulk write.
+     *
+     * @param records The records to be saved, each with the id of the record it replaces.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> updateAll(List<Address> records) {
+        return bulk.replace(Address.class, records, Address::getId);
+    }
+
+    /**
+     * Delete the {@link Address} records with the specified ids in one write.
+     *
+     * @param ids The ids of the records to be deleted.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    public List<BulkItemResult> deleteAll(List<String> ids) {
+        return bulk.delete(Address.class, ids, Address::getId);
+    }
 }
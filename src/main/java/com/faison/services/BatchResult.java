@@ -0,0 +1,58 @@
+package com.faison.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The records found for a list of ids, in the order the ids were asked for, and the ids that were not found.
+ *
+ * @param <T> The type of the records.
+ */
+public class BatchResult<T> {
+
+    private final List<T> items;
+    private final List<String> missing;
+
+    public BatchResult(List<T> items, List<String> missing) {
+        this.items = items;
+        this.missing = missing;
+    }
+
+    /**
+     * Order the records read for the given ids like the ids. Repeated ids are answered once.
+     *
+     * @param ids   The ids asked for.
+     * @param found The records read, in any order.
+     * @param idOf  Reads the id of a record.
+     * @return the records in the order of the ids, and the ids without a record.
+     */
+    public static <T> BatchResult<T> of(List<String> ids, Iterable<T> found, Function<T, String> idOf) {
+        Map<String, T> byId = new HashMap<>();
+        for (T record : found) {
+            byId.put(idOf.apply(record), record);
+        }
+        List<T> items = new ArrayList<>(byId.size());
+        List<String> missing = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            T record = byId.get(id);
+            if (record != null) {
+                items.add(record);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new BatchResult<>(items, missing);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public List<String> getMissing() {
+        return missing;
+    }
+}
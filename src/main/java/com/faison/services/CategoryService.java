@@ -1,14 +1,29 @@
 package com.faison.services;
 
+import com.faison.cache.CacheRegistry;
+import com.faison.cache.ReadThroughCache;
+import com.faison.cache.ResponseCache;
 import com.faison.models.Category;
+import com.faison.paging.CursorPage;
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.BulkWriter;
 import com.faison.repositories.CategoryRepository;
+import com.faison.repositories.CursorTemplate;
+import com.faison.repositories.Filters;
+import com.faison.repositories.Projection;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
 @Stateless
 @Component
@@ -18,10 +33,38 @@ public class CategoryService implements IService<Category> {
     @Autowired
     private CategoryRepository repository;
 
+    @Autowired
+    private BulkWriter bulk;
+
+    @Autowired
+    private CursorTemplate cursors;
+
+    @Autowired
+    private CacheRegistry caches;
+
+    @Autowired
+    private ResponseCache responses;
+
+    @Value("${shop.cache.categories.max-size:1000}")
+    private long cacheMaxSize;
+
+    @Value("${shop.cache.categories.ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    private ReadThroughCache<Category> cache;
+
+    @Autowired
+    private CategoryTreeService treeService;
+
     public CategoryService(CategoryRepository repository) {
         this.repository = repository;
     }
 
+    @PostConstruct
+    public void createCache() {
+        cache = caches.create("categories", cacheMaxSize, cacheTtlSeconds);
+    }
+
     /**
      * Check for the existence of a {@link Category} with given id.
      *
@@ -46,18 +89,48 @@ public class CategoryService implements IService<Category> {
             return null;
         }
         record.setId(null);
-        return repository.save(record);
+        record.setLastModified(new Date());
+        Category saved = repository.save(record);
+        treeService.rebuild();
+        responses.invalidate(ResponseCache.CATEGORIES, ResponseCache.PRODUCTS);
+        return saved;
     }
 
     /**
-     * Find the {@link Category} with the given id.
+     * Find the {@link Category} with the given id, from the cache if it was read recently.
      *
      * @param id The id to be searched for.
      * @return {@link Category}
-     * the record if found, and null otherwise.
+     * the record if found, and null otherwise. It may be the cached instance shared with other callers, so it
+     * must not be modified.
      */
     public Category findById(String id) {
-        return repository.findOne(id);
+        if (id == null) {
+            return null;
+        }
+        return cache.get(id, repository::findOne);
+    }
+
+    /**
+     * Find when the {@link Category} with the given id was last written, from the cache if it was read recently.
+     *
+     * @param id The id to be searched for.
+     * @return the time of the last write, or null if the record does not exist or has never been stamped.
+     */
+    public Date lastModified(String id) {
+        Category record = findById(id);
+        return record == null ? null : record.getLastModified();
+    }
+
+    /**
+     * Find the {@link Category} with the given ids, in a single query.
+     *
+     * @param ids        The ids to be searched for.
+     * @param projection The properties to read.
+     * @return the records found, in the order of the ids, and the ids for which no record exists.
+     */
+    public BatchResult<Category> findByIds(List<String> ids, Projection projection) {
+        return BatchResult.of(ids, cursors.find(Category.class, ids, projection), Category::getId);
     }
 
     /**
@@ -90,6 +163,25 @@ public class CategoryService implements IService<Category> {
         return repository.findByDescriptionLike(description, pageable);
     }
 
+    /**
+     * Return the {@link Category} matching the given filters that come after the given id, in id order.
+     *
+     * @param afterId    The id of the last record of the previous page, or null for the first page.
+     * @param size       The maximum number of records to return.
+     * @param projection The properties to read.
+     * @return the page of records, with the cursor of the next page.
+     */
+    public CursorPage<Category> scroll(String description, String parentCategoryId, String afterId, int size, Projection projection) {
+        List<Criteria> clauses = new ArrayList<>();
+        if (!description.isEmpty()) {
+            clauses.add(Filters.like("description", description));
+        }
+        if (!parentCategoryId.isEmpty()) {
+            clauses.add(Criteria.where("parentCategoryId").is(parentCategoryId));
+        }
+        return cursors.scroll(Category.class, Filters.allOf(clauses), afterId, size, Category::getId, projection);
+    }
+
     /**
      * Update an existing {@link Category} with the specified id.
      *
@@ -103,7 +195,12 @@ public class CategoryService implements IService<Category> {
             return null;
         }
         record.setId(id);
-        return repository.save(record);
+        record.setLastModified(new Date());
+        Category saved = repository.save(record);
+        cache.invalidate(id);
+        treeService.rebuild();
+        responses.invalidate(ResponseCache.CATEGORIES, ResponseCache.PRODUCTS);
+        return saved;
     }
 
     /**
@@ -113,5 +210,57 @@ public class CategoryService implements IService<Category> {
      */
     public void deleteById(String id) {
         repository.delete(id);
+        cache.invalidate(id);
+        treeService.rebuild();
+        responses.invalidate(ResponseCache.CATEGORIES, ResponseCache.PRODUCTS);
+    }
+
+    /**
+     * Create and save new {@link Category} records in one bulk write.
+     *
+     * @param records The records to be persisted.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> createAll(List<Category> records) {
+        Timestamps.touch(records, Category::setLastModified);
+        List<BulkItemResult> results = bulk.insert(Category.class, records, Category::getId, Category::setId);
+        treeService.rebuild();
+        responses.invalidate(ResponseCache.CATEGORIES, ResponseCache.PRODUCTS);
+        return results;
+    }
+
+    /**
+     * Replace existing {@link Category} records, matched by id, in one bulk write.
+     *
+     * @param records The records to be saved, each with the id of the record it replaces.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> updateAll(List<Category> records) {
+        Timestamps.touch(records, Category::setLastModified);
+        List<BulkItemResult> results = bulk.replace(Category.class, records, Category::getId);
+        for (Category record : records) {
+            if (record.getId() != null) {
+                cache.invalidate(record.getId());
+            }
+        }
+        treeService.rebuild();
+        responses.invalidate(ResponseCache.CATEGORIES, ResponseCache.PRODUCTS);
+        return results;
+    }
+
+    /**
+     * Delete the {@link Category} records with the specified ids in one write.
+     *
+     * @param ids The ids of the records to be deleted.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    public List<BulkItemResult> deleteAll(List<String> ids) {
+        List<BulkItemResult> results = bulk.delete(Category.class, ids, Category::getId);
+        for (String id : ids) {
+            cache.invalidate(id);
+        }
+        treeService.rebuild();
+        responses.invalidate(ResponseCache.CATEGORIES, ResponseCache.PRODUCTS);
+        return results;
     }
-}
\ No newline at end of file
+}
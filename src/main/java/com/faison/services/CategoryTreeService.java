@@ -0,0 +1,82 @@
+package com.faison.services;
+
+import com.faison.index.CategoryTree;
+import com.faison.models.Category;
+import com.faison.repositories.CategoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Local;
+import javax.ejb.Stateless;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the whole {@link Category} hierarchy in memory as a {@link CategoryTree}.
+ * The tree is loaded on startup and rebuilt from the database after every category write; readers always see
+ * either the old or the new tree, never a partly built one.
+ */
+@Stateless
+@Component
+@Local
+public class CategoryTreeService {
+
+    @Autowired
+    private CategoryRepository repository;
+
+    private volatile CategoryTree tree = CategoryTree.build(new ArrayList<>());
+
+    public CategoryTreeService() {
+    }
+
+    /**
+     * Load every {@link Category} and swap in a freshly built tree.
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        List<Category> categories = new ArrayList<>();
+        for (Category category : repository.findAll()) {
+            categories.add(category);
+        }
+        tree = CategoryTree.build(categories);
+    }
+
+    /**
+     * @return the current tree.
+     */
+    public CategoryTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Return the ids of a {@link Category} and all of its descendants.
+     *
+     * @param id The id of the category.
+     * @return the ids, or an empty array if there is no such category.
+     */
+    public String[] subtreeIds(String id) {
+        return tree.subtreeIds(id);
+    }
+
+    /**
+     * Return the nested menu of {@link Category} objects.
+     *
+     * @param id       The id of the category to start from, or null for the whole hierarchy.
+     * @param maxDepth The number of levels to include below the starting point.
+     * @return the top level nodes with their children.
+     */
+    public List<CategoryTree.CategoryNode> menu(String id, int maxDepth) {
+        return tree.nodes(id, maxDepth);
+    }
+
+    /**
+     * Return the ancestors of a {@link Category}, from the root down to the category itself.
+     *
+     * @param id The id of the category.
+     * @return the path, or an empty list if there is no such category.
+     */
+    public List<CategoryTree.CategoryNode> path(String id) {
+        return tree.path(id);
+    }
+}
@@ -0,0 +1,19 @@
+package com.faison.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a record was written by someone else between the read an update was computed from and the write
+ * of the update. Nothing is written; requests failing this way are answered with an HttpStatus.CONFLICT, and
+ * can be retried.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictingWriteException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ConflictingWriteException(String message) {
+        super(message);
+    }
+}
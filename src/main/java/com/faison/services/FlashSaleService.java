@@ -0,0 +1,246 @@
+package com.faison.services;
+
+import com.faison.models.Order;
+import com.faison.models.OrderItem;
+import com.faison.models.Product;
+import com.faison.repositories.CursorTemplate;
+import com.faison.repositories.Projection;
+import com.faison.stock.FlashSale;
+import com.faison.stock.SoldOutException;
+import com.faison.stock.StockLedger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Local;
+import javax.ejb.Stateless;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs flash sales: timed sales of a few products that draw most of the checkout traffic while they last.
+ * <p>
+ * Starting a sale leases all the stock of its products into the in-memory counters of the {@link StockLedger},
+ * so reservations do not touch the product documents. Orders for sale products then go through two gates
+ * before {@link OrderService} sees them. An order for more units than are left is refused as sold out from
+ * memory alone, looking at the database for new stock at most once per {@code shop.flash-sale.refill-millis}.
+ * The others are admitted in arrival order, at most {@code shop.flash-sale.concurrency} at a time; at most
+ * {@code shop.flash-sale.max-waiting} wait for a turn, and no longer than {@code shop.flash-sale.wait-millis},
+ * the rest are turned away at once. Orders without sale products skip both gates, so the rest of the shop keeps
+ * its own threads and latency.
+ * <p>
+ * Each instance leases the stock it can when it starts a sale and picks up what others give back, so a sale is
+ * best started on every instance taking its traffic.
+ */
+@Stateless
+@Component
+@Local
+public class FlashSaleService {
+
+    @Autowired
+    private StockLedger stock;
+
+    @Autowired
+    private CursorTemplate cursors;
+
+    @Value("${shop.flash-sale.concurrency:32}")
+    private int concurrency;
+
+    @Value("${shop.flash-sale.max-waiting:256}")
+    private int maxWaiting;
+
+    @Value("${shop.flash-sale.wait-millis:2000}")
+    private long waitMillis;
+
+    @Value("${shop.flash-sale.refill-millis:1000}")
+    private long refillMillis;
+
+    private final Map<String, FlashSale> sales = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private Semaphore turns;
+
+    public FlashSaleService() {
+    }
+
+    @PostConstruct
+    public void createTurns() {
+        turns = new Semaphore(concurrency, true);
+    }
+
+    /**
+     * Start a flash sale of the given products, leasing all of their stock.
+     *
+     * @param productIds The ids of the products on sale; their stock must be tracked.
+     * @param endsOn     When the sale ends, or null to run until stopped.
+     * @return the sales started, or null if a product does not exist or does not track its stock, in which case
+     * no sale is started.
+     */
+    public List<FlashSale> start(List<String> productIds, Date endsOn) {
+        Set<String> tracked = new HashSet<>();
+        for (Product product : cursors.find(Product.class, productIds, Projection.of("stock"))) {
+            if (product.getStock() != null) {
+                tracked.add(product.getId());
+            }
+        }
+        if (!tracked.containsAll(productIds)) {
+            return null;
+        }
+        List<FlashSale> started = new ArrayList<>(productIds.size());
+        for (String productId : productIds) {
+            FlashSale sale = new FlashSale(productId, endsOn).setAvailable(stock.pin(productId));
+            sales.put(productId, sale);
+            started.add(sale);
+        }
+        return started;
+    }
+
+    /**
+     * End the flash sale of a product and give back its unsold stock.
+     *
+     * @param productId The id of the product.
+     * @return the sale ended, or null if the product was not on sale.
+     */
+    public FlashSale stop(String productId) {
+        FlashSale sale = sales.remove(productId);
+        if (sale != null) {
+            stock.unpin(productId);
+            sale.setAvailable(0);
+        }
+        return sale;
+    }
+
+    /**
+     * @return the running sales, with the units each has left.
+     */
+    public List<FlashSale> list() {
+        List<FlashSale> running = new ArrayList<>();
+        for (FlashSale sale : sales.values()) {
+            if (active(sale.getProductId(), System.currentTimeMillis()) != null) {
+                running.add(sale.setAvailable(stock.available(sale.getProductId())));
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Let an order through the gates of the sales it takes part in.
+     *
+     * @param order The order about to be created.
+     * @return the admission, to be closed once the order is created or refused, or null if the order was turned
+     * away because too many are waiting.
+     * @throws SoldOutException    if a sale product has fewer units left than the order asks for.
+     * @throws InterruptedException if interrupted while waiting for a turn.
+     */
+    public Admission admit(Order order) throws InterruptedException {
+        Map<FlashSale, Long> wanted = wanted(order);
+        if (wanted.isEmpty()) {
+            return Admission.NONE;
+        }
+        checkStock(wanted);
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            return null;
+        }
+        boolean admitted;
+        try {
+            admitted = turns.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!admitted) {
+            return null;
+        }
+        Admission admission = new Admission(turns);
+        try {
+            // Units may have run out while the order waited.
+            checkStock(wanted);
+        } catch (SoldOutException e) {
+            admission.close();
+            throw e;
+        }
+        wanted.keySet().forEach(FlashSale::admitted);
+        return admission;
+    }
+
+    private void checkStock(Map<FlashSale, Long> wanted) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<FlashSale, Long> entry : wanted.entrySet()) {
+            FlashSale sale = entry.getKey();
+            if (stock.available(sale.getProductId()) < entry.getValue() && sale.claimRefill(now, refillMillis)) {
+                stock.refill(sale.getProductId());
+            }
+            if (stock.available(sale.getProductId()) < entry.getValue()) {
+                sale.soldOut();
+                throw new SoldOutException(sale.getProductId(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * The units of every sale product an order asks for.
+     */
+    private Map<FlashSale, Long> wanted(Order order) {
+        Map<FlashSale, Long> wanted = new LinkedHashMap<>();
+        if (sales.isEmpty() || order.getOrderItemList() == null) {
+            return wanted;
+        }
+        long now = System.currentTimeMillis();
+        for (OrderItem item : order.getOrderItemList()) {
+            if (item != null && item.getProduct() != null && item.getProduct().getId() != null) {
+                FlashSale sale = active(item.getProduct().getId(), now);
+                if (sale != null) {
+                    wanted.merge(sale, (long) Math.max(1, item.getQuantity()), Long::sum);
+                }
+            }
+        }
+        return wanted;
+    }
+
+    /**
+     * @return the running sale of a product, or null; a sale found over is ended.
+     */
+    private FlashSale active(String productId, long now) {
+        FlashSale sale = sales.get(productId);
+        if (sale != null && sale.isOver(now)) {
+            stop(productId);
+            return null;
+        }
+        return sale;
+    }
+
+    /**
+     * A turn to create an order with sale products.
+     */
+    public static class Admission implements AutoCloseable {
+
+        static final Admission NONE = new Admission(null);
+
+        private final Semaphore turns;
+        private boolean closed;
+
+        Admission(Semaphore turns) {
+            this.turns = turns;
+        }
+
+        /**
+         * Give the turn to the next order, once.
+         */
+        @Override
+        public synchronized void close() {
+            if (!closed && turns != null) {
+                closed = true;
+                turns.release();
+            }
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.faison.services;
 
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.Projection;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 public interface IService<Model> {
     /**
      * Check for the existence of a {@link Model} with given id.
@@ -29,6 +33,15 @@ public interface IService<Model> {
      */
     Model findById(String id);
 
+    /**
+     * Find the {@link Model} with the given ids, in a single query.
+     *
+     * @param ids        The ids to be searched for.
+     * @param projection The properties to read.
+     * @return the records found, in the order of the ids, and the ids for which no record exists.
+     */
+    BatchResult<Model> findByIds(List<String> ids, Projection projection);
+
     /**
      * Return all available {@link Model} in pages.
      *
@@ -53,4 +66,28 @@ public interface IService<Model> {
      * @param id The id of the record to be deleted.
      */
     void deleteById(String id);
+
+    /**
+     * Create and save new {@link Model} records in one bulk write.
+     *
+     * @param records The records to be persisted.
+     * @return the outcome of every record, in the order of the records.
+     */
+    List<BulkItemResult> createAll(List<Model> records);
+
+    /**
+     * Replace existing {@link Model} records, matched by id, in one bulk write.
+     *
+     * @param records The records to be saved, each with the id of the record it replaces.
+     * @return the outcome of every record, in the order of the records.
+     */
+    List<BulkItemResult> updateAll(List<Model> records);
+
+    /**
+     * Delete the {@link Model} records with the specified ids in one write.
+     *
+     * @param ids The ids of the records to be deleted.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    List<BulkItemResult> deleteAll(List<String> ids);
 }
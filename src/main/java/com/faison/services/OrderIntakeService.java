@@ -0,0 +1,319 @@
+package com.faison.services;
+
+import com.faison.intake.Journal;
+import com.faison.models.Order;
+import com.faison.repositories.BulkItemResult;
+import com.faison.stock.Reservation;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.Local;
+import javax.ejb.Stateless;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes new {@link Order} records in faster than they can be written one by one. When enabled, an order is
+ * priced and given its id on the request thread, appended to a local {@link Journal} and queued; a single writer
+ * thread drains the queue into the database in bulk batches. The request returns as soon as the order is on
+ * disk, so a spike costs queue slots rather than request threads.
+ * <p>
+ * The queue is bounded: once it is full a new order waits up to {@code shop.orders.intake.block-millis} for a
+ * slot and is then turned away, to be retried by the client. Orders in the journal that were not written when
+ * the application stopped are written when it starts again. Their units were leased out of the database
+ * before the stop, so they are not reserved again, only given back to the database if the order turns out not
+ * to be writable; orders written twice keep their first copy. The stock reserved for an order is released if
+ * it cannot be journaled or written.
+ */
+@Stateless
+@Component
+@Local
+public class OrderIntakeService {
+
+    private static final long MAX_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Logger log = LoggerFactory.getLogger(OrderIntakeService.class);
+
+    @Autowired
+    private OrderService orders;
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Value("${shop.orders.intake.enabled:false}")
+    private boolean enabled;
+
+    @Value("${shop.orders.intake.capacity:10000}")
+    private int capacity;
+
+    @Value("${shop.orders.intake.batch-size:500}")
+    private int batchSize;
+
+    @Value("${shop.orders.intake.block-millis:0}")
+    private long blockMillis;
+
+    @Value("${shop.orders.intake.journal:order-intake.journal}")
+    private String journalPath;
+
+    @Value("${shop.orders.intake.journal-segment-bytes:4194304}")
+    private long journalSegmentBytes;
+
+    private final BlockingQueue<Queued> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private Semaphore slots;
+    private Journal journal;
+    private Thread writer;
+    private volatile boolean running;
+
+    public OrderIntakeService() {
+    }
+
+    /**
+     * Open the journal, queue the orders left in it by the last run, and start the writer.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journal = Journal.open(Paths.get(journalPath), journalSegmentBytes);
+        journal.replay((segment, entry) -> queue.add(replayed(segment, entry)));
+        if (!queue.isEmpty()) {
+            log.info("Queueing {} orders left in the intake journal", queue.size());
+        }
+        slots = new Semaphore(capacity - queue.size());
+        running = true;
+        writer = new Thread(this::drain, "order-intake");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop taking orders and write those already queued.
+     */
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        writer.join(MAX_RETRY_MILLIS);
+        journal.close();
+    }
+
+    /**
+     * @return true if orders are taken through the queue rather than written on the request thread.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Price a new order and queue it to be written.
+     *
+     * @param record The order to take.
+     * @return the order with its id, or null if the queue stayed full.
+     * @throws com.faison.pricing.PricingException if the order cannot be priced.
+     * @throws IOException                         if the order could not be journaled.
+     * @throws InterruptedException                if interrupted while waiting for a slot.
+     */
+    public Order submit(Order record) throws IOException, InterruptedException {
+        if (!running || !slots.tryAcquire(blockMillis, TimeUnit.MILLISECONDS)) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        Reservation reservation = Reservation.NONE;
+        long segment;
+        try {
+            reservation = orders.prepare(record);
+            DBObject document = new BasicDBObject();
+            template.getConverter().write(record, document);
+            segment = journal.append(JSON.serialize(document));
+        } catch (IOException | RuntimeException e) {
+            reservation.release();
+            slots.release();
+            throw e;
+        }
+        queue.add(new Queued(record, reservation, segment, false));
+        accepted.incrementAndGet();
+        return record;
+    }
+
+    /**
+     * @return the state of the queue and the orders taken, turned away, written and failed so far.
+     */
+    public Stats stats() {
+        return new Stats(enabled, queue.size(), capacity, accepted.get(), rejected.get(), written.get(), failed.get());
+    }
+
+    /**
+     * Read back an order left in the journal. Its units are already out of the database, so it holds no
+     * reservation.
+     */
+    private Queued replayed(long segment, String entry) {
+        Order order = template.getConverter().read(Order.class, (DBObject) JSON.parse(entry));
+        return new Queued(order, Reservation.NONE, segment, true);
+    }
+
+    private void drain() {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Queued first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Could not write {} queued orders; they stay in the journal", batch.size(), e);
+            } finally {
+                slots.release(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Write a batch, retrying until the database takes it. Orders it rejects one by one are logged and dropped
+     * from the journal, since writing them again would fail the same way, and their stock is released, or given
+     * back to the database for orders replayed from the journal. A replayed order that turns out to be written
+     * already keeps its stock.
+     */
+    private void write(List<Queued> batch) throws IOException {
+        List<Order> records = new ArrayList<>(batch.size());
+        List<Long> segments = new ArrayList<>(batch.size());
+        for (Queued queued : batch) {
+            records.add(queued.order);
+            segments.add(queued.segment);
+        }
+        long backoff = 100;
+        while (true) {
+            try {
+                List<BulkItemResult> results = orders.insertPrepared(records);
+                for (int i = 0; i < results.size(); i++) {
+                    BulkItemResult result = results.get(i);
+                    if (result.getStatus() == BulkItemResult.Status.CREATED) {
+                        written.incrementAndGet();
+                    } else if (!isDuplicate(result)) {
+                        failed.incrementAndGet();
+                        if (batch.get(i).replayed) {
+                            orders.restockUnwritten(batch.get(i).order);
+                        } else {
+                            batch.get(i).reservation.release();
+                        }
+                        log.error("Dropping queued order {}: {}", result.getId(), result.getError());
+                    }
+                }
+                journal.release(segments);
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Could not write {} queued orders, retrying in {} ms", batch.size(), backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while writing queued orders", interrupted);
+                }
+                backoff = Math.min(backoff * 2, MAX_RETRY_MILLIS);
+            }
+        }
+    }
+
+    private static boolean isDuplicate(BulkItemResult result) {
+        return result.getError() != null && result.getError().contains("E11000");
+    }
+
+    /**
+     * An order waiting to be written, with its stock and the journal segment holding it.
+     */
+    private static final class Queued {
+
+        private final Order order;
+        private final Reservation reservation;
+        private final long segment;
+        private final boolean replayed;
+
+        private Queued(Order order, Reservation reservation, long segment, boolean replayed) {
+            this.order = order;
+            this.reservation = reservation;
+            this.segment = segment;
+            this.replayed = replayed;
+        }
+    }
+
+    /**
+     * The state of the order intake.
+     */
+    public static class Stats {
+
+        private final boolean enabled;
+        private final int queued;
+        private final int capacity;
+        private final long accepted;
+        private final long rejected;
+        private final long written;
+        private final long failed;
+
+        Stats(boolean enabled, int queued, int capacity, long accepted, long rejected, long written, long failed) {
+            this.enabled = enabled;
+            this.queued = queued;
+            this.capacity = capacity;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.written = written;
+            this.failed = failed;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package com.faison.services;
 
 import com.faison.models.OrderItem;
+import com.faison.pricing.OrderPricer;
+import com.faison.pricing.PricingException;
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.BulkWriter;
+import com.faison.repositories.CursorTemplate;
 import com.faison.repositories.OrderItemRepository;
+import com.faison.repositories.Projection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -9,6 +15,10 @@ import org.springframework.stereotype.Component;
 
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
 
 @Stateless
 @Component
@@ -18,6 +28,15 @@ public class OrderItemService implements IService<OrderItem> {
     @Autowired
     private OrderItemRepository repository;
 
+    @Autowired
+    private BulkWriter bulk;
+
+    @Autowired
+    private CursorTemplate cursors;
+
+    @Autowired
+    private OrderPricer pricer;
+
     public OrderItemService() {
     }
 
@@ -45,6 +64,7 @@ public class OrderItemService implements IService<OrderItem> {
             return null;
         }
         record.setId(null);
+        pricer.price(record);
         return repository.save(record);
     }
 
@@ -59,6 +79,17 @@ public class OrderItemService implements IService<OrderItem> {
         return repository.findOne(id);
     }
 
+    /**
+     * Find the {@link OrderItem} with the given ids, in a single query.
+     *
+     * @param ids        The ids to be searched for.
+     * @param projection The properties to read.
+     * @return the records found, in the order of the ids, and the ids for which no record exists.
+     */
+    public BatchResult<OrderItem> findByIds(List<String> ids, Projection projection) {
+        return BatchResult.of(ids, cursors.find(OrderItem.class, ids, projection), OrderItem::getId);
+    }
+
     /**
      * Return all available {@link OrderItem} in pages.
      *
@@ -82,6 +113,7 @@ public class OrderItemService implements IService<OrderItem> {
             return null;
         }
         record.setId(id);
+        pricer.price(record);
         return repository.save(record);
     }
 
@@ -93,4 +125,59 @@ public class OrderItemService implements IService<OrderItem> {
     public void deleteById(String id) {
         repository.delete(id);
     }
+
+    /**
+     * Create and save new {@link OrderItem} records in one bulk write.
+     *
+     * @param records The records to be persisted.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> createAll(List<OrderItem> records) {
+        return priced(records, valid -> bulk.insert(OrderItem.class, valid, OrderItem::getId, OrderItem::setId));
+    }
+
+    /**
+     * Replace existing {@link OrderItem} records, matched by id, in one bulk write.
+     *
+     * @param records The records to be saved, each with the id of the record it replaces.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> updateAll(List<OrderItem> records) {
+        return priced(records, valid -> bulk.replace(OrderItem.class, valid, OrderItem::getId));
+    }
+
+    /**
+     * Delete the {@link OrderItem} records with the specified ids in one write.
+     *
+     * @param ids The ids of the records to be deleted.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    public List<BulkItemResult> deleteAll(List<String> ids) {
+        return bulk.delete(OrderItem.class, ids, OrderItem::getId);
+    }
+
+    /**
+     * Price the records from one read of their products, then write those that priced correctly. The others
+     * are reported as failed with the reason.
+     */
+    private List<BulkItemResult> priced(List<OrderItem> records, Function<List<OrderItem>, List<BulkItemResult>> writer) {
+        OrderPricer.Prices prices = pricer.loadItems(records);
+        BulkItemResult[] results = new BulkItemResult[records.size()];
+        List<OrderItem> valid = new ArrayList<>(records.size());
+        int[] positions = new int[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                pricer.price(records.get(i), prices);
+                positions[valid.size()] = i;
+                valid.add(records.get(i));
+            } catch (PricingException e) {
+                results[i] = BulkItemResult.failed(i, records.get(i).getId(), e.getMessage());
+            }
+        }
+        List<BulkItemResult> written = writer.apply(valid);
+        for (int j = 0; j < written.size(); j++) {
+            results[positions[j]] = written.get(j).withIndex(positions[j]);
+        }
+        return Arrays.asList(results);
+    }
 }
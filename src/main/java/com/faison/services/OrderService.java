@@ -1,14 +1,55 @@
 package com.faison.services;
 
+import com.faison.cache.OrderSummary;
+import com.faison.cache.RecentOrdersCache;
+import com.faison.events.OrderEvents;
 import com.faison.models.Order;
+import com.faison.models.OrderItem;
+import com.faison.models.OrderLine;
+import com.faison.models.Product;
+import com.faison.models.User;
+import com.faison.paging.CursorPage;
+import com.faison.pricing.OrderPricer;
+import com.faison.pricing.PricingException;
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.BulkWriter;
+import com.faison.repositories.CursorTemplate;
+import com.faison.repositories.Filters;
 import com.faison.repositories.OrderRepository;
+import com.faison.repositories.OrderSnapshotMigration;
+import com.faison.repositories.Projection;
+import com.faison.rollups.SalesRollups;
+import com.faison.stock.OutOfStockException;
+import com.faison.stock.Reservation;
+import com.faison.stock.StockLedger;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
+import javax.annotation.PostConstruct;
 import javax.ejb.Local;
 import javax.ejb.Stateless;
 
@@ -17,12 +58,63 @@ import javax.ejb.Stateless;
 @Local
 public class OrderService implements IService<Order> {
 
+    /**
+     * The properties of an order its sales rollups are computed from.
+     */
+    private static final Projection SOLD = Projection.of("placedOn,buyerId,lines,deliveredStatus");
+    private static final Projection SUMMARY = Projection.of("placedOn,cost,shippingFee,deliveredStatus,lines.quantity");
+
     @Autowired
     private OrderRepository repository;
 
+    @Autowired
+    private BulkWriter bulk;
+
+    @Autowired
+    private CursorTemplate cursors;
+
+    @Autowired
+    private OrderPricer pricer;
+
+    @Autowired
+    private UserService users;
+
+    @Autowired
+    private OrderSnapshotMigration migration;
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Autowired
+    private SalesRollups rollups;
+
+    @Autowired
+    private StockLedger stock;
+
+    @Autowired
+    private RecentOrdersCache recent;
+
+    @Autowired
+    private OrderEvents events;
+
     public OrderService() {
     }
 
+    /**
+     * Index the orders of each buyer by the date they were placed on, so order history pages and their date
+     * ranges are single index range scans. The id comes last to break ties when paging by date.
+     */
+    @PostConstruct
+    public void createIndexes() {
+        template.indexOps(Order.class).ensureIndex(new Index()
+                .on("buyerId", Sort.Direction.ASC)
+                .on("placedOn", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC));
+        template.indexOps(Order.class).ensureIndex(new Index()
+                .on("placedOn", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC));
+    }
+
     /**
      * Check for the existence of a {@link Order} with given id.
      *
@@ -37,17 +129,83 @@ public class OrderService implements IService<Order> {
     }
 
     /**
-     * Create and save a new {@link Order}.
+     * Create and save a new {@link Order}, reserving the stock of its products.
      *
      * @param record The record to be persisted
      * @return the saved record
+     * @throws OutOfStockException if a product does not have enough units left.
      */
     public Order create(Order record) {
         if (exists(record.getId())) {
             return null;
         }
         record.setId(null);
-        return repository.save(record);
+        if (record.getPlacedOn() == null) {
+            record.setPlacedOn(new Date());
+        }
+        List<Order> records = Collections.singletonList(record);
+        snapshot(record, null, pricer.load(records), buyers(records));
+        record.setLastModified(new Date());
+        Reservation reservation = reserve(record, null);
+        Order saved;
+        try {
+            saved = repository.save(record);
+        } catch (RuntimeException e) {
+            reservation.release();
+            throw e;
+        }
+        rollups.record(null, saved);
+        recent.created(saved);
+        events.created(saved);
+        return saved;
+    }
+
+    /**
+     * Price and snapshot a new {@link Order} and give it an id, without saving it, so it can be queued and
+     * written later with {@link #insertPrepared(List)}.
+     *
+     * @param record The record to be persisted, made ready to be written in place; any id it carries is replaced.
+     * @return the reservation of the stock of its products, to be released if it is not written.
+     * @throws PricingException    if the order cannot be priced or its amounts were tampered with.
+     * @throws OutOfStockException if a product does not have enough units left.
+     */
+    public Reservation prepare(Order record) {
+        record.setId(new ObjectId().toString());
+        if (record.getPlacedOn() == null) {
+            record.setPlacedOn(new Date());
+        }
+        List<Order> records = Collections.singletonList(record);
+        snapshot(record, null, pricer.load(records), buyers(records));
+        record.setLastModified(new Date());
+        return reserve(record, null);
+    }
+
+    /**
+     * Give back the stock of an order returned by {@link #prepare(Order)} in an earlier run that will never be
+     * written. Its reservation did not survive the restart, but the units were leased out of the database
+     * before it, so they are returned there.
+     *
+     * @param prepared The prepared record.
+     */
+    public void restockUnwritten(Order prepared) {
+        stock.restock(quantities(prepared));
+    }
+
+    /**
+     * Write orders made ready by {@link #prepare(Order)} in one bulk write. An order already written keeps its
+     * first copy and is reported as failed, so the same orders can be written again safely; the caller releases
+     * the reservations of orders that were not written.
+     *
+     * @param records The prepared records.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> insertPrepared(List<Order> records) {
+        List<BulkItemResult> results = bulk.insertAssigned(Order.class, records, Order::getId);
+        List<Order> created = written(records, results, BulkItemResult.Status.CREATED);
+        rollups.record(Collections.emptyList(), created);
+        invalidateRecent(created);
+        events.created(created);
+        return results;
     }
 
     /**
@@ -61,6 +219,31 @@ public class OrderService implements IService<Order> {
         return repository.findOne(id);
     }
 
+    /**
+     * Find when the {@link Order} with the given id was last written, reading only that property.
+     *
+     * @param id The id to be searched for.
+     * @return the time of the last write, or null if the record does not exist or has never been stamped.
+     */
+    public Date lastModified(String id) {
+        if (id == null) {
+            return null;
+        }
+        Order record = cursors.findOne(Order.class, id, Projection.of("lastModified"));
+        return record == null ? null : record.getLastModified();
+    }
+
+    /**
+     * Find the {@link Order} with the given ids, in a single query.
+     *
+     * @param ids        The ids to be searched for.
+     * @param projection The properties to read.
+     * @return the records found, in the order of the ids, and the ids for which no record exists.
+     */
+    public BatchResult<Order> findByIds(List<String> ids, Projection projection) {
+        return BatchResult.of(ids, cursors.find(Order.class, ids, projection), Order::getId);
+    }
+
     /**
      * Return all available {@link Order} in pages.
      *
@@ -83,32 +266,490 @@ public class OrderService implements IService<Order> {
         return repository.findByPlacedOnBetween(from, to, pageable);
     }
 
-    public Page<Order> findByBuyer_Id(String userId, Pageable pageable) {
-        return repository.findByBuyer_Id(userId, pageable);
+    public Page<Order> findByBuyerId(String buyerId, Pageable pageable) {
+        return repository.findByBuyerId(buyerId, pageable);
+    }
+
+    /**
+     * Return the newest {@link Order} of a buyer, by placing date then id, as summaries. Lists no longer than
+     * {@link RecentOrdersCache#perBuyer()} are served from the cache, which reads only the summarized properties
+     * on a miss.
+     *
+     * @param buyerId The id of the buyer.
+     * @param limit   The maximum number of orders to return.
+     * @return the summaries of the orders, newest first.
+     */
+    public List<OrderSummary> recentByBuyer(String buyerId, int limit) {
+        if (limit <= recent.perBuyer()) {
+            return recent.get(buyerId, limit, id -> newestByBuyer(id, recent.perBuyer()));
+        }
+        List<OrderSummary> result = new ArrayList<>();
+        for (Order order : newestByBuyer(buyerId, limit)) {
+            result.add(OrderSummary.of(order));
+        }
+        return result;
+    }
+
+    /**
+     * Return one page of the {@link Order} matching all the given filters, in a single query.
+     *
+     * @param buyerId      The id of the buyer, or empty for every buyer.
+     * @param placedAfter  The exclusive lower bound of the placing date, or null.
+     * @param placedBefore The exclusive upper bound of the placing date, or null.
+     * @param pageable     The page number and size to be returned, sorted by placing date.
+     * @param projection   The properties to read.
+     * @return the given page of records, with the total number of matches.
+     */
+    public Page<Order> search(String buyerId, Date placedAfter, Date placedBefore, Pageable pageable, Projection projection) {
+        return cursors.page(Order.class, filter(buyerId, placedAfter, placedBefore), pageable, projection);
+    }
+
+    /**
+     * Return the {@link Order} matching the given filters that come after the given position, by placing date
+     * then id.
+     *
+     * @param direction     The direction of the placing date order.
+     * @param afterPlacedOn The placing date of the last record of the previous page, or null for the first page.
+     * @param afterId       The id of the last record of the previous page, or null for the first page.
+     * @param size          The maximum number of records to return.
+     * @param projection    The properties to read.
+     * @return the page of records, with the cursor of the next page.
+     */
+    public CursorPage<Order> scroll(String buyerId, Date placedAfter, Date placedBefore, Sort.Direction direction,
+                                    Date afterPlacedOn, String afterId, int size, Projection projection) {
+        return cursors.seek(Order.class, filter(buyerId, placedAfter, placedBefore), "placedOn", direction,
+                afterPlacedOn, afterId, size, OrderService::cursorKeys, projection);
+    }
+
+    /**
+     * Open a cursor over every {@link Order} matching the given filters, in id order, for exports.
+     *
+     * @return the open cursor, to be closed by the caller.
+     */
+    public CloseableIterator<Order> stream(String buyerId, Date placedAfter, Date placedBefore) {
+        return cursors.stream(Order.class, filter(buyerId, placedAfter, placedBefore));
     }
 
     /**
-     * Update an existing {@link Order} with the specified id.
+     * Update an existing {@link Order} with the specified id. Units added to its lines are reserved, and units
+     * removed from them are returned to stock. The stock moved is computed from the stored order, so the order
+     * is only written if it has not changed since it was read.
      *
      * @param id     The id of the record to update.
      * @param record The record to be updated.
      * @return {@link Order}
      * the saved record, if update was successful, or null if the update was unsuccessful.
+     * @throws OutOfStockException       if a product does not have enough units left for the added ones.
+     * @throws ConflictingWriteException if the order was written by someone else meanwhile; nothing is written.
      */
     public Order updateById(String id, Order record) {
-        if (!exists(id)) {
+        Order existing = id == null ? null : repository.findOne(id);
+        if (existing == null) {
             return null;
         }
         record.setId(id);
-        return repository.save(record);
+        if (record.getPlacedOn() == null) {
+            record.setPlacedOn(existing.getPlacedOn());
+        }
+        List<Order> records = Collections.singletonList(record);
+        snapshot(record, existing, pricer.load(records), buyers(records));
+        record.setLastModified(new Date());
+        Reservation reservation = reserve(record, existing);
+        Order saved;
+        try {
+            saved = template.findAndModify(unchanged(existing), replacement(record),
+                    FindAndModifyOptions.options().returnNew(true), Order.class);
+        } catch (RuntimeException e) {
+            reservation.release();
+            throw e;
+        }
+        if (saved == null) {
+            reservation.release();
+            throw new ConflictingWriteException("Order " + id + " was changed or deleted while it was being updated.");
+        }
+        rollups.record(existing, saved);
+        recent.updated(existing, saved);
+        events.updated(existing, saved);
+        restock(existing, saved);
+        return saved;
     }
 
     /**
-     * Delete the {@link Order} with the specified id.
+     * Delete the {@link Order} with the specified id. Its stock, rollups and event follow only if this call
+     * removed it, so concurrent deletes of the same order count it once.
      *
      * @param id The id of the record to be deleted.
      */
     public void deleteById(String id) {
-        repository.delete(id);
+        Order removed = remove(id);
+        if (removed != null) {
+            rollups.record(removed, null);
+            recent.invalidate(removed.getBuyerId());
+            events.deleted(removed);
+            restock(removed, null);
+        }
+    }
+
+    /**
+     * Create and save new {@link Order} records in one bulk write.
+     *
+     * @param records The records to be persisted.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> createAll(List<Order> records) {
+        Timestamps.touch(records, Order::setLastModified);
+        for (Order record : records) {
+            if (record.getPlacedOn() == null) {
+                record.setPlacedOn(record.getLastModified());
+            }
+        }
+        List<BulkItemResult> results = snapshots(records, Collections.emptyMap(),
+                valid -> bulk.insert(Order.class, valid, Order::getId, Order::setId));
+        List<Order> created = written(records, results, BulkItemResult.Status.CREATED);
+        rollups.record(Collections.emptyList(), created);
+        invalidateRecent(created);
+        events.created(created);
+        return results;
+    }
+
+    /**
+     * Replace existing {@link Order} records, matched by id. Each record is written on its own, and only if the
+     * stored order has not changed since it was read, as with {@link #updateById(String, Order)}; the others
+     * fail.
+     *
+     * @param records The records to be saved, each with the id of the record it replaces.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> updateAll(List<Order> records) {
+        Timestamps.touch(records, Order::setLastModified);
+        List<String> ids = new ArrayList<>();
+        for (Order record : records) {
+            if (record.getId() != null) {
+                ids.add(record.getId());
+            }
+        }
+        Map<String, Order> existing = new HashMap<>();
+        for (Order order : cursors.find(Order.class, ids, Projection.ALL)) {
+            existing.put(order.getId(), order);
+        }
+        for (Order record : records) {
+            Order before = record.getId() == null ? null : existing.get(record.getId());
+            if (before != null && record.getPlacedOn() == null) {
+                record.setPlacedOn(before.getPlacedOn());
+            }
+        }
+        List<BulkItemResult> results = snapshots(records, existing, valid -> replaceUnchanged(valid, existing));
+        List<Order> replaced = written(records, results, BulkItemResult.Status.UPDATED);
+        List<Order> before = new ArrayList<>(replaced.size());
+        for (Order record : replaced) {
+            before.add(existing.get(record.getId()));
+        }
+        rollups.record(before, replaced);
+        invalidateRecent(before);
+        invalidateRecent(replaced);
+        events.updated(before, replaced);
+        for (int i = 0; i < replaced.size(); i++) {
+            restock(before.get(i), replaced.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Delete the {@link Order} records with the specified ids, one by one, so only the orders this call removed
+     * are reported as deleted and have their stock, rollups and events follow.
+     *
+     * @param ids The ids of the records to be deleted.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    public List<BulkItemResult> deleteAll(List<String> ids) {
+        List<BulkItemResult> results = new ArrayList<>(ids.size());
+        List<Order> deleted = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            try {
+                Order removed = remove(id);
+                if (removed != null) {
+                    deleted.add(removed);
+                }
+                results.add(BulkItemResult.of(i, id, removed != null ? BulkItemResult.Status.DELETED : BulkItemResult.Status.NOT_FOUND));
+            } catch (RuntimeException e) {
+                results.add(BulkItemResult.failed(i, id, e.getMessage()));
+            }
+        }
+        rollups.record(deleted, Collections.emptyList());
+        invalidateRecent(deleted);
+        events.deleted(deleted);
+        for (Order order : deleted) {
+            restock(order, null);
+        }
+        return results;
+    }
+
+    /**
+     * Rewrite the orders stored before order lines were snapshotted.
+     *
+     * @return the outcome of the run, with the number of orders migrated.
+     * @see OrderSnapshotMigration
+     */
+    public OrderSnapshotMigration.Result migrateSnapshots() {
+        return migration.run();
+    }
+
+    /**
+     * Snapshot the records from one read of their products and buyers, reserve the stock they need beyond what
+     * the existing records hold, then write those that priced and reserved correctly. The others are reported as
+     * failed with the reason, and the stock of records that were not written is released.
+     */
+    private List<BulkItemResult> snapshots(List<Order> records, Map<String, Order> existing,
+                                           Function<List<Order>, List<BulkItemResult>> writer) {
+        OrderPricer.Prices prices = pricer.load(records);
+        Map<String, User> buyers = buyers(records);
+        BulkItemResult[] results = new BulkItemResult[records.size()];
+        List<Order> valid = new ArrayList<>(records.size());
+        List<Reservation> reservations = new ArrayList<>(records.size());
+        int[] positions = new int[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            Order record = records.get(i);
+            try {
+                Order before = record.getId() == null ? null : existing.get(record.getId());
+                snapshot(record, before, prices, buyers);
+                reservations.add(reserve(record, before));
+                positions[valid.size()] = i;
+                valid.add(record);
+            } catch (PricingException | OutOfStockException e) {
+                results[i] = BulkItemResult.failed(i, record.getId(), e.getMessage());
+            }
+        }
+        List<BulkItemResult> written;
+        try {
+            written = writer.apply(valid);
+        } catch (RuntimeException e) {
+            reservations.forEach(Reservation::release);
+            throw e;
+        }
+        for (int j = 0; j < written.size(); j++) {
+            results[positions[j]] = written.get(j).withIndex(positions[j]);
+            BulkItemResult.Status status = written.get(j).getStatus();
+            if (status != BulkItemResult.Status.CREATED && status != BulkItemResult.Status.UPDATED) {
+                reservations.get(j).release();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Write each record over the stored order it was computed from, if that has not changed since. A record
+     * whose order changed or was deleted meanwhile fails, and its stock is released by the caller.
+     */
+    private List<BulkItemResult> replaceUnchanged(List<Order> records, Map<String, Order> existing) {
+        List<BulkItemResult> results = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Order record = records.get(i);
+            Order before = record.getId() == null ? null : existing.get(record.getId());
+            if (record.getId() == null) {
+                results.add(BulkItemResult.failed(i, null, "The id is required."));
+            } else if (before == null) {
+                results.add(BulkItemResult.of(i, record.getId(), BulkItemResult.Status.NOT_FOUND));
+            } else {
+                try {
+                    boolean written = template.updateFirst(unchanged(before), replacement(record), Order.class).getN() == 1;
+                    results.add(written ? BulkItemResult.of(i, record.getId(), BulkItemResult.Status.UPDATED)
+                            : BulkItemResult.failed(i, record.getId(), "The order was changed or deleted while it was being updated."));
+                } catch (RuntimeException e) {
+                    results.add(BulkItemResult.failed(i, record.getId(), e.getMessage()));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the query matching the stored order only as long as it is the version read.
+     */
+    private static Query unchanged(Order existing) {
+        return new Query(Criteria.where("id").is(existing.getId()).and("lastModified").is(existing.getLastModified()));
+    }
+
+    private Update replacement(Order record) {
+        return Update.fromDBObject(bulk.replacement(record, Collections.emptySet()));
+    }
+
+    /**
+     * Remove an order, reading what its stock, rollups and events need.
+     *
+     * @return the removed order, or null if there was none to remove.
+     */
+    private Order remove(String id) {
+        if (id == null) {
+            return null;
+        }
+        return template.findAndRemove(SOLD.applyTo(new Query(Criteria.where("id").is(id))), Order.class);
+    }
+
+    /**
+     * Turn the items and buyer sent with an order into the lines and buyer name stored with it. Items are
+     * priced from the catalog; an update without items or without a buyer keeps those of the existing order,
+     * so the prices an order was placed at never change.
+     */
+    private void snapshot(Order record, Order existing, OrderPricer.Prices prices, Map<String, User> buyers) {
+        if (record.getOrderItemList() == null && existing != null) {
+            record.setLines(existing.getLines())
+                    .setCost(existing.getCost())
+                    .setShippingFee(existing.getShippingFee());
+        } else {
+            pricer.price(record, prices);
+            List<OrderLine> lines = new ArrayList<>(record.getOrderItemList().size());
+            for (OrderItem item : record.getOrderItemList()) {
+                lines.add(new OrderLine()
+                        .setProductId(item.getProduct().getId())
+                        .setCategoryId(item.getProduct().getCategoryId())
+                        .setName(item.getProduct().getName())
+                        .setUnitPrice(item.getProduct().getUnitPrice())
+                        .setQuantity((int) item.getQuantity())
+                        .setCost(item.getCost()));
+            }
+            record.setLines(lines);
+        }
+
+        User buyer = record.getBuyer();
+        if (buyer == null && existing != null) {
+            record.setBuyerId(existing.getBuyerId()).setBuyerName(existing.getBuyerName());
+        } else if (buyer != null && buyer.getId() != null) {
+            User known = buyers.get(buyer.getId());
+            record.setBuyerId(buyer.getId()).setBuyerName(displayName(known != null ? known : buyer));
+        }
+    }
+
+    /**
+     * Reserve the units of every priced item whose product tracks its stock, beyond those the existing order
+     * already holds.
+     */
+    private Reservation reserve(Order record, Order existing) {
+        if (record.getOrderItemList() == null) {
+            // The lines of the existing order were kept.
+            return Reservation.NONE;
+        }
+        Map<String, Long> held = quantities(existing);
+        Map<String, Long> quantities = new LinkedHashMap<>();
+        for (OrderItem item : record.getOrderItemList()) {
+            Product product = item.getProduct();
+            if (product.getStock() != null) {
+                quantities.merge(product.getId(), (long) item.getQuantity(), Long::sum);
+            }
+        }
+        quantities.replaceAll((productId, units) -> units - held.getOrDefault(productId, 0L));
+        quantities.values().removeIf(units -> units <= 0);
+        return stock.reserve(quantities);
+    }
+
+    /**
+     * Return to stock the units an order held that its saved version no longer does. A delivered order that is
+     * deleted keeps them, as they have left the shop.
+     *
+     * @param before The order before the write, or null.
+     * @param after  The saved order, or null if it was deleted.
+     */
+    private void restock(Order before, Order after) {
+        if (before == null || after == null && before.isDeliveredStatus()) {
+            return;
+        }
+        Map<String, Long> released = quantities(before);
+        quantities(after).forEach((productId, units) -> released.merge(productId, -units, Long::sum));
+        released.values().removeIf(units -> units <= 0);
+        stock.restock(released);
+    }
+
+    /**
+     * @return the units of every product on the lines of the order, none if it is null.
+     */
+    private static Map<String, Long> quantities(Order order) {
+        Map<String, Long> quantities = new LinkedHashMap<>();
+        if (order != null && order.getLines() != null) {
+            for (OrderLine line : order.getLines()) {
+                if (line != null && line.getProductId() != null) {
+                    quantities.merge(line.getProductId(), (long) line.getQuantity(), Long::sum);
+                }
+            }
+        }
+        return quantities;
+    }
+
+    /**
+     * Read the names of the buyers of the given orders in a single query.
+     */
+    private Map<String, User> buyers(List<Order> records) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (Order record : records) {
+            if (record.getBuyer() != null && record.getBuyer().getId() != null) {
+                ids.add(record.getBuyer().getId());
+            }
+        }
+        Map<String, User> buyers = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (User user : users.findByIds(new ArrayList<>(ids), Projection.of("firstName,lastName")).getItems()) {
+                buyers.put(user.getId(), user);
+            }
+        }
+        return buyers;
+    }
+
+    private static String displayName(User user) {
+        String first = user.getFirstName() == null ? "" : user.getFirstName().trim();
+        String last = user.getLastName() == null ? "" : user.getLastName().trim();
+        String name = (first + " " + last).trim();
+        return name.isEmpty() ? null : name;
+    }
+
+    /**
+     * The records whose write succeeded with the given status.
+     */
+    private static List<Order> written(List<Order> records, List<BulkItemResult> results, BulkItemResult.Status status) {
+        List<Order> written = new ArrayList<>(records.size());
+        for (BulkItemResult result : results) {
+            if (result.getStatus() == status) {
+                written.add(records.get(result.getIndex()));
+            }
+        }
+        return written;
+    }
+
+    private List<Order> newestByBuyer(String buyerId, int limit) {
+        Query query = new Query(Criteria.where("buyerId").is(buyerId))
+                .with(new Sort(Sort.Direction.DESC, "placedOn", "id"))
+                .limit(limit);
+        return template.find(SUMMARY.applyTo(query), Order.class);
+    }
+
+    /**
+     * Drop the cached recent orders of the buyers of orders written in bulk, rather than replaying each write.
+     */
+    private void invalidateRecent(List<Order> orders) {
+        Set<String> buyerIds = new LinkedHashSet<>();
+        for (Order order : orders) {
+            if (order != null && order.getBuyerId() != null) {
+                buyerIds.add(order.getBuyerId());
+            }
+        }
+        for (String buyerId : buyerIds) {
+            recent.invalidate(buyerId);
+        }
+    }
+
+    private static String[] cursorKeys(Order order) {
+        return new String[]{order.getPlacedOn() == null ? "" : Long.toString(order.getPlacedOn().getTime()), order.getId()};
+    }
+
+    private static Criteria filter(String buyerId, Date placedAfter, Date placedBefore) {
+        List<Criteria> clauses = new ArrayList<>();
+        if (!buyerId.isEmpty()) {
+            clauses.add(Criteria.where("buyerId").is(buyerId));
+        }
+        if (placedAfter != null) {
+            clauses.add(Criteria.where("placedOn").gt(placedAfter));
+        }
+        if (placedBefore != null) {
+            clauses.add(Criteria.where("placedOn").lt(placedBefore));
+        }
+        return Filters.allOf(clauses);
     }
-}
\ No newline at end of file
+}
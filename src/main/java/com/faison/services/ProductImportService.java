@@ -0,0 +1,140 @@
+package com.faison.services;
+
+import com.faison.imports.CsvRows;
+import com.faison.imports.ImportProgress;
+import com.faison.imports.ProductRows;
+import com.faison.imports.XlsxRows;
+import com.faison.models.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.Local;
+import javax.ejb.Stateless;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports {@link Product} catalogs from {@code .xlsx} or {@code .csv} spreadsheets in the background.
+ * <p>
+ * The upload is spooled to a temporary file and read row by row, and products are written in bulk batches as
+ * they are read, so the heap needed does not depend on the size of the file. Imports run one at a time; their
+ * progress can be polled while they run and for an hour after they finish.
+ */
+@Stateless
+@Component
+@Local
+public class ProductImportService {
+
+    private static final long KEEP_FINISHED_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryTreeService categoryTree;
+
+    @Value("${shop.import.batch-size:1000}")
+    private int batchSize;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "product-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, ImportProgress> imports = new ConcurrentHashMap<>();
+
+    public ProductImportService() {
+    }
+
+    /**
+     * Queue the import of an uploaded spreadsheet. Files whose name ends in {@code .csv} are read as comma
+     * separated values, anything else as an {@code .xlsx} workbook.
+     *
+     * @param file The uploaded spreadsheet.
+     * @return the progress of the import, to be polled with {@link #progress(String)}.
+     * @throws IOException if the upload could not be spooled to disk.
+     */
+    public ImportProgress submit(MultipartFile file) throws IOException {
+        forgetFinished();
+        String fileName = file.getOriginalFilename() == null ? "" : file.getOriginalFilename();
+        boolean csv = fileName.toLowerCase().endsWith(".csv");
+        File spooled = File.createTempFile("product-import-", csv ? ".csv" : ".xlsx");
+        try {
+            file.transferTo(spooled);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooled.toPath());
+            throw e;
+        }
+
+        ImportProgress progress = new ImportProgress(UUID.randomUUID().toString(), fileName);
+        imports.put(progress.getId(), progress);
+        executor.execute(() -> run(progress, spooled, csv));
+        return progress;
+    }
+
+    /**
+     * @param id The id of an import.
+     * @return its progress, or null if there is no such import or it finished more than an hour ago.
+     */
+    public ImportProgress progress(String id) {
+        return imports.get(id);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ImportProgress progress, File file, boolean csv) {
+        progress.start();
+        ProductRows rows = new ProductRows(categoryTree.getTree(), progress, productService::createAll, batchSize);
+        try {
+            if (csv) {
+                try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+                    CsvRows.read(reader, rows);
+                }
+            } else {
+                XlsxRows.read(file, rows);
+            }
+            rows.flush();
+            progress.finish();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Import {} of {} failed", progress.getId(), progress.getFileName(), e);
+            progress.fail(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                log.warn("Could not delete {}", file, e);
+            }
+        }
+    }
+
+    private void forgetFinished() {
+        long cutoff = System.currentTimeMillis() - KEEP_FINISHED_MILLIS;
+        for (Iterator<ImportProgress> it = imports.values().iterator(); it.hasNext(); ) {
+            ImportProgress progress = it.next();
+            if (progress.isFinished() && progress.getFinishedOn().getTime() < cutoff) {
+                it.remove();
+            }
+        }
+    }
+}
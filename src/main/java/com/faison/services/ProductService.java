@@ -1,26 +1,119 @@
 package com.faison.services;
 
+import com.faison.index.Hits;
+import com.faison.index.ProductFacetIndex;
+import com.faison.index.ProductFacets;
+import com.faison.index.ProductIndex;
+import com.faison.index.ProductPriceIndex;
+import com.faison.index.ProductSuggester;
+import com.faison.index.ProductTextIndex;
+import com.faison.cache.CacheRegistry;
+import com.faison.cache.ReadThroughCache;
+import com.faison.cache.ResponseCache;
 import com.faison.models.Product;
+import com.faison.paging.Cursor;
+import com.faison.paging.CursorPage;
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.BulkWriter;
+import com.faison.repositories.CursorTemplate;
+import com.faison.repositories.ProductCriteria;
 import com.faison.repositories.ProductRepository;
+import com.faison.repositories.Projection;
+import com.faison.stock.StockLedger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
 
 @Stateless
 @Component
 @Local
-public class ProductService {
+public class ProductService implements IService<Product> {
+
+    /**
+     * The stock is only changed by reservations and {@link #setStock(String, Integer)}, with {@code $inc} and
+     * {@code $set}; replacing a product leaves it as stored.
+     */
+    private static final Set<String> KEEP_STOCK = Collections.singleton("stock");
+
+    private static final int EXPORT_BATCH = 500;
 
     @Autowired
     private ProductRepository repository;
 
+    @Autowired
+    private BulkWriter bulk;
+
+    @Autowired
+    private CursorTemplate cursors;
+
+    @Autowired
+    private CacheRegistry caches;
+
+    @Autowired
+    private ResponseCache responses;
+
+    @Value("${shop.cache.products.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${shop.cache.products.ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    private ReadThroughCache<Product> cache;
+
+    @Autowired
+    private CategoryTreeService categoryTree;
+
+    @Autowired
+    private ProductTextIndex textIndex;
+
+    @Autowired
+    private ProductPriceIndex priceIndex;
+
+    @Autowired
+    private ProductFacetIndex facetIndex;
+
+    @Autowired
+    private ProductSuggester suggester;
+
+    @Autowired
+    private List<ProductIndex> indexes;
+
+    @Autowired
+    private StockLedger stock;
+
+    @Autowired
+    private MongoTemplate template;
+
     public ProductService() {
     }
 
+    @PostConstruct
+    public void createCache() {
+        cache = caches.create("products", cacheMaxSize, cacheTtlSeconds);
+        stock.onChange(id -> {
+            cache.invalidate(id);
+            responses.invalidate(ResponseCache.PRODUCTS);
+        });
+    }
+
     /**
      * Check for the existence of a {@link Product} with given id.
      *
@@ -45,18 +138,47 @@ public class ProductService {
             return null;
         }
         record.setId(null);
-        return repository.save(record);
+        record.setLastModified(new Date());
+        Product saved = indexed(repository.save(record));
+        responses.invalidate(ResponseCache.PRODUCTS);
+        return saved;
     }
 
     /**
-     * Find the {@link Product} with the given id.
+     * Find the {@link Product} with the given id, from the cache if it was read recently.
      *
      * @param id The id to be searched for.
      * @return {@link Product}
-     * the record if found, and null otherwise.
+     * the record if found, and null otherwise. It may be the cached instance shared with other callers, so it
+     * must not be modified.
      */
     public Product findById(String id) {
-        return repository.findOne(id);
+        if (id == null) {
+            return null;
+        }
+        return cache.get(id, repository::findOne);
+    }
+
+    /**
+     * Find when the {@link Product} with the given id was last written, from the cache if it was read recently.
+     *
+     * @param id The id to be searched for.
+     * @return the time of the last write, or null if the record does not exist or has never been stamped.
+     */
+    public Date lastModified(String id) {
+        Product record = findById(id);
+        return record == null ? null : record.getLastModified();
+    }
+
+    /**
+     * Find the {@link Product} with the given ids, in a single query.
+     *
+     * @param ids        The ids to be searched for.
+     * @param projection The properties to read.
+     * @return the records found, in the order of the ids, and the ids for which no record exists.
+     */
+    public BatchResult<Product> findByIds(List<String> ids, Projection projection) {
+        return BatchResult.of(ids, cursors.find(Product.class, ids, projection), Product::getId);
     }
 
     /**
@@ -70,13 +192,78 @@ public class ProductService {
     }
 
     /**
-     * Return all {@link Product} in pages, with similar names.
+     * Return all {@link Product} matching the given criteria in pages, using a single query.
+     * Searches on text alone are ranked and served from the {@link ProductTextIndex}, and searches on price alone
+     * are served from the {@link ProductPriceIndex}. Searches combining text with other filters match text with
+     * the text index and apply the rest with the {@link ProductFacetIndex}, so every search matches the same
+     * products for the same text and only the page found is read from the database.
      *
-     * @param pageable The page number and size to be returned.
+     * @param criteria   The filters to combine.
+     * @param pageable   The page number and size to be returned.
+     * @param projection The properties to read.
      * @return the given page of records.
      */
+    public Page<Product> search(ProductCriteria criteria, Pageable pageable, Projection projection) {
+        expandCategory(criteria);
+        if (criteria.isTextOnly()) {
+            return findByText(criteria.getName(), criteria.getDescription(), criteria.getText(), pageable, projection);
+        }
+        if (criteria.isPriceOnly()) {
+            return findByPrice(criteria.getUnitPriceEquals(), criteria.getUnitPriceGreaterThan(),
+                    criteria.getUnitPriceLessThan(), pageable, projection);
+        }
+        if (criteria.hasText()) {
+            matchText(criteria);
+            return load(facetIndex.find(criteria, pageable.getOffset(), pageable.getPageSize()), pageable, projection);
+        }
+        return repository.search(criteria, pageable, projection);
+    }
+
+    /**
+     * Count the {@link Product} matching the given criteria per category and per price bucket, in one scan of
+     * the in-memory facet columns.
+     *
+     * @param criteria The filters of the search.
+     * @param bounds   The ascending price bucket bounds, or null for five equally wide buckets over the catalog.
+     * @return the facet counts.
+     */
+    public ProductFacets facets(ProductCriteria criteria, double[] bounds) {
+        expandCategory(criteria);
+        matchText(criteria);
+        if (bounds == null) {
+            bounds = priceIndex.histogram(5).getBounds();
+        }
+        return facetIndex.count(criteria, bounds);
+    }
+
+    /**
+     * Return the most popular {@link Product} names starting with the given prefix, for typeahead.
+     *
+     * @param prefix The text typed so far.
+     * @param limit  The maximum number of names to return.
+     * @return the names, most popular first.
+     */
+    public List<ProductSuggester.Suggestion> suggest(String prefix, int limit) {
+        return suggester.suggest(prefix, limit);
+    }
+
+    /**
+     * Count a view of the {@link Product} towards the popularity of its name in suggestions.
+     *
+     * @param id The id of the viewed product.
+     */
+    public void recordView(String id) {
+        suggester.recordView(id);
+    }
+
+    /**
+     * Return all {@link Product} in pages, whose names contain all the words of the given name.
+     *
+     * @param pageable The page number and size to be returned.
+     * @return the given page of records, best matches first.
+     */
     public Page<Product> findByNameLike(String name, Pageable pageable) {
-        return repository.findByNameLike(name, pageable);
+        return findByText(name, null, null, pageable, Projection.ALL);
     }
 
     /**
@@ -90,53 +277,110 @@ public class ProductService {
     }
 
     /**
-     * Return all {@link Product} with similar descriptions, in pages.
+     * Return all {@link Product} in pages, that belong to the given category or any of its descendants.
+     * The whole subtree is resolved in memory and matched with a single query.
      *
      * @param pageable The page number and size to be returned.
      * @return the given page of records.
      */
+    public Page<Product> findByCategorySubtree(String categoryId, Pageable pageable) {
+        return repository.findByCategoryIdIn(Arrays.asList(categoryTree.subtreeIds(categoryId)), pageable);
+    }
+
+    /**
+     * Return all {@link Product} whose descriptions contain all the words of the given description, in pages.
+     *
+     * @param pageable The page number and size to be returned.
+     * @return the given page of records, best matches first.
+     */
     public Page<Product> findByDescriptionLike(String description, Pageable pageable) {
-        return repository.findByDescriptionLike(description, pageable);
+        return findByText(null, description, null, pageable, Projection.ALL);
     }
 
     /**
      * Return all {@link Product} with the given unitPrice, in pages.
      *
      * @param pageable The page number and size to be returned.
-     * @return the given page of records.
+     * @return the given page of records, cheapest first.
      */
     public Page<Product> findByUnitPrice(Double unitPrice, Pageable pageable) {
-        return repository.findByUnitPrice(unitPrice, pageable);
+        return findByPrice(unitPrice, null, null, pageable, Projection.ALL);
     }
 
     /**
      * Return all {@link Product} in pages, with their unitPrice less than the specified.
      *
      * @param pageable The page number and size to be returned.
-     * @return the given page of records.
+     * @return the given page of records, cheapest first.
      */
     public Page<Product> findByUnitPriceLessThan(Double unitPrice, Pageable pageable) {
-        return repository.findByUnitPriceLessThan(unitPrice, pageable);
+        return findByPrice(null, null, unitPrice, pageable, Projection.ALL);
     }
 
     /**
      * Return all {@link Product} in pages, whose unitPrice is greater than the specified value.
      *
      * @param pageable The page number and size to be returned.
-     * @return the given page of records.
+     * @return the given page of records, cheapest first.
      */
     public Page<Product> findByUnitPriceGreaterThan(Double unitPrice, Pageable pageable) {
-        return repository.findByUnitPriceGreaterThan(unitPrice, pageable);
+        return findByPrice(null, unitPrice, null, pageable, Projection.ALL);
     }
 
     /**
      * Return all {@link Product} in pages, whose unitPrice falls between the specified values.
      *
      * @param pageable The page number and size to be returned.
-     * @return the given page of records.
+     * @return the given page of records, cheapest first.
      */
     public Page<Product> findByUnitPriceBetween(Double from, Double to, Pageable pageable) {
-        return repository.findByUnitPriceBetween(from, to, pageable);
+        return findByPrice(null, from, to, pageable, Projection.ALL);
+    }
+
+    /**
+     * Count the {@link Product} in each of the given number of equally wide price buckets.
+     *
+     * @param buckets The number of buckets.
+     * @return the bucket bounds and counts.
+     */
+    public ProductPriceIndex.PriceHistogram priceHistogram(int buckets) {
+        return priceIndex.histogram(buckets);
+    }
+
+    /**
+     * Return the {@link Product} matching the given criteria that come after the given id, in id order.
+     *
+     * @param afterId    The id of the last record of the previous page, or null for the first page.
+     * @param size       The maximum number of records to return.
+     * @param projection The properties to read.
+     * @return the page of records, with the cursor of the next page.
+     */
+    public CursorPage<Product> scroll(ProductCriteria criteria, String afterId, int size, Projection projection) {
+        expandCategory(criteria);
+        if (!criteria.hasText()) {
+            return cursors.scroll(Product.class, criteria.toCriteria(), afterId, size, Product::getId, projection);
+        }
+        matchText(criteria);
+        String[] ids = facetIndex.after(criteria, afterId, size + 1);
+        // One id past the page tells whether there is a next page, as it does for a database scroll.
+        String next = ids.length > size ? Cursor.encode(ids[size - 1]) : null;
+        List<String> page = Arrays.asList(ids).subList(0, Math.min(ids.length, size));
+        return new CursorPage<>(cursors.findInOrder(Product.class, page, Product::getId, projection), next);
+    }
+
+    /**
+     * Open a cursor over every {@link Product} matching the criteria, in id order, for exports.
+     *
+     * @param criteria The search filters.
+     * @return the open cursor, to be closed by the caller.
+     */
+    public CloseableIterator<Product> stream(ProductCriteria criteria) {
+        expandCategory(criteria);
+        if (!criteria.hasText()) {
+            return cursors.stream(Product.class, criteria.toCriteria());
+        }
+        matchText(criteria);
+        return cursors.stream(Product.class, facetIndex.ids(criteria), Product::getId, EXPORT_BATCH);
     }
 
     /**
@@ -148,11 +392,42 @@ public class ProductService {
      * the saved record, if update was successful, or null if the update was unsuccessful.
      */
     public Product updateById(String id, Product record) {
-        if (!exists(id)) {
+        if (id == null) {
             return null;
         }
         record.setId(id);
-        return repository.save(record);
+        record.setLastModified(new Date());
+        Product saved = template.findAndModify(new Query(Criteria.where("id").is(id)),
+                Update.fromDBObject(bulk.replacement(record, KEEP_STOCK)),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (saved == null) {
+            return null;
+        }
+        indexed(saved);
+        cache.invalidate(id);
+        responses.invalidate(ResponseCache.PRODUCTS);
+        return saved;
+    }
+
+    /**
+     * Set the stock of the {@link Product} with the specified id. Units leased by this instance are dropped, so
+     * the new stock counts only the units actually on hand; leases held by other instances are not.
+     *
+     * @param id    The id of the record.
+     * @param units The units on hand, or null to stop tracking the stock of the product.
+     * @return true if the record exists.
+     * @see StockLedger
+     */
+    public boolean setStock(String id, Integer units) {
+        if (id == null) {
+            return false;
+        }
+        stock.reset(id);
+        boolean found = template.updateFirst(new Query(Criteria.where("id").is(id)),
+                new Update().set("stock", units).set("lastModified", new Date()), Product.class).getN() == 1;
+        cache.invalidate(id);
+        responses.invalidate(ResponseCache.PRODUCTS);
+        return found;
     }
 
     /**
@@ -162,5 +437,115 @@ public class ProductService {
      */
     public void deleteById(String id) {
         repository.delete(id);
+        cache.invalidate(id);
+        for (ProductIndex index : indexes) {
+            index.remove(id);
+        }
+        responses.invalidate(ResponseCache.PRODUCTS);
+    }
+
+    /**
+     * Create and save new {@link Product} records in one bulk write.
+     *
+     * @param records The records to be persisted.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> createAll(List<Product> records) {
+        Timestamps.touch(records, Product::setLastModified);
+        List<BulkItemResult> results = bulk.insert(Product.class, records, Product::getId, Product::setId);
+        indexWritten(records, results);
+        responses.invalidate(ResponseCache.PRODUCTS);
+        return results;
+    }
+
+    /**
+     * Replace existing {@link Product} records, matched by id, in one bulk write.
+     *
+     * @param records The records to be saved, each with the id of the record it replaces.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> updateAll(List<Product> records) {
+        Timestamps.touch(records, Product::setLastModified);
+        List<BulkItemResult> results = bulk.replaceExcept(Product.class, records, Product::getId, KEEP_STOCK);
+        for (Product record : records) {
+            if (record.getId() != null) {
+                cache.invalidate(record.getId());
+            }
+        }
+        indexWritten(records, results);
+        responses.invalidate(ResponseCache.PRODUCTS);
+        return results;
+    }
+
+    /**
+     * Delete the {@link Product} records with the specified ids in one write.
+     *
+     * @param ids The ids of the records to be deleted.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    public List<BulkItemResult> deleteAll(List<String> ids) {
+        List<BulkItemResult> results = bulk.delete(Product.class, ids, Product::getId);
+        for (String id : ids) {
+            cache.invalidate(id);
+            for (ProductIndex index : indexes) {
+                index.remove(id);
+            }
+        }
+        responses.invalidate(ResponseCache.PRODUCTS);
+        return results;
+    }
+
+    private void expandCategory(ProductCriteria criteria) {
+        if (criteria.isIncludeSubcategories() && criteria.getCategoryId() != null) {
+            criteria.setCategoryIds(categoryTree.subtreeIds(criteria.getCategoryId()));
+        }
+    }
+
+    /**
+     * Resolve the free text filters to the products the text index matches, each on its own, so they can still
+     * be combined with matchAny.
+     */
+    private void matchText(ProductCriteria criteria) {
+        criteria.setTextMatches(textIndex.matching(criteria.getName(), null, null),
+                textIndex.matching(null, criteria.getDescription(), null),
+                textIndex.matching(null, null, criteria.getText()));
+    }
+
+    private void indexWritten(List<Product> records, List<BulkItemResult> results) {
+        for (int i = 0; i < records.size(); i++) {
+            BulkItemResult.Status status = results.get(i).getStatus();
+            if (status == BulkItemResult.Status.CREATED || status == BulkItemResult.Status.UPDATED) {
+                indexed(records.get(i));
+            }
+        }
+    }
+
+    private Product indexed(Product saved) {
+        for (ProductIndex index : indexes) {
+            index.put(saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Rank products with the text index, then load only the requested page of them.
+     */
+    private Page<Product> findByText(String name, String description, String text, Pageable pageable, Projection projection) {
+        return load(textIndex.search(name, description, text, pageable.getOffset(), pageable.getPageSize()), pageable, projection);
+    }
+
+    /**
+     * Find products by price with the price index, then load only the requested page of them.
+     */
+    private Page<Product> findByPrice(Double equals, Double greaterThan, Double lessThan, Pageable pageable, Projection projection) {
+        return load(priceIndex.find(equals, greaterThan, lessThan, pageable.getOffset(), pageable.getPageSize()), pageable, projection);
+    }
+
+    /**
+     * Load the products of an index window in one query, keeping the order of the index.
+     */
+    private Page<Product> load(Hits hits, Pageable pageable, Projection projection) {
+        List<Product> content = cursors.findInOrder(Product.class, Arrays.asList(hits.getIds()), Product::getId, projection);
+        return new PageImpl<>(content, pageable, hits.getTotal());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package com.faison.services;
+
+import com.faison.rollups.BackfillProgress;
+import com.faison.rollups.Dimension;
+import com.faison.rollups.Granularity;
+import com.faison.rollups.RollupBackfill;
+import com.faison.rollups.SalesRollup;
+import com.faison.rollups.SalesRollups;
+import com.faison.rollups.SalesTotal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.ejb.Local;
+import javax.ejb.Stateless;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reports sales from the pre-aggregated {@link SalesRollups} rather than from the orders.
+ */
+@Stateless
+@Component
+@Local
+public class SalesReportService {
+
+    @Autowired
+    private SalesRollups rollups;
+
+    @Autowired
+    private RollupBackfill backfill;
+
+    public SalesReportService() {
+    }
+
+    /**
+     * Return the sales of one product, category or buyer bucket by bucket.
+     *
+     * @see SalesRollups#series(Dimension, String, Granularity, Date, Date)
+     */
+    public List<SalesRollup> series(Dimension dimension, String key, Granularity granularity, Date from, Date to) {
+        return rollups.series(dimension, key, granularity, from, to);
+    }
+
+    /**
+     * Return the products, categories or buyers with the most revenue in a range of time.
+     *
+     * @see SalesRollups#top(Dimension, Granularity, Date, Date, int)
+     */
+    public List<SalesTotal> top(Dimension dimension, Granularity granularity, Date from, Date to, int limit) {
+        return rollups.top(dimension, granularity, from, to, limit);
+    }
+
+    /**
+     * Start rebuilding the rollups of a range of days from the orders.
+     *
+     * @see RollupBackfill#submit(Date, Date)
+     */
+    public BackfillProgress backfill(Date from, Date to) {
+        return backfill.submit(from, to);
+    }
+
+    /**
+     * @return the progress of the last backfill, or null if none was started.
+     */
+    public BackfillProgress backfillProgress() {
+        return backfill.progress();
+    }
+}
@@ -1,6 +1,10 @@
 package com.faison.services;
 
 import com.faison.models.Session;
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.BulkWriter;
+import com.faison.repositories.CursorTemplate;
+import com.faison.repositories.Projection;
 import com.faison.repositories.SessionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -9,6 +13,7 @@ import org.springframework.stereotype.Component;
 
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import java.util.List;
 
 /**
  * Implementation of {@link SessionService}
@@ -21,6 +26,12 @@ public class SessionService implements IService<Session> {
     @Autowired
     private SessionRepository repository;
 
+    @Autowired
+    private BulkWriter bulk;
+
+    @Autowired
+    private CursorTemplate cursors;
+
     public SessionService() {
     }
 
@@ -62,6 +73,17 @@ public class SessionService implements IService<Session> {
         return repository.findOne(id);
     }
 
+    /**
+     * Find the {@link Session} with the given ids, in a single query.
+     *
+     * @param ids        The ids to be searched for.
+     * @param projection The properties to read.
+     * @return the records found, in the order of the ids, and the ids for which no record exists.
+     */
+    public BatchResult<Session> findByIds(List<String> ids, Projection projection) {
+        return BatchResult.of(ids, cursors.find(Session.class, ids, projection), Session::getId);
+    }
+
     /**
      * Return all available {@link Session} in pages.
      *
@@ -112,4 +134,34 @@ public class SessionService implements IService<Session> {
     public void deleteById(String id) {
         repository.delete(id);
     }
+
+    /**
+     * Create and save new {@link Session} records in one bulk write.
+     *
+     * @param records The records to be persisted.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> createAll(List<Session> records) {
+        return bulk.insert(Session.class, records, Session::getId, Session::setId);
+    }
+
+    /**
+     * Replace existing {@link Session} records, matched by id, in one bulk write.
+     *
+     * @param records The records to be saved, each with the id of the record it replaces.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> updateAll(List<Session> records) {
+        return bulk.replace(Session.class, records, Session::getId);
+    }
+
+    /**
+     * Delete the {@link Session} records with the specified ids in one write.
+     *
+     * @param ids The ids of the records to be deleted.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    public List<BulkItemResult> deleteAll(List<String> ids) {
+        return bulk.delete(Session.class, ids, Session::getId);
+    }
 }
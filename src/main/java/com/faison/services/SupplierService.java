@@ -1,14 +1,24 @@
 package com.faison.services;
 
 import com.faison.models.Supplier;
+import com.faison.paging.CursorPage;
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.BulkWriter;
+import com.faison.repositories.CursorTemplate;
+import com.faison.repositories.Filters;
+import com.faison.repositories.Projection;
 import com.faison.repositories.SupplierRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Component;
 
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
 @Stateless
 @Component
@@ -18,6 +28,12 @@ public class SupplierService implements IService<Supplier> {
     @Autowired
     private SupplierRepository repository;
 
+    @Autowired
+    private BulkWriter bulk;
+
+    @Autowired
+    private CursorTemplate cursors;
+
     public SupplierService() {
     }
 
@@ -45,6 +61,7 @@ public class SupplierService implements IService<Supplier> {
             return null;
         }
         record.setId(null);
+        record.setLastModified(new Date());
         return repository.save(record);
     }
 
@@ -59,6 +76,31 @@ public class SupplierService implements IService<Supplier> {
         return repository.findOne(id);
     }
 
+    /**
+     * Find when the {@link Supplier} with the given id was last written, reading only that property.
+     *
+     * @param id The id to be searched for.
+     * @return the time of the last write, or null if the record does not exist or has never been stamped.
+     */
+    public Date lastModified(String id) {
+        if (id == null) {
+            return null;
+        }
+        Supplier record = cursors.findOne(Supplier.class, id, Projection.of("lastModified"));
+        return record == null ? null : record.getLastModified();
+    }
+
+    /**
+     * Find the {@link Supplier} with the given ids, in a single query.
+     *
+     * @param ids        The ids to be searched for.
+     * @param projection The properties to read.
+     * @return the records found, in the order of the ids, and the ids for which no record exists.
+     */
+    public BatchResult<Supplier> findByIds(List<String> ids, Projection projection) {
+        return BatchResult.of(ids, cursors.find(Supplier.class, ids, projection), Supplier::getId);
+    }
+
     /**
      * Return all available {@link Supplier} in pages.
      *
@@ -81,6 +123,28 @@ public class SupplierService implements IService<Supplier> {
         return repository.findByPhoneNumberLike(phoneNumber, pageable);
     }
 
+    /**
+     * Return the {@link Supplier} matching the given filters that come after the given id, in id order.
+     *
+     * @param afterId    The id of the last record of the previous page, or null for the first page.
+     * @param size       The maximum number of records to return.
+     * @param projection The properties to read.
+     * @return the page of records, with the cursor of the next page.
+     */
+    public CursorPage<Supplier> scroll(String name, String email, String phoneNumber, String afterId, int size, Projection projection) {
+        List<Criteria> clauses = new ArrayList<>();
+        if (!name.isEmpty()) {
+            clauses.add(Filters.like("name", name));
+        }
+        if (!email.isEmpty()) {
+            clauses.add(Filters.like("email", email));
+        }
+        if (!phoneNumber.isEmpty()) {
+            clauses.add(Filters.like("phoneNumber", phoneNumber));
+        }
+        return cursors.scroll(Supplier.class, Filters.allOf(clauses), afterId, size, Supplier::getId, projection);
+    }
+
     /**
      * Update an existing {@link Supplier} with the specified id.
      *
@@ -94,6 +158,7 @@ public class SupplierService implements IService<Supplier> {
             return null;
         }
         record.setId(id);
+        record.setLastModified(new Date());
         return repository.save(record);
     }
 
@@ -105,4 +170,36 @@ public class SupplierService implements IService<Supplier> {
     public void deleteById(String id) {
         repository.delete(id);
     }
+
+    /**
+     * Create and save new {@link Supplier} records in one bulk write.
+     *
+     * @param records The records to be persisted.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> createAll(List<Supplier> records) {
+        Timestamps.touch(records, Supplier::setLastModified);
+        return bulk.insert(Supplier.class, records, Supplier::getId, Supplier::setId);
+    }
+
+    /**
+     * Replace existing {@link Supplier} records, matched by id, in one bulk write.
+     *
+     * @param records The records to be saved, each with the id of the record it replaces.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> updateAll(List<Supplier> records) {
+        Timestamps.touch(records, Supplier::setLastModified);
+        return bulk.replace(Supplier.class, records, Supplier::getId);
+    }
+
+    /**
+     * Delete the {@link Supplier} records with the specified ids in one write.
+     *
+     * @param ids The ids of the records to be deleted.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    public List<BulkItemResult> deleteAll(List<String> ids) {
+        return bulk.delete(Supplier.class, ids, Supplier::getId);
+    }
 }
@@ -0,0 +1,29 @@
+package com.faison.services;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Stamps records with the time they are written, for the services that save them in bulk.
+ */
+final class Timestamps {
+
+    private Timestamps() {
+    }
+
+    /**
+     * Set the same last write time on every record, skipping null ones.
+     *
+     * @param records         The records about to be written.
+     * @param setLastModified Sets the last write time of a record.
+     */
+    static <T> void touch(List<T> records, BiConsumer<T, Date> setLastModified) {
+        Date now = new Date();
+        for (T record : records) {
+            if (record != null) {
+                setLastModified.accept(record, now);
+            }
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package com.faison.services;
 
 import com.faison.models.User;
+import com.faison.paging.CursorPage;
+import com.faison.repositories.BulkItemResult;
+import com.faison.repositories.BulkWriter;
+import com.faison.repositories.CursorTemplate;
+import com.faison.repositories.Filters;
+import com.faison.repositories.Projection;
 import com.faison.repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Component;
 
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Implementation of {@link UserService}
@@ -21,6 +30,12 @@ public class UserService implements IService<User> {
     @Autowired
     private UserRepository repository;
 
+    @Autowired
+    private BulkWriter bulk;
+
+    @Autowired
+    private CursorTemplate cursors;
+
     public UserService() {
     }
 
@@ -72,6 +87,17 @@ public class UserService implements IService<User> {
         return repository.findOne(id);
     }
 
+    /**
+     * Find the records with the given ids, in a single query.
+     *
+     * @param ids        The ids to be searched for.
+     * @param projection The properties to read.
+     * @return the records found, in the order of the ids, and the ids for which no record exists.
+     */
+    public BatchResult<User> findByIds(List<String> ids, Projection projection) {
+        return BatchResult.of(ids, cursors.find(User.class, ids, projection), User::getId);
+    }
+
     public User findbyEmailAndPassword(String email, String password) {
         User user = repository.findByEmail(email);
         if (user.getPassword().equals(password)) {
@@ -116,6 +142,25 @@ public class UserService implements IService<User> {
         return repository.findByEmailLike(email, pageable);
     }
 
+    /**
+     * Return the {@link User} matching the given filters that come after the given id, in id order.
+     *
+     * @param afterId    The id of the last record of the previous page, or null for the first page.
+     * @param size       The maximum number of records to return.
+     * @param projection The properties to read.
+     * @return the page of records, with the cursor of the next page.
+     */
+    public CursorPage<User> scroll(String name, String email, String afterId, int size, Projection projection) {
+        List<Criteria> clauses = new ArrayList<>();
+        if (!name.isEmpty()) {
+            clauses.add(new Criteria().orOperator(Filters.like("firstName", name), Filters.like("lastName", name)));
+        }
+        if (!email.isEmpty()) {
+            clauses.add(Filters.like("email", email));
+        }
+        return cursors.scroll(User.class, Filters.allOf(clauses), afterId, size, User::getId, projection);
+    }
+
     /**
      * Update an existing record with the specified id.
      *
@@ -139,6 +184,36 @@ public class UserService implements IService<User> {
     public void deleteById(String id) {
         repository.delete(id);
     }
+
+    /**
+     * Create and save new records in one bulk write.
+     *
+     * @param records The records to be persisted.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> createAll(List<User> records) {
+        return bulk.insert(User.class, records, User::getId, User::setId);
+    }
+
+    /**
+     * Replace existing records, matched by id, in one bulk write.
+     *
+     * @param records The records to be saved, each with the id of the record it replaces.
+     * @return the outcome of every record, in the order of the records.
+     */
+    public List<BulkItemResult> updateAll(List<User> records) {
+        return bulk.replace(User.class, records, User::getId);
+    }
+
+    /**
+     * Delete the records with the specified ids in one write.
+     *
+     * @param ids The ids of the records to be deleted.
+     * @return the outcome of every id, in the order of the ids.
+     */
+    public List<BulkItemResult> deleteAll(List<String> ids) {
+        return bulk.delete(User.class, ids, User::getId);
+    }
 }
 
 
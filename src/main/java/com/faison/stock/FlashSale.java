@@ -0,0 +1,77 @@
+package com.faison.stock;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A timed sale of one product, whose stock is held in memory while it runs.
+ */
+public class FlashSale {
+
+    private final String productId;
+    private final Date startedOn = new Date();
+    private final Date endsOn;
+    private final AtomicLong nextRefill = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong soldOut = new AtomicLong();
+    private volatile long available;
+
+    public FlashSale(String productId, Date endsOn) {
+        this.productId = productId;
+        this.endsOn = endsOn;
+    }
+
+    /**
+     * Claim the next look at the database for stock, at most once per interval across all threads.
+     *
+     * @return true if the caller should refill now.
+     */
+    public boolean claimRefill(long now, long intervalMillis) {
+        long next = nextRefill.get();
+        return now >= next && nextRefill.compareAndSet(next, now + intervalMillis);
+    }
+
+    public void admitted() {
+        admitted.incrementAndGet();
+    }
+
+    public void soldOut() {
+        soldOut.incrementAndGet();
+    }
+
+    public boolean isOver(long now) {
+        return endsOn != null && now >= endsOn.getTime();
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public Date getStartedOn() {
+        return startedOn;
+    }
+
+    public Date getEndsOn() {
+        return endsOn;
+    }
+
+    /**
+     * @return the units held for the sale when this was last read.
+     */
+    public long getAvailable() {
+        return available;
+    }
+
+    public FlashSale setAvailable(long available) {
+        this.available = available;
+        return this;
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getSoldOut() {
+        return soldOut.get();
+    }
+}
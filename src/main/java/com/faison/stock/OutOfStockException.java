@@ -0,0 +1,24 @@
+package com.faison.stock;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when an order asks for more units of a product than are left.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class OutOfStockException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String productId;
+
+    public OutOfStockException(String productId, long quantity) {
+        super("Product " + productId + " does not have " + quantity + " units left.");
+        this.productId = productId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,32 @@
+package com.faison.stock;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Units of products held for one order. They stay taken once the order is saved; if it is not, they must be
+ * released.
+ */
+public final class Reservation {
+
+    public static final Reservation NONE = new Reservation(null, Collections.emptyMap());
+
+    private final StockLedger ledger;
+    private final Map<StockCounter, Long> quantities;
+    private boolean released;
+
+    Reservation(StockLedger ledger, Map<StockCounter, Long> quantities) {
+        this.ledger = ledger;
+        this.quantities = quantities;
+    }
+
+    /**
+     * Give the units back, once.
+     */
+    public synchronized void release() {
+        if (!released && ledger != null) {
+            released = true;
+            ledger.release(quantities);
+        }
+    }
+}
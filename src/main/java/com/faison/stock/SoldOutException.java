@@ -0,0 +1,13 @@
+package com.faison.stock;
+
+/**
+ * Thrown before an order is even priced when a product on flash sale has no units left.
+ */
+public class SoldOutException extends OutOfStockException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SoldOutException(String productId, long quantity) {
+        super(productId, quantity);
+    }
+}
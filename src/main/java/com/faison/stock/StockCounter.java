@@ -0,0 +1,85 @@
+package com.faison.stock;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The units of one product leased by this instance, spread over stripes so concurrent checkouts of the same
+ * product update different memory instead of contending on one counter. A reservation takes its units from a
+ * single stripe with a compare-and-set, starting from a random one, and only falls back to the lock of the
+ * counter when no stripe holds enough.
+ */
+final class StockCounter {
+
+    /**
+     * The distance between stripes in the array, so each one sits on its own cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final int stripes;
+    private final AtomicLongArray units;
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    StockCounter(int stripes) {
+        this.stripes = stripes;
+        this.units = new AtomicLongArray(stripes * PADDING);
+    }
+
+    /**
+     * Take units from a stripe holding enough of them, without locking.
+     *
+     * @return true if the units were taken.
+     */
+    boolean tryTake(long quantity) {
+        lastUsed = System.currentTimeMillis();
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        for (int i = 0; i < stripes; i++) {
+            int slot = ((start + i) % stripes) * PADDING;
+            long held = units.get(slot);
+            while (held >= quantity) {
+                if (units.compareAndSet(slot, held, held - quantity)) {
+                    return true;
+                }
+                held = units.get(slot);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Put units back into a random stripe.
+     */
+    void put(long quantity) {
+        if (quantity != 0) {
+            units.addAndGet(ThreadLocalRandom.current().nextInt(stripes) * PADDING, quantity);
+        }
+    }
+
+    /**
+     * Empty every stripe.
+     *
+     * @return the units they held.
+     */
+    long drain() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += units.getAndSet(i * PADDING, 0);
+        }
+        return total;
+    }
+
+    /**
+     * @return the units held, without taking them; a moving target while reservations run.
+     */
+    long sum() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += units.get(i * PADDING);
+        }
+        return total;
+    }
+
+    long lastUsed() {
+        return lastUsed;
+    }
+}
@@ -0,0 +1,312 @@
+package com.faison.stock;
+
+import com.faison.models.Product;
+import com.faison.repositories.CursorTemplate;
+import com.faison.repositories.Projection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reserves the stock of products for orders without overselling, and without making every checkout of a hot
+ * product wait on the lock of its document.
+ * <p>
+ * The {@code stock} of a product in the database holds the units no instance has leased yet. An instance leases
+ * units in chunks of {@code shop.stock.lease-size} with a {@code $inc} conditional on enough units being left,
+ * and keeps them in a striped {@link StockCounter}; reservations are then taken from the counter in memory, and
+ * only go back to the database when it runs dry. The database never goes below zero and no counter ever hands
+ * out more than it leased, so the product is never oversold.
+ * <p>
+ * Leases unused for {@code shop.stock.idle-seconds} and every lease held at shutdown are given back, except for
+ * {@link #pin(String) pinned} products, which lease all their stock at once. Units leased by an instance that
+ * dies are lost until the stock of the product is set again.
+ * <p>
+ * Every write of a stock also stamps the {@code lastModified} of the product, and is reported to the
+ * {@link #onChange(Consumer) listeners}, so copies of the product cached elsewhere can be dropped.
+ */
+@Component
+public class StockLedger {
+
+    private static final int LEASE_ATTEMPTS = 5;
+
+    private final Logger log = LoggerFactory.getLogger(StockLedger.class);
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Autowired
+    private CursorTemplate cursors;
+
+    @Value("${shop.stock.stripes:8}")
+    private int stripes;
+
+    @Value("${shop.stock.lease-size:50}")
+    private long leaseSize;
+
+    @Value("${shop.stock.idle-seconds:30}")
+    private long idleSeconds;
+
+    private final Map<String, StockCounter> counters = new ConcurrentHashMap<>();
+    private final Set<String> pinned = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService returner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stock-returner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        returner.scheduleWithFixedDelay(this::returnIdle, idleSeconds, idleSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Give every lease back to the database.
+     */
+    @PreDestroy
+    public void shutdown() {
+        returner.shutdownNow();
+        for (String productId : new ArrayList<>(counters.keySet())) {
+            giveBack(productId);
+        }
+    }
+
+    /**
+     * Be told of every product whose stock this ledger writes to the database.
+     *
+     * @param listener Receives the id of the product, after the write.
+     */
+    public void onChange(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Reserve units of several products, all or none.
+     *
+     * @param quantities The units wanted, by product id. Only products whose stock is tracked belong here.
+     * @return the reservation, to be released if the order is not saved.
+     * @throws OutOfStockException if a product does not have enough units left; nothing is then reserved.
+     */
+    public Reservation reserve(Map<String, Long> quantities) {
+        if (quantities.isEmpty()) {
+            return Reservation.NONE;
+        }
+        Map<StockCounter, Long> taken = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> wanted : quantities.entrySet()) {
+            StockCounter counter = counter(wanted.getKey());
+            if (!take(counter, wanted.getKey(), wanted.getValue())) {
+                release(taken);
+                throw new OutOfStockException(wanted.getKey(), wanted.getValue());
+            }
+            taken.merge(counter, wanted.getValue(), Long::sum);
+        }
+        return new Reservation(this, taken);
+    }
+
+    /**
+     * Return units of products held by saved orders to the database, when an order is reduced or deleted.
+     * Products that no longer track their stock are left alone.
+     *
+     * @param quantities The units to return, by product id.
+     */
+    public void restock(Map<String, Long> quantities) {
+        for (Map.Entry<String, Long> returned : quantities.entrySet()) {
+            if (returned.getValue() > 0) {
+                increment(returned.getKey(), returned.getValue());
+            }
+        }
+    }
+
+    /**
+     * Lease all the stock left of a product and keep it leased, so its reservations never wait on the database
+     * until it runs out.
+     *
+     * @param productId The id of the product.
+     * @return the units this instance now holds for it.
+     */
+    public long pin(String productId) {
+        pinned.add(productId);
+        refill(productId);
+        return available(productId);
+    }
+
+    /**
+     * Stop keeping the stock of a product leased, and give back what is left of it.
+     *
+     * @param productId The id of the product.
+     */
+    public void unpin(String productId) {
+        pinned.remove(productId);
+        giveBack(productId);
+    }
+
+    /**
+     * Lease whatever stock of a product is left in the database, such as units added or given back by other
+     * instances since it was pinned.
+     *
+     * @param productId The id of the product.
+     */
+    public void refill(String productId) {
+        StockCounter counter = counter(productId);
+        synchronized (counter) {
+            counter.put(lease(productId, 1, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * @param productId The id of the product.
+     * @return the units of the product this instance holds, read without locking.
+     */
+    public long available(String productId) {
+        StockCounter counter = counters.get(productId);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Forget the units this instance leased for a product, before its stock is set again.
+     *
+     * @param productId The id of the product.
+     */
+    public void reset(String productId) {
+        StockCounter counter = counters.remove(productId);
+        if (counter != null) {
+            synchronized (counter) {
+                counter.drain();
+            }
+        }
+    }
+
+    /**
+     * Put reserved units back into the counters they came from. Units of a counter that was reset since are
+     * dropped with it.
+     */
+    void release(Map<StockCounter, Long> quantities) {
+        for (Map.Entry<StockCounter, Long> entry : quantities.entrySet()) {
+            entry.getKey().put(entry.getValue());
+        }
+    }
+
+    private boolean take(StockCounter counter, String productId, long quantity) {
+        if (counter.tryTake(quantity)) {
+            return true;
+        }
+        synchronized (counter) {
+            if (counter.tryTake(quantity)) {
+                return true;
+            }
+            // No single stripe holds enough: pool the stripes, and lease the rest.
+            long held = counter.drain();
+            if (held >= quantity) {
+                counter.put(held - quantity);
+                return true;
+            }
+            long leased = lease(productId, quantity - held, leaseSize);
+            if (leased == 0) {
+                counter.put(held);
+                return false;
+            }
+            counter.put(held + leased - quantity);
+            return true;
+        }
+    }
+
+    /**
+     * Lease units from the database: as many as wanted if they are left, and at least the needed ones.
+     *
+     * @return the units leased, or 0 if fewer than needed are left.
+     */
+    private long lease(String productId, long needed, long wanted) {
+        for (int attempt = 0; attempt < LEASE_ATTEMPTS; attempt++) {
+            Product product = cursors.findOne(Product.class, productId, Projection.of("stock"));
+            if (product == null || product.getStock() == null || product.getStock() < needed) {
+                return 0;
+            }
+            long units = Math.min(product.getStock(), Math.max(needed, wanted));
+            Query query = new Query(Criteria.where("id").is(productId).and("stock").gte(units));
+            if (template.updateFirst(query, stockUpdate(-units), Product.class).getN() == 1) {
+                changed(productId);
+                return units;
+            }
+        }
+        return 0;
+    }
+
+    private void giveBack(String productId) {
+        StockCounter counter = counters.get(productId);
+        if (counter == null) {
+            return;
+        }
+        long units;
+        synchronized (counter) {
+            units = counter.drain();
+        }
+        if (units == 0) {
+            counters.remove(productId, counter);
+        } else {
+            try {
+                increment(productId, units);
+            } catch (RuntimeException e) {
+                counter.put(units);
+                log.warn("Could not give back {} units of product {}", units, productId, e);
+            }
+        }
+    }
+
+    /**
+     * Add units to the stock of a product, unless it no longer tracks its stock.
+     */
+    private void increment(String productId, long units) {
+        Query query = new Query(Criteria.where("id").is(productId).and("stock").ne(null));
+        if (template.updateFirst(query, stockUpdate(units), Product.class).getN() == 1) {
+            changed(productId);
+        }
+    }
+
+    private static Update stockUpdate(long units) {
+        return new Update().inc("stock", units).set("lastModified", new Date());
+    }
+
+    private void changed(String productId) {
+        for (Consumer<String> listener : listeners) {
+            listener.accept(productId);
+        }
+    }
+
+    private void returnIdle() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(idleSeconds);
+        List<String> idle = new ArrayList<>();
+        for (Map.Entry<String, StockCounter> entry : counters.entrySet()) {
+            if (entry.getValue().lastUsed() < cutoff && !pinned.contains(entry.getKey())) {
+                idle.add(entry.getKey());
+            }
+        }
+        for (String productId : idle) {
+            giveBack(productId);
+        }
+    }
+
+    private StockCounter counter(String productId) {
+        return counters.computeIfAbsent(productId, id -> new StockCounter(stripes));
+    }
+}